@@ -0,0 +1,165 @@
+package client;
+
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.application.Platform;
+import shared.Answer;
+import shared.AvailableExams;
+import shared.ExamResult;
+import shared.RemoteExamService;
+
+// Runs RemoteExamService calls on background threads so the JavaFX thread never
+// waits on the network. Every call returns a CompletableFuture that fails with
+// a TimeoutException after the call's timeout and can be cancelled. Calls that
+// are safe to repeat are retried with jittered backoff when the transport
+// fails; errors reported by the server are never retried.
+//
+// Handle results on the FX thread with whenCompleteAsync(..., AsyncExamService.FX_THREAD).
+public class AsyncExamService {
+
+    public static final Executor FX_THREAD = Platform::runLater;
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = Long.getLong("exam.client.timeoutMillis", 15000);
+    private static final long SUBMIT_TIMEOUT_MILLIS = Long.getLong("exam.client.submitTimeoutMillis", 60000);
+    private static final int MAX_ATTEMPTS = 3;
+    // Submissions are keyed, so a retry never stores a second result
+    private static final int SUBMIT_ATTEMPTS = 6;
+    private static final long BACKOFF_MILLIS = 250;
+
+    private final RemoteExamService service;
+    private final ExecutorService calls;
+    private final ScheduledExecutorService timers;
+
+    public AsyncExamService(RemoteExamService service) {
+        this.service = service;
+        AtomicInteger threads = new AtomicInteger();
+        this.calls = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "exam-call-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timers = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "exam-call-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // The blocking service, for code that already runs off the FX thread
+    public RemoteExamService getService() {
+        return service;
+    }
+
+    public interface Call<T> {
+
+        T invoke(RemoteExamService service) throws Exception;
+    }
+
+    public CompletableFuture<Boolean> authenticateUser(String username, String password, boolean isTeacher) {
+        return call(true, DEFAULT_TIMEOUT_MILLIS, s -> s.authenticateUser(username, password, isTeacher));
+    }
+
+    public CompletableFuture<AvailableExams> getAvailableExamsIfChanged(String studentId, long knownVersion) {
+        return call(true, DEFAULT_TIMEOUT_MILLIS, s -> s.getAvailableExamsIfChanged(studentId, knownVersion));
+    }
+
+    public CompletableFuture<ExamResult> getExamResult(int examId, String studentId) {
+        return call(true, DEFAULT_TIMEOUT_MILLIS, s -> s.getExamResult(examId, studentId));
+    }
+
+    // Retried with the same submissionKey: if the reply of an earlier attempt was
+    // lost, the server answers the retry with that attempt's outcome
+    public CompletableFuture<Boolean> submitExam(int examId, String studentId, List<Answer> answers,
+            String submissionKey) {
+        return call(SUBMIT_ATTEMPTS, SUBMIT_TIMEOUT_MILLIS,
+                s -> s.submitExam(examId, studentId, answers, submissionKey));
+    }
+
+    // Any other call; idempotent calls are retried when the transport fails
+    public <T> CompletableFuture<T> call(boolean idempotent, Call<T> call) {
+        return call(idempotent, DEFAULT_TIMEOUT_MILLIS, call);
+    }
+
+    public <T> CompletableFuture<T> call(boolean idempotent, long timeoutMillis, Call<T> call) {
+        return call(idempotent ? MAX_ATTEMPTS : 1, timeoutMillis, call);
+    }
+
+    private <T> CompletableFuture<T> call(int maxAttempts, long timeoutMillis, Call<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(result, maxAttempts, call, 1);
+
+        Future<?> timeout = timers.schedule(() -> result.completeExceptionally(
+                new TimeoutException("The server did not answer within " + (timeoutMillis + 999) / 1000 + " s")),
+                timeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((value, error) -> timeout.cancel(false));
+        return result;
+    }
+
+    // Blocking work that is not a service call, e.g. a database lookup
+    public <T> CompletableFuture<T> supply(Callable<T> task) {
+        return call(false, DEFAULT_TIMEOUT_MILLIS, s -> task.call());
+    }
+
+    public void shutdown() {
+        calls.shutdownNow();
+        timers.shutdownNow();
+    }
+
+    private <T> void attempt(CompletableFuture<T> result, int maxAttempts, Call<T> call, int attempt) {
+        if (result.isDone()) {
+            return;
+        }
+        Future<?> running = calls.submit(() -> {
+            try {
+                result.complete(call.invoke(service));
+            } catch (Exception e) {
+                if (attempt < maxAttempts && isTransportFailure(e) && !result.isDone()) {
+                    // Full jitter, so clients cut off together do not come back together
+                    long delay = ThreadLocalRandom.current().nextLong(BACKOFF_MILLIS << attempt);
+                    timers.schedule(() -> attempt(result, maxAttempts, call, attempt + 1), delay, TimeUnit.MILLISECONDS);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+        // Cancelling or timing out the future interrupts the call in progress
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled() || error instanceof TimeoutException) {
+                running.cancel(true);
+            }
+        });
+    }
+
+    // Errors raised by the server arrive wrapped in ServerException; everything else
+    // remote is the network or the RMI runtime
+    private static boolean isTransportFailure(Exception e) {
+        return e instanceof RemoteException && !(e instanceof ServerException) && !(e instanceof ServerError);
+    }
+
+    // The message to show for a failed call
+    public static String describe(Throwable error) {
+        Throwable cause = error;
+        if ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof ServerException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+    }
+}
@@ -9,27 +9,44 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 import shared.RemoteExamService;
 
+// -Dexam.directory=host:port connects to a cluster through its ExamDirectory
+// instead of a single server. -Dexam.transport=nio talks to a single server
+// over its NIO transport on -Dexam.nio.port (default 1100) instead of RMI.
 public class ExamClient extends Application {
 
     private static final String SERVER_HOST = "localhost";
     private static final int RMI_PORT = 1099;
     private static final String SERVICE_NAME = "ExamService";
+    private static final int NIO_PORT = Integer.getInteger("exam.nio.port", 1100);
 
     @Override
     public void start(Stage primaryStage) throws Exception {
         // Connect to the RMI service
-        Registry registry = LocateRegistry.getRegistry(SERVER_HOST, RMI_PORT);
-        RemoteExamService examService = (RemoteExamService) registry.lookup(SERVICE_NAME);
+        RemoteExamService examService;
+        String directory = System.getProperty("exam.directory");
+        if (directory != null) {
+            int colon = directory.lastIndexOf(':');
+            examService = new RoutingExamService(directory.substring(0, colon),
+                    Integer.parseInt(directory.substring(colon + 1)));
+        } else if ("nio".equals(System.getProperty("exam.transport"))) {
+            examService = new NioExamServiceClient(SERVER_HOST, NIO_PORT);
+        } else {
+            Registry registry = LocateRegistry.getRegistry(SERVER_HOST, RMI_PORT);
+            examService = (RemoteExamService) registry.lookup(SERVICE_NAME);
+        }
 
         System.out.println("Connected to exam server.");
 
+        // Controllers make their calls through this, off the FX thread
+        AsyncExamService asyncService = new AsyncExamService(examService);
+
         // Load the login screen
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/client/fxml/Login.fxml"));
         Parent root = loader.load();
 
         // Get the controller and set the exam service
         LoginController controller = loader.getController();
-        controller.setExamService(examService);
+        controller.setExamService(asyncService);
 
         // Set up and show the JavaFX stage
         primaryStage.setTitle("Online Exam System - Student Client");
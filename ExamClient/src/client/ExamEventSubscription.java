@@ -0,0 +1,80 @@
+package client;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+import shared.ExamEvent;
+import shared.ExamEventListener;
+
+// Receives exam events pushed by the server and hands each batch to the JavaFX
+// thread. The server calls back into this client, so events only arrive when
+// the server can open a connection to it; the refresh buttons keep working
+// either way.
+public class ExamEventSubscription {
+
+    private final AsyncExamService examService;
+    private final String studentId;
+    private final Listener listener;
+    private volatile boolean open;
+
+    public ExamEventSubscription(AsyncExamService examService, String studentId, Consumer<List<ExamEvent>> handler) {
+        this.examService = examService;
+        this.studentId = studentId;
+        this.listener = new Listener(handler);
+    }
+
+    public void open() {
+        try {
+            UnicastRemoteObject.exportObject(listener, 0);
+            open = true;
+        } catch (RemoteException e) {
+            System.out.println("Could not receive exam events: " + e.getMessage());
+            return;
+        }
+        examService.call(true, service -> {
+            service.subscribe(studentId, listener);
+            return null;
+        }).whenComplete((value, error) -> {
+            if (error != null) {
+                System.out.println("Could not subscribe to exam events: " + AsyncExamService.describe(error));
+            }
+        });
+    }
+
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        examService.call(false, service -> {
+            service.unsubscribe(listener);
+            return null;
+        }).whenComplete((value, error) -> {
+            try {
+                UnicastRemoteObject.unexportObject(listener, true);
+            } catch (NoSuchObjectException e) {
+                // Already unexported
+            }
+        });
+    }
+
+    private class Listener implements ExamEventListener {
+
+        private final Consumer<List<ExamEvent>> handler;
+
+        Listener(Consumer<List<ExamEvent>> handler) {
+            this.handler = handler;
+        }
+
+        // Runs on an RMI thread; the server sends batches for one subscriber one at a time
+        @Override
+        public void onEvents(List<ExamEvent> events) throws RemoteException {
+            if (open) {
+                Platform.runLater(() -> handler.accept(events));
+            }
+        }
+    }
+}
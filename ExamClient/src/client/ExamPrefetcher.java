@@ -0,0 +1,110 @@
+package client;
+
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import shared.EncryptedExam;
+import shared.Exam;
+import shared.ExamKey;
+import shared.RemoteExamService;
+
+// Downloads scheduled exams encrypted before their start, each at a random time
+// in the minutes before it, so the questions of a whole class do not all leave
+// the server in the same second. At the start only the small key is requested.
+public class ExamPrefetcher {
+
+    // Prefetch no earlier than this before the start, and finish this long before it
+    private static final long WINDOW_MILLIS = 10 * 60 * 1000;
+    private static final long MARGIN_MILLIS = 30 * 1000;
+    private static final long RETRY_MILLIS = 15 * 1000;
+
+    private final RemoteExamService examService;
+    private final String studentId;
+    private final Map<Integer, EncryptedExam> payloads = new ConcurrentHashMap<>();
+    private final Map<Integer, Long> scheduled = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+
+    // Server clock minus local clock, learned from the first payload
+    private volatile long clockOffset;
+
+    public ExamPrefetcher(RemoteExamService examService, String studentId) {
+        this.examService = examService;
+        this.studentId = studentId;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "exam-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Plan a download for every exam that starts in the future; already planned exams are kept
+    public void schedule(List<Exam> exams) {
+        long now = serverTime();
+        for (Exam exam : exams) {
+            long start = exam.getScheduledStart();
+            Long planned = scheduled.get(exam.getId());
+            if (start <= now || (planned != null && planned == start)) {
+                continue;
+            }
+            scheduled.put(exam.getId(), start);
+            payloads.remove(exam.getId());
+
+            long from = Math.max(now, start - WINDOW_MILLIS);
+            long to = Math.max(from + 1, start - MARGIN_MILLIS);
+            long at = ThreadLocalRandom.current().nextLong(from, to);
+            executor.schedule(() -> fetch(exam.getId(), start), at - now, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // The exam with its questions: decrypted from the prefetched copy if there is one
+    public Exam open(int examId) throws Exception {
+        EncryptedExam payload = payloads.get(examId);
+        if (payload != null) {
+            ExamKey key = examService.releaseExamKey(examId, studentId);
+            try {
+                return payload.open(key);
+            } catch (GeneralSecurityException e) {
+                // The exam was changed or moved to another server after the download
+                payloads.remove(examId);
+            }
+        }
+        return examService.getExamQuestions(examId, studentId);
+    }
+
+    public boolean isPrefetched(int examId) {
+        return payloads.containsKey(examId);
+    }
+
+    // Current time on the server clock, as far as it is known
+    public long serverTime() {
+        return System.currentTimeMillis() + clockOffset;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void fetch(int examId, long start) {
+        Long planned = scheduled.get(examId);
+        if (planned == null || planned != start) {
+            return;
+        }
+        try {
+            long sent = System.currentTimeMillis();
+            EncryptedExam payload = examService.prefetchExam(examId, studentId);
+            clockOffset = payload.getServerTime() - (sent + System.currentTimeMillis()) / 2;
+            payloads.put(examId, payload);
+            System.out.println("Prefetched exam " + examId + " (" + payload.getCiphertext().length + " bytes)");
+        } catch (Exception e) {
+            System.out.println("Prefetch of exam " + examId + " failed: " + e.getMessage());
+            if (serverTime() + RETRY_MILLIS < start - MARGIN_MILLIS / 2) {
+                executor.schedule(() -> fetch(examId, start), RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
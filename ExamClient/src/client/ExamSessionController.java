@@ -1,20 +1,23 @@
 package client;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.UUID;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import shared.Answer;
 import shared.Exam;
 import shared.Question;
-import shared.RemoteExamService;
 
 public class ExamSessionController {
 
@@ -25,22 +28,29 @@ public class ExamSessionController {
     private Label timerLabel;
 
     @FXML
-    private VBox questionsContainer;
+    private StackPane questionsPane;
+
+    @FXML
+    private ListView<Question> questionsList;
 
     @FXML
     private Button submitButton;
 
-    private RemoteExamService examService;
+    private AsyncExamService examService;
     private String studentId;
     private Exam exam;
     private Timeline timer;
     private int secondsRemaining;
 
-    private List<ToggleGroup> answerGroups = new ArrayList<>();
+    // Selected option per question in exam order, -1 when unanswered.
+    // The list only creates cells for the visible questions, so this is the answer state.
+    private int[] selectedOptions = new int[0];
     private boolean submissionInProgress = false;
     private boolean examSubmitted = false;
+    // One key for every attempt to submit this exam, so a retry is never stored twice
+    private final String submissionKey = UUID.randomUUID().toString();
 
-    public void setExamService(RemoteExamService examService) {
+    public void setExamService(AsyncExamService examService) {
         this.examService = examService;
     }
 
@@ -77,38 +87,74 @@ public class ExamSessionController {
     }
 
     private void createQuestionUI() {
-        questionsContainer.getChildren().clear();
-        answerGroups.clear();
+        selectedOptions = new int[exam.getQuestions().size()];
+        Arrays.fill(selectedOptions, -1);
 
-        int questionNumber = 1;
-        for (Question question : exam.getQuestions()) {
-            // Create a container for this question
-            VBox questionBox = new VBox(10);
-            questionBox.getStyleClass().add("question-box");
+        questionsList.setCellFactory(list -> new QuestionCell());
+        questionsList.setItems(FXCollections.observableArrayList(exam.getQuestions()));
+    }
+
+    // One question with its options. Cells are reused while scrolling, so the
+    // radio buttons are kept and relabelled instead of being created per question.
+    private class QuestionCell extends ListCell<Question> {
+
+        private final VBox questionBox = new VBox(10);
+        private final Label questionLabel = new Label();
+        private final ToggleGroup group = new ToggleGroup();
+        private final List<RadioButton> optionButtons = new ArrayList<>();
+
+        // Set while the cell shows the stored answer, so that is not recorded again
+        private boolean updating;
 
-            // Add the question text
-            Label questionLabel = new Label(questionNumber + ". " + question.getText());
+        QuestionCell() {
+            questionBox.getStyleClass().add("question-box");
             questionLabel.setWrapText(true);
             questionLabel.setStyle("-fx-font-weight: bold;");
             questionBox.getChildren().add(questionLabel);
 
-            // Create a toggle group for the options
-            ToggleGroup group = new ToggleGroup();
-            answerGroups.add(group);
-
-            // Add the options
-            List<String> options = question.getOptions();
-            for (int i = 0; i < options.size(); i++) {
-                RadioButton option = new RadioButton(options.get(i));
-                option.setWrapText(true);
-                option.setToggleGroup(group);
-                option.setUserData(i); // Store the option index
-                questionBox.getChildren().add(option);
+            // Let wrapped text follow the list width instead of widening the cell
+            questionBox.maxWidthProperty().bind(questionsList.widthProperty().subtract(40));
+            questionBox.prefWidthProperty().bind(questionBox.maxWidthProperty());
+
+            group.selectedToggleProperty().addListener((observable, oldToggle, newToggle) -> {
+                if (!updating && getIndex() >= 0 && getIndex() < selectedOptions.length) {
+                    selectedOptions[getIndex()] = newToggle != null ? (int) newToggle.getUserData() : -1;
+                }
+            });
+        }
+
+        @Override
+        protected void updateItem(Question question, boolean empty) {
+            super.updateItem(question, empty);
+            if (empty || question == null) {
+                setGraphic(null);
+                return;
             }
 
-            // Add this question to the container
-            questionsContainer.getChildren().add(questionBox);
-            questionNumber++;
+            updating = true;
+            try {
+                questionLabel.setText((getIndex() + 1) + ". " + question.getText());
+
+                List<String> options = question.getOptions();
+                while (optionButtons.size() < options.size()) {
+                    RadioButton option = new RadioButton();
+                    option.setWrapText(true);
+                    option.setToggleGroup(group);
+                    option.setUserData(optionButtons.size()); // Store the option index
+                    optionButtons.add(option);
+                }
+                questionBox.getChildren().setAll(questionLabel);
+                for (int i = 0; i < options.size(); i++) {
+                    optionButtons.get(i).setText(options.get(i));
+                    questionBox.getChildren().add(optionButtons.get(i));
+                }
+
+                int selected = selectedOptions[getIndex()];
+                group.selectToggle(selected >= 0 && selected < options.size() ? optionButtons.get(selected) : null);
+            } finally {
+                updating = false;
+            }
+            setGraphic(questionBox);
         }
     }
 
@@ -175,107 +221,73 @@ public class ExamSessionController {
             // Show a progress indicator
             ProgressIndicator progress = new ProgressIndicator();
             progress.setMaxSize(100, 100);
-            questionsContainer.getChildren().add(0, progress);
+            questionsPane.getChildren().add(progress);
 
             // Log the student ID being used for submission
             System.out.println("Submitting exam for student ID: " + studentId);
 
-            // Collect the answers
+            // Collect the answers; -1 means no answer
             List<Answer> answers = new ArrayList<>();
             List<Question> questions = exam.getQuestions();
 
             for (int i = 0; i < questions.size(); i++) {
-                Question question = questions.get(i);
-                ToggleGroup group = answerGroups.get(i);
-                Toggle selectedToggle = group.getSelectedToggle();
-
-                int selectedOption = -1; // -1 means no answer
-                if (selectedToggle != null) {
-                    selectedOption = (int) selectedToggle.getUserData();
-                }
-
-                answers.add(new Answer(question.getId(), selectedOption));
+                answers.add(new Answer(questions.get(i).getId(), selectedOptions[i]));
             }
 
-            // Submit the exam in a background thread to keep UI responsive
-            new Thread(() -> {
-                try {
-                    // Submit the exam
-                    boolean success = examService.submitExam(exam.getId(), studentId, answers);
-
-                    // Update UI on JavaFX thread
-                    javafx.application.Platform.runLater(() -> {
-                        submissionInProgress = false;
-                        examSubmitted = true;
-
-                        // Remove progress indicator - with null check
-                        if (questionsContainer != null && questionsContainer.getChildren() != null
-                                && !questionsContainer.getChildren().isEmpty() && progress != null) {
-                            questionsContainer.getChildren().remove(progress);
-                        }
-
-                        if (success) {
-                            Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
-                            successAlert.setTitle("Exam Submitted");
-                            successAlert.setHeaderText("Exam Successfully Submitted");
-                            successAlert.setContentText("Your exam has been submitted successfully.");
-                            successAlert.showAndWait();
-
-                            // Close the exam window
-                            if (examTitleLabel != null && examTitleLabel.getScene() != null) {
-                                Stage stage = (Stage) examTitleLabel.getScene().getWindow();
-                                if (stage != null) {
-                                    stage.close();
-                                }
-                            }
-                        } else {
-                            showAlert(Alert.AlertType.ERROR, "Error", "Submission Failed",
-                                    "There was an error submitting your exam. Please try again.");
-
-                            // Re-enable the submit button
-                            if (submitButton != null) {
-                                submitButton.setDisable(false);
-                            }
-                            examSubmitted = false;
-
-                            // Restart timer if time remains
-                            if (secondsRemaining > 0 && timer != null) {
-                                timer.play();
-                            }
-                        }
-                    });
-                } catch (Exception e) {
-                    // Update UI on JavaFX thread
-                    javafx.application.Platform.runLater(() -> {
-                        submissionInProgress = false;
-
-                        // Remove progress indicator - with null check
-                        if (questionsContainer != null && questionsContainer.getChildren() != null
-                                && !questionsContainer.getChildren().isEmpty() && progress != null) {
-                            questionsContainer.getChildren().remove(progress);
-                        }
-
-                        String errorMessage = e.getMessage();
-                        if (e.getCause() != null) {
-                            errorMessage = e.getCause().getMessage();
-                        }
+            // Submit the exam off the FX thread to keep UI responsive
+            examService.submitExam(exam.getId(), studentId, answers, submissionKey).whenCompleteAsync((success, error) -> {
+                submissionInProgress = false;
 
-                        showAlert(Alert.AlertType.ERROR, "Error", "Submission Failed",
-                                "Error: " + errorMessage);
-
-                        // Re-enable the submit button
-                        if (submitButton != null) {
-                            submitButton.setDisable(false);
-                        }
+                // Remove progress indicator - with null check
+                if (questionsPane != null && progress != null) {
+                    questionsPane.getChildren().remove(progress);
+                }
 
-                        // Restart timer if time remains
-                        if (secondsRemaining > 0 && timer != null) {
-                            timer.play();
+                if (error != null) {
+                    showAlert(Alert.AlertType.ERROR, "Error", "Submission Failed",
+                            "Error: " + AsyncExamService.describe(error));
+
+                    // Re-enable the submit button
+                    if (submitButton != null) {
+                        submitButton.setDisable(false);
+                    }
+
+                    // Restart timer if time remains
+                    if (secondsRemaining > 0 && timer != null) {
+                        timer.play();
+                    }
+                    error.printStackTrace();
+                } else if (success) {
+                    examSubmitted = true;
+
+                    Alert successAlert = new Alert(Alert.AlertType.INFORMATION);
+                    successAlert.setTitle("Exam Submitted");
+                    successAlert.setHeaderText("Exam Successfully Submitted");
+                    successAlert.setContentText("Your exam has been submitted successfully.");
+                    successAlert.showAndWait();
+
+                    // Close the exam window
+                    if (examTitleLabel != null && examTitleLabel.getScene() != null) {
+                        Stage stage = (Stage) examTitleLabel.getScene().getWindow();
+                        if (stage != null) {
+                            stage.close();
                         }
-                    });
-                    e.printStackTrace();
+                    }
+                } else {
+                    showAlert(Alert.AlertType.ERROR, "Error", "Submission Failed",
+                            "There was an error submitting your exam. Please try again.");
+
+                    // Re-enable the submit button
+                    if (submitButton != null) {
+                        submitButton.setDisable(false);
+                    }
+
+                    // Restart timer if time remains
+                    if (secondsRemaining > 0 && timer != null) {
+                        timer.play();
+                    }
                 }
-            }).start();
+            }, AsyncExamService.FX_THREAD);
         } catch (Exception e) {
             submissionInProgress = false;
             showAlert(Alert.AlertType.ERROR, "Error", "Submission Failed", e.getMessage());
@@ -0,0 +1,354 @@
+package client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import shared.Admission;
+import shared.Answer;
+import shared.AvailableExams;
+import shared.EncryptedExam;
+import shared.Exam;
+import shared.ExamEventListener;
+import shared.ExamKey;
+import shared.ExamResult;
+import shared.Json;
+import shared.Question;
+import shared.RemoteExamService;
+
+// RemoteExamService over the server's HTTP/JSON gateway (server.HttpGateway),
+// the way a browser would use it: log in for a token, send it with every
+// call, accept gzip and revalidate exams with If-None-Match. Lets
+// LoadGenerator put the gateway under the same load as RMI.
+//
+// Only the student calls exist over HTTP; the others, prefetching and event
+// subscriptions throw. Errors keep the RMI shapes AsyncExamService relies on:
+// a call the server refused arrives wrapped in ServerException, a failed
+// connection or server error is a plain RemoteException.
+//
+// Tokens are kept per student id, so one client can act for many students.
+// HttpURLConnection keeps at most -Dhttp.maxConnections (default 5) idle
+// connections per server; raise it when many threads share the client.
+public class HttpExamServiceClient implements RemoteExamService {
+
+    private static final int TIMEOUT_MILLIS = Integer.getInteger("exam.http.timeoutMillis", 120000);
+
+    private final String baseUrl;
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    // Last exam payload and its ETag by exam id
+    private final Map<Integer, CachedExam> exams = new ConcurrentHashMap<>();
+
+    public HttpExamServiceClient(String host, int port) {
+        this.baseUrl = "http://" + host + ":" + port;
+    }
+
+    private static class Response {
+
+        final int status;
+        final String etag;
+        final Object body;
+
+        Response(int status, String etag, Object body) {
+            this.status = status;
+            this.etag = etag;
+            this.body = body;
+        }
+    }
+
+    private static class CachedExam {
+
+        final String etag;
+        final Exam exam;
+
+        CachedExam(String etag, Exam exam) {
+            this.etag = etag;
+            this.exam = exam;
+        }
+    }
+
+    private Response call(String method, String path, String studentId, String ifNoneMatch, Json.Writer body)
+            throws RemoteException {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setRequestProperty("Accept", "application/json");
+            connection.setRequestProperty("Accept-Encoding", "gzip");
+            if (studentId != null) {
+                String token = tokens.get(studentId);
+                if (token == null) {
+                    throw new RemoteException("Student " + studentId + " is not logged in");
+                }
+                connection.setRequestProperty("Authorization", "Bearer " + token);
+            }
+            if (ifNoneMatch != null) {
+                connection.setRequestProperty("If-None-Match", ifNoneMatch);
+            }
+            if (body != null) {
+                byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                connection.setFixedLengthStreamingMode(bytes.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(bytes);
+                }
+            }
+
+            int status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            Object parsed = null;
+            if (in != null) {
+                if ("gzip".equals(connection.getContentEncoding())) {
+                    in = new GZIPInputStream(in);
+                }
+                String text = readText(in);
+                if (!text.isEmpty()) {
+                    parsed = Json.parse(text);
+                }
+            }
+            if (status >= 500) {
+                throw new RemoteException("Exam server error " + status + ": " + errorOf(parsed));
+            }
+            // A rejected login is an answer, not an error
+            if (status >= 400 && !(status == 401 && studentId == null)) {
+                throw new ServerException("RemoteException occurred in server thread",
+                        new RemoteException(errorOf(parsed)));
+            }
+            return new Response(status, connection.getHeaderField("ETag"), parsed);
+        } catch (RemoteException e) {
+            throw e;
+        } catch (java.net.ConnectException e) {
+            throw new ConnectException("Cannot reach the exam server at " + baseUrl, e);
+        } catch (IOException | IllegalArgumentException e) {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            throw new RemoteException(method + " " + path + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static String readText(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String errorOf(Object body) {
+        if (body instanceof Map && ((Map<?, ?>) body).get("error") != null) {
+            return (String) ((Map<?, ?>) body).get("error");
+        }
+        return "no details";
+    }
+
+    private static RemoteException notOverHttp(String method) {
+        return new RemoteException(method + " is not available over HTTP");
+    }
+
+    private static int intOf(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static long longOf(Object value) {
+        return ((Number) value).longValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Exam readExam(Map<String, Object> json) {
+        Exam exam = new Exam(intOf(json.get("id")), (String) json.get("title"), (String) json.get("description"),
+                intOf(json.get("durationMinutes")), (Boolean) json.get("resultsVisible"));
+        exam.setScheduledStart(longOf(json.get("scheduledStart")));
+        List<Object> questions = (List<Object>) json.get("questions");
+        if (questions != null) {
+            List<Question> read = new ArrayList<>(questions.size());
+            for (Object item : questions) {
+                Map<String, Object> question = (Map<String, Object>) item;
+                List<String> options = new ArrayList<>();
+                for (Object option : (List<Object>) question.get("options")) {
+                    options.add((String) option);
+                }
+                // The gateway never sends the correct answer
+                read.add(new Question(intOf(question.get("id")), (String) question.get("text"), options, -1,
+                        intOf(question.get("points"))));
+            }
+            exam.setQuestions(read);
+        }
+        return exam;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Exam> readExams(Object body) {
+        List<Exam> exams = new ArrayList<>();
+        for (Object item : (List<Object>) body) {
+            exams.add(readExam((Map<String, Object>) item));
+        }
+        return exams;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean authenticateUser(String username, String password, boolean isTeacher) throws RemoteException {
+        if (isTeacher) {
+            throw notOverHttp("Teacher login");
+        }
+        Response response = call("POST", "/api/login", null, null, new Json.Writer().beginObject()
+                .name("username").value(username)
+                .name("password").value(password)
+                .endObject());
+        if (response.status == 401) {
+            return false;
+        }
+        Map<String, Object> body = (Map<String, Object>) response.body;
+        tokens.put((String) body.get("studentId"), (String) body.get("token"));
+        return true;
+    }
+
+    @Override
+    public List<Exam> getAvailableExams(String studentId) throws RemoteException {
+        Response response = call("GET", "/api/exams", studentId, null, null);
+        return readExams(response.body);
+    }
+
+    @Override
+    public AvailableExams getAvailableExamsIfChanged(String studentId, long knownVersion) throws RemoteException {
+        Response response = call("GET", "/api/exams", studentId, "\"v" + knownVersion + "\"", null);
+        if (response.status == 304) {
+            return new AvailableExams(knownVersion, false, null);
+        }
+        long version = -1;
+        if (response.etag != null && response.etag.startsWith("\"v")) {
+            version = Long.parseLong(response.etag.substring(2, response.etag.length() - 1));
+        }
+        return new AvailableExams(version, true, readExams(response.body));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Admission requestAdmission(int examId, String studentId) throws RemoteException {
+        Response response = call("POST", "/api/exams/" + examId + "/admission", studentId, null,
+                new Json.Writer().beginObject().endObject());
+        Map<String, Object> body = (Map<String, Object>) response.body;
+        return new Admission((Boolean) body.get("admitted"), intOf(body.get("position")),
+                longOf(body.get("retryAfterMillis")));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Exam getExamQuestions(int examId, String studentId) throws RemoteException {
+        CachedExam cached = exams.get(examId);
+        Response response = call("GET", "/api/exams/" + examId, studentId, cached != null ? cached.etag : null, null);
+        if (response.status == 304 && cached != null) {
+            return cached.exam;
+        }
+        Exam exam = readExam((Map<String, Object>) response.body);
+        if (response.etag != null) {
+            exams.put(examId, new CachedExam(response.etag, exam));
+        }
+        return exam;
+    }
+
+    @Override
+    public EncryptedExam prefetchExam(int examId, String studentId) throws RemoteException {
+        throw notOverHttp("prefetchExam");
+    }
+
+    @Override
+    public ExamKey releaseExamKey(int examId, String studentId) throws RemoteException {
+        throw notOverHttp("releaseExamKey");
+    }
+
+    @Override
+    public boolean submitExam(int examId, String studentId, List<Answer> answers) throws RemoteException {
+        return submitExam(examId, studentId, answers, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public boolean submitExam(int examId, String studentId, List<Answer> answers, String submissionKey)
+            throws RemoteException {
+        Json.Writer json = new Json.Writer().beginObject().name("answers").beginArray();
+        for (Answer answer : answers) {
+            json.beginObject()
+                    .name("questionId").value(answer.getQuestionId())
+                    .name("selectedOption").value(answer.getSelectedOptionIndex())
+                    .endObject();
+        }
+        json.endArray();
+        if (submissionKey != null) {
+            json.name("submissionKey").value(submissionKey);
+        }
+        json.endObject();
+
+        Response response = call("POST", "/api/exams/" + examId + "/submission", studentId, null, json);
+        return (Boolean) ((Map<String, Object>) response.body).get("submitted");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public ExamResult getExamResult(int examId, String studentId) throws RemoteException {
+        Response response = call("GET", "/api/exams/" + examId + "/result", studentId, null, null);
+        Map<String, Object> body = (Map<String, Object>) response.body;
+        ExamResult result = new ExamResult();
+        result.setExamId(intOf(body.get("examId")));
+        result.setExamTitle((String) body.get("examTitle"));
+        result.setStudentId(studentId);
+        result.setScore(intOf(body.get("score")));
+        result.setTotalPossible(intOf(body.get("totalPossible")));
+        result.setSubmissionTime(new Date(longOf(body.get("submissionTime"))));
+        return result;
+    }
+
+    @Override
+    public void subscribe(String studentId, ExamEventListener listener) throws RemoteException {
+        throw notOverHttp("subscribe");
+    }
+
+    @Override
+    public void unsubscribe(ExamEventListener listener) throws RemoteException {
+        throw notOverHttp("unsubscribe");
+    }
+
+    @Override
+    public boolean createExam(Exam exam) throws RemoteException {
+        throw notOverHttp("createExam");
+    }
+
+    @Override
+    public boolean updateExam(Exam exam) throws RemoteException {
+        throw notOverHttp("updateExam");
+    }
+
+    @Override
+    public boolean deleteExam(int examId) throws RemoteException {
+        throw notOverHttp("deleteExam");
+    }
+
+    @Override
+    public List<ExamResult> getExamResults(int examId) throws RemoteException {
+        throw notOverHttp("getExamResults");
+    }
+
+    @Override
+    public boolean setResultVisibility(int examId, boolean visible) throws RemoteException {
+        throw notOverHttp("setResultVisibility");
+    }
+}
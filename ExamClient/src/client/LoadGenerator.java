@@ -0,0 +1,342 @@
+package client;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import shared.Admission;
+import shared.Answer;
+import shared.EncryptedExam;
+import shared.Exam;
+import shared.ExamKey;
+import shared.Question;
+import shared.RemoteExamService;
+
+// Drives the real RemoteExamService with thousands of simulated students:
+// login, list exams, start the exam, answer with think time and submit,
+// optionally all together at a common deadline. Prints p50/p95/p99 latency,
+// throughput and error rate per method. Latency runs from when a call was due,
+// not from when a worker got to it, so a burst larger than --threads shows
+// up in the percentiles instead of being hidden in the generator's queue.
+//
+// Usage: java -cp ExamClient.jar client.LoadGenerator [--option=value ...]
+//   --host=localhost --port=1099     exam server registry
+//   --directory=host:port            cluster directory, instead of host and port
+//   --transport=rmi                  rmi | nio | http; nio connects to --nioPort=1100
+//                                    and http to the gateway on --httpPort=8080 on host
+//   --students=1000                  simulated students
+//   --username=loadstudent%d         username format, %d is 1..students
+//   --studentId=LS%d                 student id format
+//   --password=password
+//   --examId=0                       exam to take, 0 = first available
+//   --prefetch=false                 download the exam encrypted on arrival and
+//                                    request only its key at the scheduled start
+//   --arrival=ramp                   ramp | burst | poisson
+//   --rampSeconds=60                 ramp length, or mean arrival window for poisson
+//   --thinkMillis=2000               mean think time per question
+//   --answerRatio=1.0                share of questions answered
+//   --deadlineSeconds=0              if > 0 everyone submits this long after the start
+//   --threads=256                    worker threads issuing calls
+public class LoadGenerator {
+
+    private final Map<String, String> options;
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService workers;
+    private final CountDownLatch finished;
+    private final RemoteExamService examService;
+    private final long startMillis = System.currentTimeMillis();
+
+    public LoadGenerator(Map<String, String> options) throws Exception {
+        this.options = options;
+        this.workers = Executors.newScheduledThreadPool(intOption("threads", 256));
+        this.finished = new CountDownLatch(intOption("students", 1000));
+
+        String directory = options.get("directory");
+        if (directory != null) {
+            int colon = directory.lastIndexOf(':');
+            this.examService = new RoutingExamService(directory.substring(0, colon),
+                    Integer.parseInt(directory.substring(colon + 1)));
+        } else if ("nio".equals(option("transport", "rmi"))) {
+            this.examService = new NioExamServiceClient(option("host", "localhost"), intOption("nioPort", 1100));
+        } else if ("http".equals(option("transport", "rmi"))) {
+            // Keep a connection per worker alive instead of HttpURLConnection's default 5
+            System.setProperty("http.maxConnections", String.valueOf(intOption("threads", 256)));
+            this.examService = new HttpExamServiceClient(option("host", "localhost"), intOption("httpPort", 8080));
+        } else {
+            Registry registry = LocateRegistry.getRegistry(option("host", "localhost"), intOption("port", 1099));
+            this.examService = (RemoteExamService) registry.lookup("ExamService");
+        }
+    }
+
+    public void run() throws InterruptedException {
+        int students = intOption("students", 1000);
+        String arrival = option("arrival", "ramp");
+        long rampMillis = intOption("rampSeconds", 60) * 1000L;
+        Random random = new Random(42);
+
+        System.out.println("Starting " + students + " simulated students (" + arrival + " arrival)");
+
+        long arrivalMillis = 0;
+        for (int i = 1; i <= students; i++) {
+            if ("ramp".equals(arrival)) {
+                arrivalMillis = rampMillis * (i - 1) / students;
+            } else if ("poisson".equals(arrival)) {
+                // Exponential gaps with a mean that spreads arrivals over the ramp window
+                arrivalMillis += (long) (-Math.log(1 - random.nextDouble()) * rampMillis / students);
+            }
+            SimulatedStudent student = new SimulatedStudent(i);
+            student.schedule(student::login, arrivalMillis);
+        }
+
+        finished.await();
+        workers.shutdown();
+        printReport();
+    }
+
+    private class SimulatedStudent {
+
+        private final String username;
+        private final String studentId;
+        private Exam exam;
+        // When the next scheduled call should have started, 0 once it has been timed
+        private long dueNanos;
+
+        SimulatedStudent(int number) {
+            this.username = String.format(option("username", "loadstudent%d"), number);
+            this.studentId = String.format(option("studentId", "LS%d"), number);
+        }
+
+        // Runs the task after delayMillis; its first call is timed from then, so time
+        // spent waiting for a free worker counts as latency
+        void schedule(Runnable task, long delayMillis) {
+            dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+            workers.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private <T> T timed(String method, RemoteCall<T> call) throws Exception {
+            long start = dueNanos != 0 ? Math.min(dueNanos, System.nanoTime()) : System.nanoTime();
+            dueNanos = 0;
+            return LoadGenerator.this.timed(method, start, call);
+        }
+
+        void login() {
+            try {
+                boolean authenticated = timed("authenticateUser",
+                        () -> examService.authenticateUser(username, option("password", "password"), false));
+                if (!authenticated) {
+                    fail("authenticateUser", "login rejected for " + username);
+                    return;
+                }
+
+                List<Exam> exams = timed("getAvailableExams", () -> examService.getAvailableExams(studentId));
+                int examId = intOption("examId", 0);
+                if (examId == 0) {
+                    if (exams.isEmpty()) {
+                        fail("getAvailableExams", "no exam available for " + studentId);
+                        return;
+                    }
+                    examId = exams.get(0).getId();
+                }
+
+                final int selectedExamId = examId;
+                if (Boolean.parseBoolean(option("prefetch", "false"))) {
+                    EncryptedExam payload = timed("prefetchExam",
+                            () -> examService.prefetchExam(selectedExamId, studentId));
+                    long untilStart = payload.getScheduledStart() - payload.getServerTime();
+                    schedule(() -> whenAdmitted(selectedExamId, () -> start(payload)), Math.max(0, untilStart));
+                    return;
+                }
+                whenAdmitted(selectedExamId, () -> start(selectedExamId));
+            } catch (Exception e) {
+                done();
+            }
+        }
+
+        // Waits in the admission queue of a scheduled exam, asking again when told to
+        void whenAdmitted(int examId, Runnable start) {
+            try {
+                Admission admission = timed("requestAdmission",
+                        () -> examService.requestAdmission(examId, studentId));
+                if (admission.isAdmitted()) {
+                    start.run();
+                } else {
+                    schedule(() -> whenAdmitted(examId, start), admission.getRetryAfterMillis());
+                }
+            } catch (Exception e) {
+                done();
+            }
+        }
+
+        void start(int examId) {
+            try {
+                exam = timed("getExamQuestions", () -> examService.getExamQuestions(examId, studentId));
+                scheduleSubmit();
+            } catch (Exception e) {
+                done();
+            }
+        }
+
+        void start(EncryptedExam payload) {
+            try {
+                ExamKey key = timed("releaseExamKey",
+                        () -> examService.releaseExamKey(payload.getExamId(), studentId));
+                exam = payload.open(key);
+                scheduleSubmit();
+            } catch (Exception e) {
+                done();
+            }
+        }
+
+        void scheduleSubmit() {
+            int deadlineSeconds = intOption("deadlineSeconds", 0);
+            long delay;
+            if (deadlineSeconds > 0) {
+                delay = Math.max(0, startMillis + deadlineSeconds * 1000L - System.currentTimeMillis());
+            } else {
+                // Think time per question, exponentially distributed around the mean
+                long mean = intOption("thinkMillis", 2000);
+                delay = 0;
+                for (int i = 0; i < exam.getQuestions().size(); i++) {
+                    delay += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * mean);
+                }
+            }
+            schedule(this::submit, delay);
+        }
+
+        void submit() {
+            try {
+                double answerRatio = Double.parseDouble(option("answerRatio", "1.0"));
+                List<Answer> answers = new ArrayList<>();
+                for (Question question : exam.getQuestions()) {
+                    int selected = -1;
+                    if (ThreadLocalRandom.current().nextDouble() < answerRatio && !question.getOptions().isEmpty()) {
+                        selected = ThreadLocalRandom.current().nextInt(question.getOptions().size());
+                    }
+                    answers.add(new Answer(question.getId(), selected));
+                }
+                String submissionKey = UUID.randomUUID().toString();
+                timed("submitExam", () -> examService.submitExam(exam.getId(), studentId, answers, submissionKey));
+            } catch (Exception e) {
+                // Already counted as an error
+            } finally {
+                done();
+            }
+        }
+
+        void done() {
+            finished.countDown();
+        }
+    }
+
+    private interface RemoteCall<T> {
+
+        T call() throws Exception;
+    }
+
+    // Latency from startNanos, when the call was due to start
+    private <T> T timed(String method, long startNanos, RemoteCall<T> call) throws Exception {
+        boolean failed = true;
+        try {
+            T result = call.call();
+            failed = false;
+            return result;
+        } catch (Exception e) {
+            System.err.println(method + " failed: " + e.getMessage());
+            throw e;
+        } finally {
+            samples.computeIfAbsent(method, m -> new Samples()).add(System.nanoTime() - startNanos, failed);
+        }
+    }
+
+    private void fail(String method, String message) {
+        System.err.println(method + " failed: " + message);
+        samples.computeIfAbsent(method, m -> new Samples()).addError();
+        finished.countDown();
+    }
+
+    private void printReport() {
+        double seconds = (System.currentTimeMillis() - startMillis) / 1000.0;
+        System.out.println();
+        System.out.println(String.format("Run time: %.1f s", seconds));
+        System.out.println(String.format("%-20s %8s %8s %8s %10s %10s %10s %10s",
+                "method", "calls", "errors", "err %", "p50 ms", "p95 ms", "p99 ms", "calls/s"));
+
+        for (Map.Entry<String, Samples> entry : new TreeMap<>(samples).entrySet()) {
+            Samples s = entry.getValue();
+            long[] sorted = s.sorted();
+            System.out.println(String.format("%-20s %8d %8d %8.2f %10.2f %10.2f %10.2f %10.1f",
+                    entry.getKey(), sorted.length, s.errors, 100.0 * s.errors / Math.max(1, sorted.length),
+                    percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99),
+                    sorted.length / seconds));
+        }
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    // Latency samples for one method
+    private static class Samples {
+
+        private long[] nanos = new long[1024];
+        private int size;
+        private int errors;
+
+        synchronized void add(long value, boolean failed) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        // The call succeeded but its result ended the student's run
+        synchronized void addError() {
+            errors++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(nanos, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return Integer.parseInt(option(name, String.valueOf(defaultValue)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+}
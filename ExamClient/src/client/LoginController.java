@@ -10,11 +10,12 @@ import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.PasswordField;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
-import shared.RemoteExamService;
 
 public class LoginController {
 
@@ -27,12 +28,18 @@ public class LoginController {
     @FXML
     private Label statusLabel;
 
-    private RemoteExamService examService;
+    @FXML
+    private Button loginButton;
+
+    @FXML
+    private ProgressIndicator loginProgress;
+
+    private AsyncExamService examService;
 
     // Student client only handles student logins
     private final boolean isTeacher = false;
 
-    public void setExamService(RemoteExamService examService) {
+    public void setExamService(AsyncExamService examService) {
         this.examService = examService;
     }
 
@@ -46,33 +53,45 @@ public class LoginController {
             return;
         }
 
-        try {
-            boolean authenticated = examService.authenticateUser(username, password, isTeacher);
-
-            if (authenticated) {
-                // Get the student ID and name from the database
-                String studentId = getStudentId(username);
-                String studentName = getStudentName(username);
-
-                // Log the retrieved student ID for debugging
-                System.out.println("Retrieved student ID: " + studentId);
-                System.out.println("Retrieved student name: " + studentName);
-
-                // Verify the student ID exists in the database
-                if (studentId == null || studentId.isEmpty() || !verifyStudentIdExists(studentId)) {
-                    statusLabel.setText("Error: Student ID not found in database");
-                    return;
-                }
+        setBusy(true);
+        statusLabel.setText("");
+        examService.authenticateUser(username, password, isTeacher)
+                .thenCompose(authenticated -> examService.supply(() -> {
+                    if (!authenticated) {
+                        return null;
+                    }
+
+                    // Get the student ID and name from the database
+                    String studentId = getStudentId(username);
+                    String studentName = getStudentName(username);
+
+                    // Log the retrieved student ID for debugging
+                    System.out.println("Retrieved student ID: " + studentId);
+                    System.out.println("Retrieved student name: " + studentName);
+
+                    // Verify the student ID exists in the database
+                    boolean exists = studentId != null && !studentId.isEmpty() && verifyStudentIdExists(studentId);
+                    return new String[]{exists ? studentId : null, studentName};
+                }))
+                .whenCompleteAsync((student, error) -> {
+                    setBusy(false);
+                    if (error != null) {
+                        statusLabel.setText("Login error: " + AsyncExamService.describe(error));
+                        error.printStackTrace();
+                    } else if (student == null) {
+                        statusLabel.setText("Invalid username or password");
+                    } else if (student[0] == null) {
+                        statusLabel.setText("Error: Student ID not found in database");
+                    } else {
+                        // Open the student dashboard directly without showing any alert
+                        openStudentDashboard(student[0], student[1]);
+                    }
+                }, AsyncExamService.FX_THREAD);
+    }
 
-                // Open the student dashboard directly without showing any alert
-                openStudentDashboard(studentId, studentName);
-            } else {
-                statusLabel.setText("Invalid username or password");
-            }
-        } catch (Exception e) {
-            statusLabel.setText("Login error: " + e.getMessage());
-            e.printStackTrace();
-        }
+    private void setBusy(boolean busy) {
+        loginButton.setDisable(busy);
+        loginProgress.setVisible(busy);
     }
 
     private String getStudentId(String username) {
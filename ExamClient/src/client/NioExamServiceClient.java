@@ -0,0 +1,296 @@
+package client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import shared.Admission;
+import shared.Answer;
+import shared.AvailableExams;
+import shared.EncryptedExam;
+import shared.Exam;
+import shared.ExamEventListener;
+import shared.ExamKey;
+import shared.ExamResult;
+import shared.NioProtocol;
+import shared.RemoteExamService;
+
+// RemoteExamService over the server's NIO transport (server.NioExamServer)
+// instead of RMI. All calls share one connection: each is sent as a frame
+// with a new request id and waits for the reply with that id, so any number
+// of threads can have calls in flight at once. A reader thread completes the
+// calls as their replies arrive.
+//
+// Errors keep the RMI shapes AsyncExamService relies on: an exception thrown
+// by the service arrives wrapped in ServerException, a failed connection is a
+// plain RemoteException. A lost connection fails the calls in flight and the
+// next call connects again.
+//
+// -Dexam.nio.timeoutMillis sets how long a call waits for its reply (default 120000).
+public class NioExamServiceClient implements RemoteExamService {
+
+    private static final long TIMEOUT_MILLIS = Long.getLong("exam.nio.timeoutMillis", 120000);
+
+    private final String host;
+    private final int port;
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Object>> pending = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile SocketChannel channel;
+
+    public NioExamServiceClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public void close() {
+        SocketChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private Object call(String method, Object... args) throws RemoteException {
+        long id = nextId.incrementAndGet();
+        ByteBuffer request;
+        try {
+            request = NioProtocol.request(id, method, args);
+        } catch (IOException e) {
+            throw new RemoteException("Cannot send " + method + ": " + e.getMessage(), e);
+        }
+
+        CompletableFuture<Object> reply = new CompletableFuture<>();
+        pending.put(id, reply);
+        SocketChannel connected = null;
+        try {
+            connected = connection();
+            synchronized (writeLock) {
+                while (request.hasRemaining()) {
+                    connected.write(request);
+                }
+            }
+        } catch (RemoteException e) {
+            pending.remove(id);
+            throw e;
+        } catch (IOException e) {
+            pending.remove(id);
+            closeChannel(connected, e);
+            throw new RemoteException("Could not send " + method + " to the exam server", e);
+        }
+
+        try {
+            return reply.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            throw new RemoteException(method + " failed", cause);
+        } catch (TimeoutException e) {
+            throw new RemoteException("No reply to " + method + " within " + TIMEOUT_MILLIS / 1000 + " s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted while waiting for " + method, e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    private synchronized SocketChannel connection() throws RemoteException {
+        SocketChannel current = channel;
+        if (current != null && current.isOpen()) {
+            return current;
+        }
+        try {
+            current = SocketChannel.open(new InetSocketAddress(host, port));
+            current.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            throw new ConnectException("Cannot reach the exam server at " + host + ":" + port, e);
+        }
+        channel = current;
+        SocketChannel reading = current;
+        Thread reader = new Thread(() -> readReplies(reading), "nio-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+        return current;
+    }
+
+    private void readReplies(SocketChannel source) {
+        ByteBuffer header = ByteBuffer.allocate(NioProtocol.HEADER_BYTES);
+        try {
+            while (true) {
+                header.clear();
+                readFully(source, header);
+                int length = header.getInt(0);
+                long id = header.getLong(4);
+                if (length < NioProtocol.HEADER_BYTES - 4 || length > NioProtocol.MAX_FRAME_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                ByteBuffer body = ByteBuffer.allocate(length + 4 - NioProtocol.HEADER_BYTES);
+                readFully(source, body);
+
+                CompletableFuture<Object> reply = pending.get(id);
+                if (reply == null) {
+                    // The call timed out
+                    continue;
+                }
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(body.array()))) {
+                    byte status = in.readByte();
+                    Object value = in.readObject();
+                    if (status == NioProtocol.OK) {
+                        reply.complete(value);
+                    } else {
+                        reply.completeExceptionally(serverFailure((Throwable) value));
+                    }
+                } catch (ClassNotFoundException | IOException e) {
+                    reply.completeExceptionally(new RemoteException("Cannot read the reply", e));
+                }
+            }
+        } catch (IOException e) {
+            closeChannel(source, e);
+        }
+    }
+
+    // Same wrapping as RMI, so callers can tell server errors from transport errors
+    private static RemoteException serverFailure(Throwable thrown) {
+        if (thrown instanceof Error) {
+            return new ServerError("Error occurred in server thread", (Error) thrown);
+        }
+        return new ServerException("RemoteException occurred in server thread", (Exception) thrown);
+    }
+
+    private static void readFully(SocketChannel source, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) < 0) {
+                throw new IOException("Connection closed by the exam server");
+            }
+        }
+    }
+
+    // Fails every call waiting on the connection; the next call reconnects
+    private void closeChannel(SocketChannel failed, IOException cause) {
+        synchronized (this) {
+            if (channel != failed) {
+                return;
+            }
+            channel = null;
+        }
+        try {
+            failed.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        RemoteException lost = new RemoteException("Connection to the exam server was lost", cause);
+        for (CompletableFuture<Object> reply : pending.values()) {
+            reply.completeExceptionally(lost);
+        }
+    }
+
+    @Override
+    public boolean authenticateUser(String username, String password, boolean isTeacher) throws RemoteException {
+        return (Boolean) call("authenticateUser", username, password, isTeacher);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Exam> getAvailableExams(String studentId) throws RemoteException {
+        return (List<Exam>) call("getAvailableExams", studentId);
+    }
+
+    @Override
+    public AvailableExams getAvailableExamsIfChanged(String studentId, long knownVersion) throws RemoteException {
+        return (AvailableExams) call("getAvailableExamsIfChanged", studentId, knownVersion);
+    }
+
+    @Override
+    public Admission requestAdmission(int examId, String studentId) throws RemoteException {
+        return (Admission) call("requestAdmission", examId, studentId);
+    }
+
+    @Override
+    public Exam getExamQuestions(int examId, String studentId) throws RemoteException {
+        return (Exam) call("getExamQuestions", examId, studentId);
+    }
+
+    @Override
+    public EncryptedExam prefetchExam(int examId, String studentId) throws RemoteException {
+        return (EncryptedExam) call("prefetchExam", examId, studentId);
+    }
+
+    @Override
+    public ExamKey releaseExamKey(int examId, String studentId) throws RemoteException {
+        return (ExamKey) call("releaseExamKey", examId, studentId);
+    }
+
+    @Override
+    public boolean submitExam(int examId, String studentId, List<Answer> answers) throws RemoteException {
+        return (Boolean) call("submitExam", examId, studentId, answers);
+    }
+
+    @Override
+    public boolean submitExam(int examId, String studentId, List<Answer> answers, String submissionKey)
+            throws RemoteException {
+        return (Boolean) call("submitExam", examId, studentId, answers, submissionKey);
+    }
+
+    @Override
+    public ExamResult getExamResult(int examId, String studentId) throws RemoteException {
+        return (ExamResult) call("getExamResult", examId, studentId);
+    }
+
+    // The listener goes as its RMI stub; events still arrive over RMI callbacks
+    @Override
+    public void subscribe(String studentId, ExamEventListener listener) throws RemoteException {
+        call("subscribe", studentId, listener);
+    }
+
+    @Override
+    public void unsubscribe(ExamEventListener listener) throws RemoteException {
+        call("unsubscribe", listener);
+    }
+
+    @Override
+    public boolean createExam(Exam exam) throws RemoteException {
+        return (Boolean) call("createExam", exam);
+    }
+
+    @Override
+    public boolean updateExam(Exam exam) throws RemoteException {
+        return (Boolean) call("updateExam", exam);
+    }
+
+    @Override
+    public boolean deleteExam(int examId) throws RemoteException {
+        return (Boolean) call("deleteExam", examId);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<ExamResult> getExamResults(int examId) throws RemoteException {
+        return (List<ExamResult>) call("getExamResults", examId);
+    }
+
+    @Override
+    public boolean setResultVisibility(int examId, boolean visible) throws RemoteException {
+        return (Boolean) call("setResultVisibility", examId, visible);
+    }
+}
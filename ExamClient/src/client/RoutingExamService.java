@@ -0,0 +1,268 @@
+package client;
+
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import shared.Admission;
+import shared.Answer;
+import shared.AvailableExams;
+import shared.ClusterNode;
+import shared.ClusterView;
+import shared.EncryptedExam;
+import shared.Exam;
+import shared.ExamEventListener;
+import shared.ExamHashRing;
+import shared.ExamKey;
+import shared.ExamResult;
+import shared.RemoteExamDirectory;
+import shared.RemoteExamService;
+
+// RemoteExamService for a cluster of exam servers. Calls about one exam go to
+// the node owning that exam on the consistent hash ring, so its exam and
+// completion caches stay hot; calls without an exam are spread by student id
+// or username. When a node cannot be reached the cluster view is fetched
+// again from the directory and the call is retried on the new owner.
+//
+// Event listeners are subscribed on every node: events are published by the
+// node that handled the call, which is the owner of the exam, not of the
+// student. Nodes that join the view later are subscribed when it is fetched.
+public class RoutingExamService implements RemoteExamService {
+
+    private static final String SERVICE_NAME = "ExamService";
+    private static final String DIRECTORY_NAME = "ExamDirectory";
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long RETRY_DELAY_MILLIS = 500;
+
+    private final String directoryHost;
+    private final int directoryPort;
+    private final Map<String, RemoteExamService> stubs = new ConcurrentHashMap<>();
+    // Student id by listener; ConcurrentHashMap takes no null, so "" stands for all students
+    private final Map<ExamEventListener, String> subscriptions = new ConcurrentHashMap<>();
+
+    private RemoteExamDirectory directory;
+    private volatile ExamHashRing ring;
+    private volatile List<String> nodeIds = new ArrayList<>();
+    private volatile long viewVersion = -1;
+
+    public RoutingExamService(String directoryHost, int directoryPort) throws RemoteException {
+        this.directoryHost = directoryHost;
+        this.directoryPort = directoryPort;
+        refreshView();
+    }
+
+    private interface Call<T> {
+
+        T invoke(RemoteExamService service) throws RemoteException;
+    }
+
+    // Run a call on the owner of key, failing over while the cluster view changes
+    private <T> T route(Object key, Call<T> call) throws RemoteException {
+        RemoteException lastFailure = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            String nodeId = key instanceof Integer ? ring.nodeFor((Integer) key) : ring.nodeFor((String) key);
+            if (nodeId == null) {
+                lastFailure = new RemoteException("No exam server is available");
+            } else {
+                try {
+                    return call.invoke(stubFor(nodeId));
+                } catch (ConnectException | ConnectIOException | NoSuchObjectException e) {
+                    // The call never reached the node, so it is safe to repeat elsewhere
+                    stubs.remove(nodeId);
+                    lastFailure = e;
+                }
+            }
+            pause(attempt);
+            refreshView();
+        }
+        throw lastFailure;
+    }
+
+    private synchronized void refreshView() throws RemoteException {
+        try {
+            if (directory == null) {
+                directory = (RemoteExamDirectory) LocateRegistry.getRegistry(directoryHost, directoryPort)
+                        .lookup(DIRECTORY_NAME);
+            }
+            ClusterView view = directory.getClusterView();
+            if (view.getVersion() != viewVersion) {
+                List<String> nodeIds = new ArrayList<>();
+                for (ClusterNode node : view.getNodes()) {
+                    nodeIds.add(node.getNodeId());
+                }
+                ring = new ExamHashRing(nodeIds);
+                viewVersion = view.getVersion();
+
+                List<String> joined = new ArrayList<>(nodeIds);
+                joined.removeAll(this.nodeIds);
+                this.nodeIds = nodeIds;
+                for (String nodeId : joined) {
+                    for (Map.Entry<ExamEventListener, String> entry : subscriptions.entrySet()) {
+                        subscribeOn(nodeId, entry.getValue(), entry.getKey());
+                    }
+                }
+            }
+        } catch (NotBoundException e) {
+            throw new RemoteException("Exam directory not bound at " + directoryHost + ":" + directoryPort, e);
+        } catch (RemoteException e) {
+            directory = null;
+            if (ring == null) {
+                throw e;
+            }
+            // Keep routing with the last known view
+        }
+    }
+
+    private RemoteExamService stubFor(String nodeId) throws RemoteException {
+        RemoteExamService stub = stubs.get(nodeId);
+        if (stub == null) {
+            int colon = nodeId.lastIndexOf(':');
+            try {
+                stub = (RemoteExamService) LocateRegistry.getRegistry(
+                        nodeId.substring(0, colon), Integer.parseInt(nodeId.substring(colon + 1)))
+                        .lookup(SERVICE_NAME);
+            } catch (NotBoundException e) {
+                throw new NoSuchObjectException("Exam service not bound on " + nodeId);
+            }
+            stubs.put(nodeId, stub);
+        }
+        return stub;
+    }
+
+    private static void pause(int attempt) {
+        try {
+            Thread.sleep(RETRY_DELAY_MILLIS * (attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean authenticateUser(String username, String password, boolean isTeacher) throws RemoteException {
+        return route(username, service -> service.authenticateUser(username, password, isTeacher));
+    }
+
+    @Override
+    public List<Exam> getAvailableExams(String studentId) throws RemoteException {
+        return route(studentId, service -> service.getAvailableExams(studentId));
+    }
+
+    @Override
+    public AvailableExams getAvailableExamsIfChanged(String studentId, long knownVersion) throws RemoteException {
+        return route(studentId, service -> service.getAvailableExamsIfChanged(studentId, knownVersion));
+    }
+
+    @Override
+    public Admission requestAdmission(int examId, String studentId) throws RemoteException {
+        return route(examId, service -> service.requestAdmission(examId, studentId));
+    }
+
+    @Override
+    public Exam getExamQuestions(int examId, String studentId) throws RemoteException {
+        return route(examId, service -> service.getExamQuestions(examId, studentId));
+    }
+
+    @Override
+    public EncryptedExam prefetchExam(int examId, String studentId) throws RemoteException {
+        return route(examId, service -> service.prefetchExam(examId, studentId));
+    }
+
+    @Override
+    public ExamKey releaseExamKey(int examId, String studentId) throws RemoteException {
+        return route(examId, service -> service.releaseExamKey(examId, studentId));
+    }
+
+    @Override
+    public boolean submitExam(int examId, String studentId, List<Answer> answers) throws RemoteException {
+        return route(examId, service -> service.submitExam(examId, studentId, answers));
+    }
+
+    @Override
+    public boolean submitExam(int examId, String studentId, List<Answer> answers, String submissionKey)
+            throws RemoteException {
+        return route(examId, service -> service.submitExam(examId, studentId, answers, submissionKey));
+    }
+
+    @Override
+    public ExamResult getExamResult(int examId, String studentId) throws RemoteException {
+        return route(examId, service -> service.getExamResult(examId, studentId));
+    }
+
+    // On every node, since each publishes the events of the exams it owns.
+    // Succeeds if at least one node took the subscription.
+    @Override
+    public void subscribe(String studentId, ExamEventListener listener) throws RemoteException {
+        subscriptions.put(listener, subscriptionKey(studentId));
+        RemoteException lastFailure = new RemoteException("No exam server is available");
+        boolean subscribed = false;
+        for (String nodeId : nodeIds) {
+            try {
+                stubFor(nodeId).subscribe(studentId, listener);
+                subscribed = true;
+            } catch (RemoteException e) {
+                stubs.remove(nodeId);
+                lastFailure = e;
+            }
+        }
+        if (!subscribed) {
+            subscriptions.remove(listener);
+            throw lastFailure;
+        }
+    }
+
+    // Subscribes a listener on a node that joined the view; the node may not be up yet
+    private void subscribeOn(String nodeId, String key, ExamEventListener listener) {
+        try {
+            stubFor(nodeId).subscribe(key.isEmpty() ? null : key, listener);
+        } catch (RemoteException e) {
+            stubs.remove(nodeId);
+        }
+    }
+
+    @Override
+    public void unsubscribe(ExamEventListener listener) throws RemoteException {
+        subscriptions.remove(listener);
+        for (RemoteExamService stub : stubs.values()) {
+            try {
+                stub.unsubscribe(listener);
+            } catch (RemoteException e) {
+                // The node drops listeners it cannot reach on its own
+            }
+        }
+    }
+
+    private static String subscriptionKey(String studentId) {
+        return studentId != null ? studentId : "";
+    }
+
+    @Override
+    public boolean createExam(Exam exam) throws RemoteException {
+        return route(exam.getTitle(), service -> service.createExam(exam));
+    }
+
+    @Override
+    public boolean updateExam(Exam exam) throws RemoteException {
+        return route(exam.getId(), service -> service.updateExam(exam));
+    }
+
+    @Override
+    public boolean deleteExam(int examId) throws RemoteException {
+        return route(examId, service -> service.deleteExam(examId));
+    }
+
+    @Override
+    public List<ExamResult> getExamResults(int examId) throws RemoteException {
+        return route(examId, service -> service.getExamResults(examId));
+    }
+
+    @Override
+    public boolean setResultVisibility(int examId, boolean visible) throws RemoteException {
+        return route(examId, service -> service.setResultVisibility(examId, visible));
+    }
+}
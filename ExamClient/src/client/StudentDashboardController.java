@@ -1,6 +1,12 @@
 package client;
 
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javafx.animation.PauseTransition;
+import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -11,18 +17,26 @@ import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
+import shared.AvailableExams;
 import shared.Exam;
+import shared.ExamEvent;
 import shared.ExamResult;
-import shared.RemoteExamService;
 
 public class StudentDashboardController {
 
     @FXML
     private Label studentInfoLabel;
 
+    @FXML
+    private ProgressIndicator busyIndicator;
+
     @FXML
     private TableView<Exam> availableExamsTable;
 
+    @FXML
+    private Label admissionLabel;
+
     @FXML
     private TableColumn<Exam, Integer> examIdColumn;
 
@@ -35,6 +49,9 @@ public class StudentDashboardController {
     @FXML
     private TableColumn<Exam, Integer> examDurationColumn;
 
+    @FXML
+    private TableColumn<Exam, String> examStartColumn;
+
     @FXML
     private TableView<ExamResult> resultsTable;
 
@@ -56,9 +73,20 @@ public class StudentDashboardController {
     @FXML
     private TableColumn<ExamResult, java.util.Date> resultSubmissionTimeColumn;
 
-    private RemoteExamService examService;
+    private AsyncExamService examService;
     private String studentId;
     private String studentName;
+    private ExamPrefetcher prefetcher;
+    private ExamEventSubscription subscription;
+
+    // Version of the available exams list currently shown, -1 before the first load
+    private long availableExamsVersion = -1;
+
+    // Server calls in progress; the busy indicator shows while there are any
+    private int pendingCalls;
+
+    // Wait before asking again for admission to a starting exam, null when not waiting
+    private PauseTransition admissionWait;
 
     public void initialize() {
         // Set up the available exams table columns
@@ -66,6 +94,8 @@ public class StudentDashboardController {
         examTitleColumn.setCellValueFactory(new PropertyValueFactory<>("title"));
         examDescriptionColumn.setCellValueFactory(new PropertyValueFactory<>("description"));
         examDurationColumn.setCellValueFactory(new PropertyValueFactory<>("durationMinutes"));
+        examStartColumn.setCellValueFactory(cell -> new SimpleStringProperty(
+                cell.getValue().getScheduledStart() > 0 ? formatTime(cell.getValue().getScheduledStart()) : "Open"));
 
         // Set up the results table columns
         resultExamIdColumn.setCellValueFactory(new PropertyValueFactory<>("examId"));
@@ -76,7 +106,7 @@ public class StudentDashboardController {
         resultSubmissionTimeColumn.setCellValueFactory(new PropertyValueFactory<>("submissionTime"));
     }
 
-    public void setExamService(RemoteExamService examService) {
+    public void setExamService(AsyncExamService examService) {
         this.examService = examService;
     }
 
@@ -88,71 +118,109 @@ public class StudentDashboardController {
         // Log the student ID for debugging
         System.out.println("Student dashboard initialized with ID: " + studentId);
 
+        // Scheduled exams are downloaded encrypted before they start
+        prefetcher = new ExamPrefetcher(examService.getService(), studentId);
+
+        // New exams and released results show up without pressing refresh
+        subscription = new ExamEventSubscription(examService, studentId, this::handleEvents);
+        subscription.open();
+
         // Load available exams and results
         handleRefreshExams(null);
         handleRefreshResults(null);
     }
 
-    @FXML
-    private void handleRefreshExams(ActionEvent event) {
-        try {
-            List<Exam> exams = examService.getAvailableExams(studentId);
-            availableExamsTable.setItems(FXCollections.observableArrayList(exams));
-
-            if (exams.isEmpty()) {
-                showAlert(Alert.AlertType.INFORMATION, "No Exams", "No Available Exams",
-                        "There are no available exams for you at this time.");
+    // Called on the FX thread with each batch of events from the server
+    private void handleEvents(List<ExamEvent> events) {
+        boolean exams = false;
+        boolean results = false;
+        for (ExamEvent event : events) {
+            switch (event.getType()) {
+                case EXAM_PUBLISHED:
+                case EXAMS_CHANGED:
+                    exams = true;
+                    break;
+                case RESULTS_VISIBLE:
+                case EXAM_SUBMITTED:
+                    results = true;
+                    break;
+                case RESYNC:
+                    exams = true;
+                    results = true;
+                    break;
+                default:
+                    break;
             }
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Error", "Could not refresh exams", e.getMessage());
-            e.printStackTrace();
+        }
+        if (exams) {
+            refreshExams(true);
+        }
+        if (results) {
+            refreshResults(true);
         }
     }
 
     @FXML
-    private void handleRefreshResults(ActionEvent event) {
-        try {
-            // Create a list to store results
-            java.util.List<ExamResult> allResults = new java.util.ArrayList<>();
-
-            // Get completed exams
-            List<Exam> completedExams = getCompletedExams();
+    private void handleRefreshExams(ActionEvent event) {
+        refreshExams(false);
+    }
 
-            if (completedExams.isEmpty()) {
-                showAlert(Alert.AlertType.INFORMATION, "No Results", "No Completed Exams",
-                        "You haven't completed any exams yet.");
-                return;
-            }
+    @FXML
+    private void handleRefreshResults(ActionEvent event) {
+        refreshResults(false);
+    }
 
-            // For each completed exam, try to get the result if results are visible
-            boolean hasHiddenResults = false;
-            for (Exam exam : completedExams) {
-                try {
-                    // Check if results are visible for this exam
-                    if (exam.isResultsVisible()) {
-                        ExamResult result = examService.getExamResult(exam.getId(), studentId);
-                        if (result != null) {
-                            allResults.add(result);
+    // Quiet refreshes, triggered by events, only update the table
+    private void refreshExams(boolean quiet) {
+        // Only transfer the list when it changed since the last refresh
+        track(examService.getAvailableExamsIfChanged(studentId, availableExamsVersion))
+                .whenCompleteAsync((available, error) -> {
+                    if (error != null) {
+                        if (!quiet) {
+                            showAlert(Alert.AlertType.ERROR, "Error", "Could not refresh exams",
+                                    AsyncExamService.describe(error));
                         }
-                    } else {
-                        // Results exist but are not visible yet
-                        hasHiddenResults = true;
-                        System.out.println("Results for exam " + exam.getId() + " are not yet released by the teacher");
+                        error.printStackTrace();
+                        return;
                     }
-                } catch (Exception e) {
-                    System.out.println("Error getting result for exam " + exam.getId() + ": " + e.getMessage());
-                    // Only count as hidden if it's specifically about visibility
-                    if (e.getMessage() != null && e.getMessage().contains("not available for viewing")) {
-                        hasHiddenResults = true;
+                    if (available.isModified()) {
+                        availableExamsTable.setItems(FXCollections.observableArrayList(available.getExams()));
+                        availableExamsVersion = available.getVersion();
                     }
+                    prefetcher.schedule(availableExamsTable.getItems());
+
+                    if (availableExamsTable.getItems().isEmpty() && !quiet) {
+                        showAlert(Alert.AlertType.INFORMATION, "No Exams", "No Available Exams",
+                                "There are no available exams for you at this time.");
+                    }
+                }, AsyncExamService.FX_THREAD);
+    }
+
+    private void refreshResults(boolean quiet) {
+        track(examService.supply(this::loadResults)).whenCompleteAsync((loaded, error) -> {
+            if (error != null) {
+                if (!quiet) {
+                    showAlert(Alert.AlertType.ERROR, "Error", "Could not refresh results",
+                            AsyncExamService.describe(error));
                 }
+                error.printStackTrace();
+                return;
             }
 
             // Update the table with all visible results
-            resultsTable.setItems(FXCollections.observableArrayList(allResults));
+            resultsTable.setItems(FXCollections.observableArrayList(loaded.results));
+            if (quiet) {
+                return;
+            }
+
+            if (!loaded.anyCompleted) {
+                showAlert(Alert.AlertType.INFORMATION, "No Results", "No Completed Exams",
+                        "You haven't completed any exams yet.");
+                return;
+            }
 
-            if (allResults.isEmpty()) {
-                if (hasHiddenResults) {
+            if (loaded.results.isEmpty()) {
+                if (loaded.hasHiddenResults) {
                     showAlert(Alert.AlertType.INFORMATION, "Results Not Available", "Results Pending Release",
                             "You have completed exams, but the results have not been released by the teacher yet.");
                 } else {
@@ -160,10 +228,58 @@ public class StudentDashboardController {
                             "There are no exam results available for you at this time.");
                 }
             }
-        } catch (Exception e) {
-            showAlert(Alert.AlertType.ERROR, "Error", "Could not refresh results", e.getMessage());
-            e.printStackTrace();
+        }, AsyncExamService.FX_THREAD);
+    }
+
+    // Results of the student's completed exams; runs off the FX thread
+    private LoadedResults loadResults() {
+        LoadedResults loaded = new LoadedResults();
+
+        // Get completed exams
+        List<Exam> completedExams = getCompletedExams();
+        loaded.anyCompleted = !completedExams.isEmpty();
+
+        // For each completed exam, try to get the result if results are visible
+        for (Exam exam : completedExams) {
+            try {
+                // Check if results are visible for this exam
+                if (exam.isResultsVisible()) {
+                    ExamResult result = examService.getService().getExamResult(exam.getId(), studentId);
+                    if (result != null) {
+                        loaded.results.add(result);
+                    }
+                } else {
+                    // Results exist but are not visible yet
+                    loaded.hasHiddenResults = true;
+                    System.out.println("Results for exam " + exam.getId() + " are not yet released by the teacher");
+                }
+            } catch (Exception e) {
+                System.out.println("Error getting result for exam " + exam.getId() + ": " + e.getMessage());
+                // Only count as hidden if it's specifically about visibility
+                if (e.getMessage() != null && e.getMessage().contains("not available for viewing")) {
+                    loaded.hasHiddenResults = true;
+                }
+            }
         }
+        return loaded;
+    }
+
+    private static class LoadedResults {
+
+        private final List<ExamResult> results = new ArrayList<>();
+        private boolean anyCompleted;
+        private boolean hasHiddenResults;
+    }
+
+    // Show the busy indicator until the call completes
+    private <T> CompletableFuture<T> track(CompletableFuture<T> call) {
+        pendingCalls++;
+        busyIndicator.setVisible(true);
+        call.whenCompleteAsync((value, error) -> {
+            pendingCalls--;
+            busyIndicator.setVisible(pendingCalls > 0);
+        }, AsyncExamService.FX_THREAD);
+        return call;
     }
 
     private List<Exam> getCompletedExams() {
@@ -242,19 +358,71 @@ public class StudentDashboardController {
             return;
         }
 
-        try {
-            // Verify student ID before starting exam
-            if (studentId == null || studentId.trim().isEmpty()) {
-                showAlert(Alert.AlertType.ERROR, "Error", "Invalid Student ID",
-                        "Your student ID is invalid. Please log in again.");
-                return;
-            }
+        // Verify student ID before starting exam
+        if (studentId == null || studentId.trim().isEmpty()) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Invalid Student ID",
+                    "Your student ID is invalid. Please log in again.");
+            return;
+        }
+
+        if (selectedExam.getScheduledStart() > prefetcher.serverTime()) {
+            showAlert(Alert.AlertType.INFORMATION, "Not Started", "Exam Not Started Yet",
+                    "This exam starts at " + formatTime(selectedExam.getScheduledStart()) + ".");
+            return;
+        }
+
+        System.out.println("Starting exam with student ID: " + studentId);
+
+        availableExamsTable.setDisable(true);
+        startWhenAdmitted(selectedExam);
+    }
 
-            System.out.println("Starting exam with student ID: " + studentId);
+    // At the start of a scheduled exam the server lets students in a few at a
+    // time; wait in line, asking again when the server says to
+    private void startWhenAdmitted(Exam selectedExam) {
+        admissionWait = null;
+        track(examService.call(true, service -> service.requestAdmission(selectedExam.getId(), studentId)))
+                .whenCompleteAsync((admission, error) -> {
+                    if (error != null) {
+                        availableExamsTable.setDisable(false);
+                        admissionLabel.setText("");
+                        showAlert(Alert.AlertType.ERROR, "Error", "Could not start exam",
+                                AsyncExamService.describe(error));
+                        error.printStackTrace();
+                        return;
+                    }
+                    if (admission.isAdmitted()) {
+                        admissionLabel.setText("");
+                        openExam(selectedExam);
+                        return;
+                    }
+                    admissionLabel.setText(admission.getPosition() > 0
+                            ? "You are number " + admission.getPosition() + " in line..."
+                            : "Waiting for the exam to open...");
+                    admissionWait = new PauseTransition(Duration.millis(admission.getRetryAfterMillis()));
+                    admissionWait.setOnFinished(e -> startWhenAdmitted(selectedExam));
+                    admissionWait.play();
+                }, AsyncExamService.FX_THREAD);
+    }
 
-            // Get the exam with questions
-            Exam examWithQuestions = examService.getExamQuestions(selectedExam.getId(), studentId);
+    private void openExam(Exam selectedExam) {
+        // Get the exam with questions, or just its key if it was downloaded in advance.
+        // Starting is safe to repeat: the server keeps the first session start.
+        track(examService.call(true, service -> prefetcher.open(selectedExam.getId())))
+                .whenCompleteAsync((examWithQuestions, error) -> {
+                    availableExamsTable.setDisable(false);
+                    if (error != null) {
+                        showAlert(Alert.AlertType.ERROR, "Error", "Could not start exam",
+                                AsyncExamService.describe(error));
+                        error.printStackTrace();
+                        return;
+                    }
+                    openExamSession(examWithQuestions);
+                }, AsyncExamService.FX_THREAD);
+    }
 
+    private void openExamSession(Exam examWithQuestions) {
+        try {
             // Open the exam session window
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/client/fxml/ExamSession.fxml"));
             Parent root = loader.load();
@@ -291,6 +459,12 @@ public class StudentDashboardController {
     @FXML
     private void handleLogout(ActionEvent event) {
         try {
+            prefetcher.shutdown();
+            subscription.close();
+            if (admissionWait != null) {
+                admissionWait.stop();
+            }
+
             // Close the current window
             Stage stage = (Stage) studentInfoLabel.getScene().getWindow();
             stage.close();
@@ -312,6 +486,10 @@ public class StudentDashboardController {
         }
     }
 
+    private static String formatTime(long millis) {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new Date(millis));
+    }
+
     private void showAlert(Alert.AlertType type, String title, String header, String content) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
@@ -0,0 +1,51 @@
+package shared;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class ClusterView implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long version;
+    private long examsVersion;
+    private List<ClusterNode> nodes;
+
+    // Constructors, getters, and setters
+    public ClusterView() {
+    }
+
+    public ClusterView(long version, long examsVersion, List<ClusterNode> nodes) {
+        this.version = version;
+        this.examsVersion = examsVersion;
+        this.nodes = nodes;
+    }
+
+    // Getters and setters
+
+    // Incremented whenever a node joins or leaves
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    // Incremented whenever a node reports a change to exams, so the others reload their catalogs
+    public long getExamsVersion() {
+        return examsVersion;
+    }
+
+    public void setExamsVersion(long examsVersion) {
+        this.examsVersion = examsVersion;
+    }
+
+    public List<ClusterNode> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<ClusterNode> nodes) {
+        this.nodes = nodes;
+    }
+}
@@ -0,0 +1,12 @@
+package shared;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Callback exported by a client and registered with RemoteExamService.subscribe.
+// The server delivers events in batches, in order, from its own threads.
+public interface ExamEventListener extends Remote {
+
+    void onEvents(List<ExamEvent> events) throws RemoteException;
+}
@@ -0,0 +1,87 @@
+package shared;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.server.RemoteObject;
+
+// Wire format of the NIO transport (server.NioExamServer and
+// client.NioExamServiceClient). Every message is a frame: an int with the
+// length of the rest, a long request id, then the body. A request body is
+// the method name and the argument array; a response body is a status byte
+// and the result, or the exception the service threw, all Java-serialized.
+// Responses carry the id of their request and may come back in any order.
+//
+// Remote arguments (event listeners) are sent as their RMI stubs, so the
+// server still calls them back over RMI.
+public final class NioProtocol {
+
+    public static final int HEADER_BYTES = 12;
+    public static final int MAX_FRAME_BYTES = 16 * 1024 * 1024;
+    public static final byte OK = 0;
+    public static final byte FAILED = 1;
+
+    private NioProtocol() {
+    }
+
+    public static ByteBuffer request(long id, String method, Object[] args) throws IOException {
+        FrameBuilder frame = new FrameBuilder();
+        try (ObjectOutputStream out = new RemoteReplacingStream(frame)) {
+            out.writeUTF(method);
+            out.writeObject(args);
+        }
+        return frame.toBuffer(id);
+    }
+
+    public static ByteBuffer response(long id, byte status, Object value) throws IOException {
+        FrameBuilder frame = new FrameBuilder();
+        try (ObjectOutputStream out = new ObjectOutputStream(frame)) {
+            out.writeByte(status);
+            out.writeObject(value);
+        }
+        return frame.toBuffer(id);
+    }
+
+    // Collects a body after room for the header, so the frame is never copied
+    private static class FrameBuilder extends ByteArrayOutputStream {
+
+        FrameBuilder() {
+            super(256);
+            count = HEADER_BYTES;
+        }
+
+        ByteBuffer toBuffer(long id) throws IOException {
+            if (count > MAX_FRAME_BYTES) {
+                throw new IOException("Message of " + count + " bytes is larger than " + MAX_FRAME_BYTES);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(buf, 0, count);
+            buffer.putInt(0, count - 4);
+            buffer.putLong(4, id);
+            return buffer;
+        }
+    }
+
+    private static class RemoteReplacingStream extends ObjectOutputStream {
+
+        RemoteReplacingStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof Remote) {
+                try {
+                    return RemoteObject.toStub((Remote) obj);
+                } catch (NoSuchObjectException e) {
+                    // Not exported here, so it is a stub already
+                }
+            }
+            return obj;
+        }
+    }
+}
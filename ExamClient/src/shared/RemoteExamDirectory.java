@@ -0,0 +1,17 @@
+package shared;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+// Membership service for a cluster of exam server nodes
+public interface RemoteExamDirectory extends Remote {
+    // Server nodes
+    ClusterView register(ClusterNode node) throws RemoteException;
+    // Returns null if the node is unknown, e.g. after missed heartbeats; it must register again
+    ClusterView heartbeat(String nodeId) throws RemoteException;
+    void unregister(String nodeId) throws RemoteException;
+    ClusterView examsChanged(String nodeId) throws RemoteException;
+
+    // Clients
+    ClusterView getClusterView() throws RemoteException;
+}
@@ -10,9 +10,20 @@ public interface RemoteExamService extends Remote {
     
     // Student methods
     List<Exam> getAvailableExams(String studentId) throws RemoteException;
+    AvailableExams getAvailableExamsIfChanged(String studentId, long knownVersion) throws RemoteException;
+    // Scheduled exams admit students at a steady rate after the start; ask before starting
+    Admission requestAdmission(int examId, String studentId) throws RemoteException;
     Exam getExamQuestions(int examId, String studentId) throws RemoteException;
+    EncryptedExam prefetchExam(int examId, String studentId) throws RemoteException;
+    ExamKey releaseExamKey(int examId, String studentId) throws RemoteException;
     boolean submitExam(int examId, String studentId, List<Answer> answers) throws RemoteException;
+    // submissionKey identifies one submission; send the same key again when retrying it
+    boolean submitExam(int examId, String studentId, List<Answer> answers, String submissionKey) throws RemoteException;
     ExamResult getExamResult(int examId, String studentId) throws RemoteException;
+
+    // Notifications; studentId limits per-student events to that student, null receives all
+    void subscribe(String studentId, ExamEventListener listener) throws RemoteException;
+    void unsubscribe(ExamEventListener listener) throws RemoteException;
     
     // Teacher methods
     boolean createExam(Exam exam) throws RemoteException;
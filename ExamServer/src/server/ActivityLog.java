@@ -0,0 +1,149 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Asynchronous server activity log.
+// Request threads only enqueue into a bounded ring buffer. A single daemon
+// thread drains it at a fixed frame rate, writes the batch to a rolling
+// file and hands it to the listeners (the admin UI) in one call per frame.
+// Messages that arrive while the buffer is full are dropped and counted.
+public class ActivityLog {
+
+    private static final int BUFFER_CAPACITY = 8192;
+    private static final long FRAME_MILLIS = 100;
+    private static final long MAX_FILE_BYTES = 10 * 1024 * 1024;
+    private static final int MAX_FILE_BACKUPS = 5;
+
+    private static ActivityLog defaultLog;
+
+    private final LogRingBuffer<Entry> buffer = new LogRingBuffer<>(BUFFER_CAPACITY);
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final RollingFileSink fileSink;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private final Thread drainer;
+    private volatile boolean running = true;
+    private long droppedReported;
+
+    public interface Listener {
+
+        // Called on the log thread once per frame with the new lines
+        void onLogLines(List<String> lines, long droppedTotal);
+    }
+
+    public ActivityLog(RollingFileSink fileSink) {
+        this.fileSink = fileSink;
+        this.drainer = new Thread(this::drainLoop, "activity-log");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    // Process-wide log writing to logs/exam-server.log
+    public static synchronized ActivityLog getDefault() {
+        if (defaultLog == null) {
+            defaultLog = new ActivityLog(new RollingFileSink(
+                    Paths.get("logs", "exam-server.log"), MAX_FILE_BYTES, MAX_FILE_BACKUPS));
+        }
+        return defaultLog;
+    }
+
+    public void log(String message) {
+        if (!buffer.offer(new Entry(System.currentTimeMillis(), message))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Flush what is queued and stop the log thread
+    public void close() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<Entry> entries = new ArrayList<>();
+        while (running) {
+            try {
+                Thread.sleep(FRAME_MILLIS);
+            } catch (InterruptedException e) {
+                // Woken up by close(); fall through to a final flush
+            }
+            flush(entries);
+        }
+        flush(entries);
+        if (fileSink != null) {
+            fileSink.close();
+        }
+    }
+
+    private void flush(List<Entry> entries) {
+        entries.clear();
+        buffer.drainTo(entries, buffer.capacity());
+
+        List<String> lines = new ArrayList<>(entries.size() + 1);
+        for (Entry entry : entries) {
+            lines.add("[" + timeFormat.format(new Date(entry.time)) + "] " + entry.message);
+        }
+
+        long droppedTotal = dropped.get();
+        if (droppedTotal > droppedReported) {
+            lines.add("[" + timeFormat.format(new Date()) + "] " + (droppedTotal - droppedReported)
+                    + " log messages dropped (log buffer full)");
+            droppedReported = droppedTotal;
+        }
+
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        if (fileSink != null) {
+            try {
+                fileSink.write(lines);
+            } catch (IOException e) {
+                System.err.println("Error writing activity log: " + e.getMessage());
+            }
+        }
+
+        for (Listener listener : listeners) {
+            try {
+                listener.onLogLines(lines, droppedTotal);
+            } catch (RuntimeException e) {
+                System.err.println("Error in activity log listener: " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Entry {
+
+        private final long time;
+        private final String message;
+
+        Entry(long time, String message) {
+            this.time = time;
+            this.message = message;
+        }
+    }
+}
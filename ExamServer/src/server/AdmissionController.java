@@ -0,0 +1,214 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import shared.Admission;
+
+// Staggers the start of scheduled exams. For the first minutes after a
+// scheduled start, students are admitted through a token bucket per exam:
+// up to burst students at once, then ratePerSecond. Everyone else waits in a
+// FIFO queue and is told their place in line and when to ask again, which
+// costs no database work. Queued students are admitted in order when tokens
+// are available, and find out on their next request.
+//
+// A student who stops asking loses their place after QUEUE_EXPIRY_MILLIS.
+// Outside the start window admission is immediate.
+//
+// -Dexam.admission.ratePerSecond=20, -Dexam.admission.burst=40,
+// -Dexam.admission.windowMinutes=15; a rate of 0 turns admission control off.
+public class AdmissionController {
+
+    private static final double RATE_PER_SECOND = Double.parseDouble(
+            System.getProperty("exam.admission.ratePerSecond", "20"));
+    private static final int BURST = Integer.getInteger("exam.admission.burst", 40);
+    private static final long WINDOW_MILLIS = Long.getLong("exam.admission.windowMinutes", 15) * 60 * 1000;
+    private static final long QUEUE_EXPIRY_MILLIS = 30 * 1000;
+    private static final long MIN_RETRY_MILLIS = 250;
+    private static final long MAX_RETRY_MILLIS = 10 * 1000;
+
+    private final Map<Integer, Gate> gates = new ConcurrentHashMap<>();
+
+    // Admits the student now, or queues them and says when to ask again
+    public Admission admit(int examId, long scheduledStart, String studentId) {
+        long now = System.currentTimeMillis();
+        if (scheduledStart <= 0 || RATE_PER_SECOND <= 0) {
+            return new Admission(true, 0, 0);
+        }
+        if (now < scheduledStart) {
+            return new Admission(false, 0, Math.min(scheduledStart - now, MAX_RETRY_MILLIS));
+        }
+        if (now >= scheduledStart + WINDOW_MILLIS) {
+            gates.remove(examId);
+            return new Admission(true, 0, 0);
+        }
+        return gates.computeIfAbsent(examId, id -> new Gate(id, scheduledStart)).admit(studentId, now);
+    }
+
+    // Queues of exams still in their start window, for the admin dashboard
+    public List<QueueStatus> getQueues() {
+        long now = System.currentTimeMillis();
+        List<QueueStatus> queues = new ArrayList<>();
+        for (Iterator<Gate> it = gates.values().iterator(); it.hasNext(); ) {
+            Gate gate = it.next();
+            if (now >= gate.scheduledStart + WINDOW_MILLIS) {
+                it.remove();
+            } else {
+                queues.add(gate.status(now));
+            }
+        }
+        queues.sort((a, b) -> Integer.compare(a.getExamId(), b.getExamId()));
+        return queues;
+    }
+
+    // Call when an exam is changed or deleted; a new start time starts a new window
+    public void reset(int examId) {
+        gates.remove(examId);
+    }
+
+    private static long retryAfter(long position) {
+        long millis = (long) (position * 1000 / RATE_PER_SECOND);
+        millis = Math.max(MIN_RETRY_MILLIS, Math.min(MAX_RETRY_MILLIS, millis));
+        // Spread the retries of students who joined together
+        return millis + ThreadLocalRandom.current().nextLong(millis / 5 + 1);
+    }
+
+    public static class QueueStatus {
+
+        private final int examId;
+        private final int waiting;
+        private final int admitted;
+        private final long estimatedWaitMillis;
+        private final long longestWaitMillis;
+
+        QueueStatus(int examId, int waiting, int admitted, long estimatedWaitMillis, long longestWaitMillis) {
+            this.examId = examId;
+            this.waiting = waiting;
+            this.admitted = admitted;
+            this.estimatedWaitMillis = estimatedWaitMillis;
+            this.longestWaitMillis = longestWaitMillis;
+        }
+
+        public int getExamId() {
+            return examId;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public int getAdmitted() {
+            return admitted;
+        }
+
+        // How long the last student in line still has to wait
+        public long getEstimatedWaitMillis() {
+            return estimatedWaitMillis;
+        }
+
+        // Longest time an admitted student spent in line
+        public long getLongestWaitMillis() {
+            return longestWaitMillis;
+        }
+    }
+
+    // Token bucket and queue of one exam; all access is synchronized on the gate
+    private static class Gate {
+
+        private final int examId;
+        private final long scheduledStart;
+        private final LinkedHashMap<String, Ticket> queue = new LinkedHashMap<>();
+        private final Set<String> admitted = new HashSet<>();
+        private double tokens = BURST;
+        private long refilledAt;
+        // Tickets are numbered in arrival order; a student's position is their
+        // ticket minus the last ticket that left the queue
+        private long nextTicket;
+        private long servedTicket;
+        private long longestWaitMillis;
+
+        Gate(int examId, long scheduledStart) {
+            this.examId = examId;
+            this.scheduledStart = scheduledStart;
+            this.refilledAt = System.currentTimeMillis();
+        }
+
+        synchronized Admission admit(String studentId, long now) {
+            refill(now);
+            serveQueue(now);
+            if (admitted.contains(studentId)) {
+                return new Admission(true, 0, 0);
+            }
+
+            Ticket ticket = queue.get(studentId);
+            if (ticket == null) {
+                if (queue.isEmpty() && tokens >= 1) {
+                    tokens--;
+                    admitted.add(studentId);
+                    return new Admission(true, 0, 0);
+                }
+                ticket = new Ticket(++nextTicket, now);
+                queue.put(studentId, ticket);
+            }
+            ticket.lastSeen = now;
+            long position = ticket.number - servedTicket;
+            return new Admission(false, (int) position, retryAfter(position));
+        }
+
+        synchronized QueueStatus status(long now) {
+            refill(now);
+            serveQueue(now);
+            long estimate = queue.isEmpty() ? 0 : (long) ((nextTicket - servedTicket) * 1000 / RATE_PER_SECOND);
+            return new QueueStatus(examId, queue.size(), admitted.size(), estimate, longestWaitMillis);
+        }
+
+        private void refill(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(BURST, tokens + (now - refilledAt) * RATE_PER_SECOND / 1000);
+                refilledAt = now;
+            }
+        }
+
+        // Admits from the head of the queue while there are tokens; students who
+        // stopped asking are dropped without using a token
+        private void serveQueue(long now) {
+            Iterator<Map.Entry<String, Ticket>> it = queue.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Ticket> head = it.next();
+                Ticket ticket = head.getValue();
+                if (now - ticket.lastSeen > QUEUE_EXPIRY_MILLIS) {
+                    it.remove();
+                    servedTicket = ticket.number;
+                    continue;
+                }
+                if (tokens < 1) {
+                    return;
+                }
+                it.remove();
+                tokens--;
+                servedTicket = ticket.number;
+                admitted.add(head.getKey());
+                longestWaitMillis = Math.max(longestWaitMillis, now - ticket.joined);
+            }
+        }
+    }
+
+    private static class Ticket {
+
+        private final long number;
+        private final long joined;
+        private long lastSeen;
+
+        Ticket(long number, long joined) {
+            this.number = number;
+            this.joined = joined;
+            this.lastSeen = joined;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package server;
+
+import java.util.Arrays;
+import java.util.List;
+import shared.Answer;
+
+// Correct options and points for the questions of one exam, used to score
+// a submission. Question ids are kept sorted in a primitive array so
+// scoring needs no boxing and no hashing.
+public class AnswerKey {
+
+    private final int[] questionIds;
+    private final int[] correctOptions;
+    private final int[] points;
+    private final int totalPossible;
+
+    private AnswerKey(int[] questionIds, int[] correctOptions, int[] points) {
+        this.questionIds = questionIds;
+        this.correctOptions = correctOptions;
+        this.points = points;
+
+        int total = 0;
+        for (int p : points) {
+            total += p;
+        }
+        this.totalPossible = total;
+    }
+
+    public int getTotalPossible() {
+        return totalPossible;
+    }
+
+    public int getQuestionCount() {
+        return questionIds.length;
+    }
+
+    public boolean containsQuestion(int questionId) {
+        return Arrays.binarySearch(questionIds, questionId) >= 0;
+    }
+
+    // Points earned; every correct answer counts, including repeats of a question
+    public int score(List<Answer> answers) {
+        int score = 0;
+
+        for (Answer answer : answers) {
+            int index = Arrays.binarySearch(questionIds, answer.getQuestionId());
+            if (index >= 0 && correctOptions[index] == answer.getSelectedOptionIndex()) {
+                score += points[index];
+            }
+        }
+        return score;
+    }
+
+    public static class Builder {
+
+        private int[] questionIds = new int[16];
+        private int[] correctOptions = new int[16];
+        private int[] points = new int[16];
+        private int size;
+
+        public Builder add(int questionId, int correctOption, int questionPoints) {
+            if (size == questionIds.length) {
+                questionIds = Arrays.copyOf(questionIds, size * 2);
+                correctOptions = Arrays.copyOf(correctOptions, size * 2);
+                points = Arrays.copyOf(points, size * 2);
+            }
+            questionIds[size] = questionId;
+            correctOptions[size] = correctOption;
+            points[size] = questionPoints;
+            size++;
+            return this;
+        }
+
+        public AnswerKey build() {
+            // Sort the three columns together by question id
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Integer.compare(questionIds[a], questionIds[b]));
+
+            int[] sortedIds = new int[size];
+            int[] sortedCorrect = new int[size];
+            int[] sortedPoints = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedIds[i] = questionIds[order[i]];
+                sortedCorrect[i] = correctOptions[order[i]];
+                sortedPoints[i] = points[order[i]];
+            }
+            return new AnswerKey(sortedIds, sortedCorrect, sortedPoints);
+        }
+    }
+}
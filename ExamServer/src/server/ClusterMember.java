@@ -0,0 +1,154 @@
+package server;
+
+import java.rmi.registry.LocateRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import shared.ClusterNode;
+import shared.ClusterView;
+import shared.ExamHashRing;
+import shared.RemoteExamDirectory;
+
+// Membership of this server node in a cluster run by an ExamDirectory.
+// Registers the node, sends a heartbeat every second and applies every new
+// cluster view to the service: a new member list rebuilds the hash ring that
+// decides which exams this node owns, and a new exams version reloads the
+// catalog after another node changed exams. Local exam changes are reported
+// to the directory in turn.
+public class ClusterMember implements ExamServiceListener {
+
+    private static final long HEARTBEAT_MILLIS = 1000;
+
+    private final String directoryHost;
+    private final int directoryPort;
+    private final ClusterNode self;
+    private final ExamServiceImpl service;
+    private final ActivityLog activityLog;
+    private final ScheduledExecutorService executor;
+
+    private RemoteExamDirectory directory;
+    private long viewVersion = -1;
+    private long examsVersion = -1;
+    private boolean directoryReachable = true;
+
+    // Set while applying a remote exams change, so it is not reported back
+    private volatile boolean applyingRemoteChange;
+
+    public ClusterMember(String directoryAddress, ClusterNode self, ExamServiceImpl service, ActivityLog activityLog) {
+        int colon = directoryAddress.lastIndexOf(':');
+        this.directoryHost = colon >= 0 ? directoryAddress.substring(0, colon) : directoryAddress;
+        this.directoryPort = colon >= 0
+                ? Integer.parseInt(directoryAddress.substring(colon + 1)) : ExamDirectory.DEFAULT_PORT;
+        this.self = self;
+        this.service = service;
+        this.activityLog = activityLog;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-member");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Join the cluster; fails if the directory cannot be reached
+    public void start() throws Exception {
+        apply(lookupDirectory().register(self));
+        service.addListener(this);
+        executor.scheduleWithFixedDelay(this::heartbeat, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+        activityLog.log("Node " + self.getNodeId() + " joined cluster at " + directoryHost + ":" + directoryPort);
+    }
+
+    public void stop() {
+        service.removeListener(this);
+        executor.shutdownNow();
+        try {
+            lookupDirectory().unregister(self.getNodeId());
+        } catch (Exception e) {
+            // The directory expires the node after missed heartbeats
+        }
+    }
+
+    @Override
+    public void examsChanged() {
+        if (applyingRemoteChange) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                ClusterView view = lookupDirectory().examsChanged(self.getNodeId());
+                if (view.getExamsVersion() == examsVersion + 1) {
+                    // Only our own change; the local catalog is already current
+                    examsVersion = view.getExamsVersion();
+                }
+                apply(view);
+            } catch (Exception e) {
+                directoryFailed(e);
+            }
+        });
+    }
+
+    @Override
+    public void sessionsChanged() {
+    }
+
+    private void heartbeat() {
+        try {
+            RemoteExamDirectory current = lookupDirectory();
+            ClusterView view = current.heartbeat(self.getNodeId());
+            if (view == null) {
+                // Expired, e.g. after a long pause; join again
+                view = current.register(self);
+            }
+            apply(view);
+            if (!directoryReachable) {
+                activityLog.log("Cluster directory reachable again");
+                directoryReachable = true;
+            }
+        } catch (Exception e) {
+            directoryFailed(e);
+        }
+    }
+
+    // Runs on the executor thread, or in start before the heartbeat is scheduled
+    private void apply(ClusterView view) {
+        if (view.getVersion() != viewVersion) {
+            List<String> nodeIds = new ArrayList<>();
+            for (ClusterNode node : view.getNodes()) {
+                nodeIds.add(node.getNodeId());
+            }
+            service.setClusterRing(new ExamHashRing(nodeIds), self.getNodeId());
+            viewVersion = view.getVersion();
+            activityLog.log("Cluster view " + viewVersion + ": " + nodeIds);
+        }
+
+        if (view.getExamsVersion() != examsVersion) {
+            if (examsVersion >= 0) {
+                applyingRemoteChange = true;
+                try {
+                    service.reloadExams();
+                } finally {
+                    applyingRemoteChange = false;
+                }
+            }
+            examsVersion = view.getExamsVersion();
+        }
+    }
+
+    private void directoryFailed(Exception e) {
+        // Keep serving with the last known view until the directory is back
+        directory = null;
+        if (directoryReachable) {
+            activityLog.log("Cluster directory unreachable: " + e.getMessage());
+            directoryReachable = false;
+        }
+    }
+
+    private RemoteExamDirectory lookupDirectory() throws Exception {
+        if (directory == null) {
+            directory = (RemoteExamDirectory) LocateRegistry.getRegistry(directoryHost, directoryPort)
+                    .lookup(ExamDirectory.SERVICE_NAME);
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,424 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// In-memory index of which students have completed which exams.
+// Student ids are mapped to dense ordinals and every exam keeps a
+// roaring-style bitmap over those ordinals: the ordinal space is split into
+// 65536-wide chunks, each stored as a sorted short array while sparse and as
+// a 1024-word bitmap once it holds more than 4096 entries.
+//
+// Reads never lock. Writes for one exam are serialized on that exam's bitmap,
+// so markTaken is an atomic test-and-set.
+public class CompletionIndex {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = (1 << CHUNK_BITS) / 64;
+
+    private final Map<String, Integer> studentOrdinals = new ConcurrentHashMap<>();
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+    private final Map<Integer, ExamBitmap> exams = new ConcurrentHashMap<>();
+
+    // Load every (exam, student) pair from exam_results, replacing the current contents
+    public void load(DatabaseManager dbManager) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        Map<Integer, int[]> ordinalsByExam = new HashMap<>();
+        Map<Integer, Integer> sizes = new HashMap<>();
+
+        try {
+            conn = dbManager.getConnection();
+            String sql = "SELECT exam_id, student_id FROM exam_results";
+            stmt = conn.prepareStatement(sql);
+            rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                int examId = rs.getInt("exam_id");
+                int ordinal = ordinalFor(rs.getString("student_id"));
+
+                int[] ordinals = ordinalsByExam.get(examId);
+                int size = sizes.containsKey(examId) ? sizes.get(examId) : 0;
+                if (ordinals == null) {
+                    ordinals = new int[16];
+                } else if (size == ordinals.length) {
+                    ordinals = Arrays.copyOf(ordinals, size * 2);
+                }
+                ordinals[size] = ordinal;
+                ordinalsByExam.put(examId, ordinals);
+                sizes.put(examId, size + 1);
+            }
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+
+        exams.clear();
+        for (Map.Entry<Integer, int[]> entry : ordinalsByExam.entrySet()) {
+            int[] ordinals = Arrays.copyOf(entry.getValue(), sizes.get(entry.getKey()));
+            exams.put(entry.getKey(), ExamBitmap.build(ordinals));
+        }
+    }
+
+    // Replace one exam's completions with the current contents of exam_results,
+    // e.g. when this node takes over the exam from another cluster node
+    public void reloadExam(DatabaseManager dbManager, int examId) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        int[] ordinals = new int[16];
+        int size = 0;
+
+        try {
+            conn = dbManager.getConnection();
+            String sql = "SELECT student_id FROM exam_results WHERE exam_id = ?";
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, examId);
+            rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                if (size == ordinals.length) {
+                    ordinals = Arrays.copyOf(ordinals, size * 2);
+                }
+                ordinals[size++] = ordinalFor(rs.getString("student_id"));
+            }
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+
+        exams.put(examId, ExamBitmap.build(Arrays.copyOf(ordinals, size)));
+    }
+
+    // Dense ordinal of a student, or -1 if the student has never completed an exam
+    public int ordinalOf(String studentId) {
+        Integer ordinal = studentOrdinals.get(studentId);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public boolean hasTaken(int examId, String studentId) {
+        return hasTaken(examId, ordinalOf(studentId));
+    }
+
+    public boolean hasTaken(int examId, int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        ExamBitmap bitmap = exams.get(examId);
+        return bitmap != null && bitmap.contains(ordinal);
+    }
+
+    // Record a completion. Returns false if the student had already completed the exam.
+    public boolean markTaken(int examId, String studentId) {
+        int ordinal = ordinalFor(studentId);
+        ExamBitmap bitmap = exams.computeIfAbsent(examId, id -> new ExamBitmap());
+        return bitmap.add(ordinal);
+    }
+
+    // Undo a completion, e.g. when the submission that reserved it was rolled back
+    public void unmarkTaken(int examId, String studentId) {
+        int ordinal = ordinalOf(studentId);
+        ExamBitmap bitmap = exams.get(examId);
+        if (ordinal >= 0 && bitmap != null) {
+            bitmap.remove(ordinal);
+        }
+    }
+
+    public void removeExam(int examId) {
+        exams.remove(examId);
+    }
+
+    public int getStudentCount() {
+        return studentOrdinals.size();
+    }
+
+    public long getCompletionCount() {
+        long count = 0;
+        for (ExamBitmap bitmap : exams.values()) {
+            count += bitmap.cardinality();
+        }
+        return count;
+    }
+
+    // Approximate heap used by the bitmaps (excluding the student ordinal map)
+    public long getBitmapFootprintBytes() {
+        long bytes = 0;
+        for (ExamBitmap bitmap : exams.values()) {
+            bytes += bitmap.footprintBytes();
+        }
+        return bytes;
+    }
+
+    // Approximate heap used by the student id -> ordinal map
+    public long getOrdinalMapFootprintBytes() {
+        long bytes = 0;
+        for (String studentId : studentOrdinals.keySet()) {
+            // map node + boxed ordinal + String object and its backing array
+            bytes += 32 + 16 + 24 + 16 + studentId.length();
+        }
+        return bytes;
+    }
+
+    private int ordinalFor(String studentId) {
+        Integer ordinal = studentOrdinals.get(studentId);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        return studentOrdinals.computeIfAbsent(studentId, id -> nextOrdinal.getAndIncrement());
+    }
+
+    // Per-exam bitmap: one container per 65536-ordinal chunk
+    private static class ExamBitmap {
+
+        private volatile Container[] containers = new Container[0];
+
+        static ExamBitmap build(int[] ordinals) {
+            Arrays.sort(ordinals);
+            ExamBitmap bitmap = new ExamBitmap();
+
+            int start = 0;
+            while (start < ordinals.length) {
+                int chunk = ordinals[start] >>> CHUNK_BITS;
+                int end = start;
+                while (end < ordinals.length && (ordinals[end] >>> CHUNK_BITS) == chunk) {
+                    end++;
+                }
+
+                Container container;
+                if (end - start > ARRAY_MAX) {
+                    BitmapContainer words = new BitmapContainer();
+                    for (int i = start; i < end; i++) {
+                        words.add(ordinals[i] & CHUNK_MASK);
+                    }
+                    container = words;
+                } else {
+                    short[] values = new short[end - start];
+                    int size = 0;
+                    for (int i = start; i < end; i++) {
+                        // ordinals are sorted, so duplicates are adjacent
+                        if (size == 0 || values[size - 1] != (short) ordinals[i]) {
+                            values[size++] = (short) ordinals[i];
+                        }
+                    }
+                    container = new ArrayContainer(Arrays.copyOf(values, size));
+                }
+
+                if (chunk >= bitmap.containers.length) {
+                    bitmap.containers = Arrays.copyOf(bitmap.containers, chunk + 1);
+                }
+                bitmap.containers[chunk] = container;
+                start = end;
+            }
+            return bitmap;
+        }
+
+        boolean contains(int ordinal) {
+            Container[] current = containers;
+            int chunk = ordinal >>> CHUNK_BITS;
+            if (chunk >= current.length || current[chunk] == null) {
+                return false;
+            }
+            return current[chunk].contains(ordinal & CHUNK_MASK);
+        }
+
+        synchronized boolean add(int ordinal) {
+            int chunk = ordinal >>> CHUNK_BITS;
+            int low = ordinal & CHUNK_MASK;
+            Container[] current = containers;
+
+            if (chunk < current.length && current[chunk] != null) {
+                Container container = current[chunk];
+                if (container.contains(low)) {
+                    return false;
+                }
+                Container updated = container.add(low);
+                if (updated != container) {
+                    Container[] copy = current.clone();
+                    copy[chunk] = updated;
+                    containers = copy;
+                }
+                return true;
+            }
+
+            Container[] copy = Arrays.copyOf(current, Math.max(current.length, chunk + 1));
+            copy[chunk] = new ArrayContainer(new short[]{(short) low});
+            containers = copy;
+            return true;
+        }
+
+        synchronized void remove(int ordinal) {
+            int chunk = ordinal >>> CHUNK_BITS;
+            Container[] current = containers;
+            if (chunk >= current.length || current[chunk] == null) {
+                return;
+            }
+            Container updated = current[chunk].remove(ordinal & CHUNK_MASK);
+            if (updated != current[chunk]) {
+                Container[] copy = current.clone();
+                copy[chunk] = updated;
+                containers = copy;
+            }
+        }
+
+        long cardinality() {
+            long count = 0;
+            for (Container container : containers) {
+                if (container != null) {
+                    count += container.cardinality();
+                }
+            }
+            return count;
+        }
+
+        long footprintBytes() {
+            Container[] current = containers;
+            long bytes = 16 + 16 + 4L * current.length;
+            for (Container container : current) {
+                if (container != null) {
+                    bytes += container.footprintBytes();
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private interface Container {
+
+        boolean contains(int low);
+
+        // Returns this container if it was updated in place, otherwise its replacement
+        Container add(int low);
+
+        Container remove(int low);
+
+        int cardinality();
+
+        long footprintBytes();
+    }
+
+    // Sparse chunk: immutable sorted array, replaced on every write
+    private static class ArrayContainer implements Container {
+
+        private final short[] values;
+
+        ArrayContainer(short[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean contains(int low) {
+            return indexOf(low) >= 0;
+        }
+
+        @Override
+        public Container add(int low) {
+            if (values.length >= ARRAY_MAX) {
+                BitmapContainer bitmap = new BitmapContainer();
+                for (short value : values) {
+                    bitmap.add(value & CHUNK_MASK);
+                }
+                bitmap.add(low);
+                return bitmap;
+            }
+            int insertAt = -indexOf(low) - 1;
+            short[] copy = new short[values.length + 1];
+            System.arraycopy(values, 0, copy, 0, insertAt);
+            copy[insertAt] = (short) low;
+            System.arraycopy(values, insertAt, copy, insertAt + 1, values.length - insertAt);
+            return new ArrayContainer(copy);
+        }
+
+        @Override
+        public Container remove(int low) {
+            int index = indexOf(low);
+            if (index < 0) {
+                return this;
+            }
+            short[] copy = new short[values.length - 1];
+            System.arraycopy(values, 0, copy, 0, index);
+            System.arraycopy(values, index + 1, copy, index, values.length - index - 1);
+            return new ArrayContainer(copy);
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public long footprintBytes() {
+            return 16 + 16 + 2L * values.length;
+        }
+
+        // Binary search over the unsigned 16-bit values
+        private int indexOf(int low) {
+            int lo = 0;
+            int hi = values.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int value = values[mid] & CHUNK_MASK;
+                if (value < low) {
+                    lo = mid + 1;
+                } else if (value > low) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+    }
+
+    // Dense chunk: mutable bitmap updated in place with atomic word writes
+    private static class BitmapContainer implements Container {
+
+        private final AtomicLongArray words = new AtomicLongArray(BITMAP_WORDS);
+        private int cardinality;
+
+        @Override
+        public boolean contains(int low) {
+            return (words.get(low >>> 6) & (1L << low)) != 0;
+        }
+
+        @Override
+        public Container add(int low) {
+            long word = words.get(low >>> 6);
+            if ((word & (1L << low)) == 0) {
+                words.set(low >>> 6, word | (1L << low));
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        public Container remove(int low) {
+            long word = words.get(low >>> 6);
+            if ((word & (1L << low)) != 0) {
+                words.set(low >>> 6, word & ~(1L << low));
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public long footprintBytes() {
+            return 16 + 16 + 8L * BITMAP_WORDS;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package server;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads CSV rows one at a time. Fields may be quoted with "..." and then
+// contain commas, quotes ("") and line breaks. The reader must support mark.
+public class CsvRowReader {
+
+    private final Reader reader;
+    private final StringBuilder field = new StringBuilder();
+    private long line = 1;
+    private long rowLine;
+    private boolean atEnd;
+
+    public CsvRowReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // Line on which the last returned row started
+    public long getRowLine() {
+        return rowLine;
+    }
+
+    // The next row that is not blank, or null at the end of the input
+    public List<String> nextRow() throws IOException {
+        List<String> row;
+        do {
+            row = readRow();
+        } while (row != null && row.size() == 1 && row.get(0).trim().isEmpty());
+        return row;
+    }
+
+    private List<String> readRow() throws IOException {
+        if (atEnd) {
+            return null;
+        }
+        rowLine = line;
+        List<String> row = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean any = false;
+        int c;
+        while (true) {
+            c = reader.read();
+            if (c < 0) {
+                atEnd = true;
+                if (quoted) {
+                    throw new IOException("Unterminated quoted field at line " + line);
+                }
+                if (!any) {
+                    return null;
+                }
+                row.add(field.toString());
+                return row;
+            }
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                row.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                line++;
+                row.add(field.toString());
+                return row;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// Seeds the configured database with a large, repeatable data set for
+// performance runs: teachers, students (including the LoadGenerator accounts),
+// exams with questions and options, and completed results with answers.
+// The same options always produce the same rows.
+//
+// Usage: java -Dexam.db.profile=embedded -cp ExamServer.jar server.DataGenerator [--option=value ...]
+//   --students=50000                 students, usernames loadstudent%d / ids LS%d
+//   --exams=100                      exams
+//   --questionsPerExam=40
+//   --optionsPerQuestion=4
+//   --resultsPerStudent=4            completed exams per student
+//   --batchSize=1000                 rows per JDBC batch and per commit
+//   --seed=42
+//   --reset=false                    delete existing data first
+public class DataGenerator {
+
+    private static final String[] TABLES = {
+        "exam_sessions", "student_answers", "exam_results", "exam_questions", "pool_questions",
+        "question_options", "questions", "exams", "question_pools", "students", "teachers"
+    };
+
+    private final Map<String, String> options;
+    private final DatabaseManager dbManager;
+    private final Random random;
+    private final int batchSize;
+
+    private int[][] examQuestionIds;
+    private int[][] examCorrectOptions;
+    private int[] examIds;
+
+    public DataGenerator(Map<String, String> options) {
+        this.options = options;
+        this.dbManager = DatabaseManager.getInstance();
+        this.random = new Random(intOption("seed", 42));
+        this.batchSize = intOption("batchSize", 1000);
+    }
+
+    public void run() throws SQLException {
+        Connection conn = null;
+        try {
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+
+            if (hasData(conn)) {
+                if (!Boolean.parseBoolean(option("reset", "false"))) {
+                    System.err.println("Database already contains data, run with --reset=true to replace it");
+                    return;
+                }
+                reset(conn);
+            }
+
+            long start = System.currentTimeMillis();
+            insertUsers(conn);
+            insertExams(conn);
+            insertResults(conn);
+            System.out.println(String.format("Done in %.1f s", (System.currentTimeMillis() - start) / 1000.0));
+        } finally {
+            dbManager.closeResources(conn, null, null);
+        }
+    }
+
+    private boolean hasData(Connection conn) throws SQLException {
+        for (String table : TABLES) {
+            try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+                if (rs.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void reset(Connection conn) throws SQLException {
+        // Child tables first so the foreign keys hold
+        try (Statement stmt = conn.createStatement()) {
+            for (String table : TABLES) {
+                int deleted = stmt.executeUpdate("DELETE FROM " + table);
+                System.out.println("Deleted " + deleted + " rows from " + table);
+            }
+        }
+        conn.commit();
+    }
+
+    private void insertUsers(Connection conn) throws SQLException {
+        String teacherSql = "INSERT INTO teachers (username, password, name) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(teacherSql)) {
+            stmt.setString(1, "teacher1");
+            stmt.setString(2, "password");
+            stmt.setString(3, "Default Teacher");
+            stmt.executeUpdate();
+        }
+
+        int students = intOption("students", 50000);
+        String studentSql = "INSERT INTO students (id, username, password, name) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(studentSql)) {
+            stmt.setString(1, "S001");
+            stmt.setString(2, "student1");
+            stmt.setString(3, "password");
+            stmt.setString(4, "Default Student");
+            stmt.addBatch();
+
+            Progress progress = new Progress("students", students);
+            for (int i = 1; i <= students; i++) {
+                stmt.setString(1, "LS" + i);
+                stmt.setString(2, "loadstudent" + i);
+                stmt.setString(3, "password");
+                stmt.setString(4, "Load Student " + i);
+                stmt.addBatch();
+                if (i % batchSize == 0) {
+                    flush(conn, stmt);
+                    progress.update(i);
+                }
+            }
+            flush(conn, stmt);
+            progress.update(students);
+        }
+    }
+
+    private void insertExams(Connection conn) throws SQLException {
+        int exams = intOption("exams", 100);
+        int questionsPerExam = intOption("questionsPerExam", 40);
+        int optionsPerQuestion = intOption("optionsPerQuestion", 4);
+
+        examIds = new int[exams];
+        examQuestionIds = new int[exams][questionsPerExam];
+        examCorrectOptions = new int[exams][questionsPerExam];
+
+        String examSql = "INSERT INTO exams (title, description, duration_minutes, results_visible, active) "
+                + "VALUES (?, ?, ?, ?, ?)";
+        String questionSql = "INSERT INTO questions (text, correct_option, points) VALUES (?, ?, ?)";
+        String linkSql = "INSERT INTO exam_questions (exam_id, question_id) VALUES (?, ?)";
+        String optionSql = "INSERT INTO question_options (question_id, option_text, option_order) VALUES (?, ?, ?)";
+
+        Progress progress = new Progress("exams", exams);
+        try (PreparedStatement examStmt = conn.prepareStatement(examSql, Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement questionStmt = conn.prepareStatement(questionSql, Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement linkStmt = conn.prepareStatement(linkSql);
+                PreparedStatement optionStmt = conn.prepareStatement(optionSql)) {
+            for (int e = 0; e < exams; e++) {
+                examStmt.setString(1, "Generated Exam " + (e + 1));
+                examStmt.setString(2, "Generated exam with " + questionsPerExam + " questions");
+                examStmt.setInt(3, 30 + random.nextInt(4) * 30);
+                examStmt.setBoolean(4, random.nextBoolean());
+                examStmt.setBoolean(5, true);
+                examStmt.executeUpdate();
+                try (ResultSet keys = examStmt.getGeneratedKeys()) {
+                    keys.next();
+                    examIds[e] = keys.getInt(1);
+                }
+
+                for (int q = 0; q < questionsPerExam; q++) {
+                    examCorrectOptions[e][q] = random.nextInt(optionsPerQuestion);
+                    questionStmt.setString(1, "Question " + (q + 1) + " of generated exam " + (e + 1) + "?");
+                    questionStmt.setInt(2, examCorrectOptions[e][q]);
+                    questionStmt.setInt(3, 1 + random.nextInt(3));
+                    questionStmt.addBatch();
+                }
+                questionStmt.executeBatch();
+                try (ResultSet keys = questionStmt.getGeneratedKeys()) {
+                    for (int q = 0; q < questionsPerExam; q++) {
+                        keys.next();
+                        examQuestionIds[e][q] = keys.getInt(1);
+                    }
+                }
+
+                for (int q = 0; q < questionsPerExam; q++) {
+                    linkStmt.setInt(1, examIds[e]);
+                    linkStmt.setInt(2, examQuestionIds[e][q]);
+                    linkStmt.addBatch();
+                    for (int o = 0; o < optionsPerQuestion; o++) {
+                        optionStmt.setInt(1, examQuestionIds[e][q]);
+                        optionStmt.setString(2, "Option " + (char) ('A' + o));
+                        optionStmt.setInt(3, o);
+                        optionStmt.addBatch();
+                    }
+                }
+                linkStmt.executeBatch();
+                optionStmt.executeBatch();
+                conn.commit();
+                progress.update(e + 1);
+            }
+        }
+    }
+
+    private void insertResults(Connection conn) throws SQLException {
+        int students = intOption("students", 50000);
+        int resultsPerStudent = Math.min(intOption("resultsPerStudent", 4), examIds.length);
+        long now = System.currentTimeMillis();
+
+        String resultSql = "INSERT INTO exam_results (exam_id, student_id, score, total_possible, submission_time) "
+                + "VALUES (?, ?, ?, ?, ?)";
+        String answerSql = "INSERT INTO student_answers (exam_id, student_id, question_id, selected_option) "
+                + "VALUES (?, ?, ?, ?)";
+
+        Progress progress = new Progress("results", (long) students * resultsPerStudent);
+        try (PreparedStatement resultStmt = conn.prepareStatement(resultSql);
+                PreparedStatement answerStmt = conn.prepareStatement(answerSql)) {
+            long results = 0;
+            int pendingAnswers = 0;
+            int[] examOrder = new int[examIds.length];
+            for (int i = 0; i < examOrder.length; i++) {
+                examOrder[i] = i;
+            }
+
+            for (int s = 1; s <= students; s++) {
+                String studentId = "LS" + s;
+
+                // Partial shuffle picks distinct exams for this student
+                for (int r = 0; r < resultsPerStudent; r++) {
+                    int pick = r + random.nextInt(examOrder.length - r);
+                    int swap = examOrder[r];
+                    examOrder[r] = examOrder[pick];
+                    examOrder[pick] = swap;
+
+                    int e = examOrder[r];
+                    int score = 0;
+                    for (int q = 0; q < examQuestionIds[e].length; q++) {
+                        // Roughly 70% correct
+                        int selected = random.nextInt(10) < 7
+                                ? examCorrectOptions[e][q]
+                                : random.nextInt(intOption("optionsPerQuestion", 4));
+                        if (selected == examCorrectOptions[e][q]) {
+                            score++;
+                        }
+                        answerStmt.setInt(1, examIds[e]);
+                        answerStmt.setString(2, studentId);
+                        answerStmt.setInt(3, examQuestionIds[e][q]);
+                        answerStmt.setInt(4, selected);
+                        answerStmt.addBatch();
+                        pendingAnswers++;
+                    }
+
+                    resultStmt.setInt(1, examIds[e]);
+                    resultStmt.setString(2, studentId);
+                    resultStmt.setInt(3, score);
+                    resultStmt.setInt(4, examQuestionIds[e].length);
+                    resultStmt.setTimestamp(5, new Timestamp(now - random.nextInt(30 * 24 * 3600) * 1000L));
+                    resultStmt.addBatch();
+                    results++;
+
+                    if (pendingAnswers >= batchSize) {
+                        resultStmt.executeBatch();
+                        flush(conn, answerStmt);
+                        pendingAnswers = 0;
+                        progress.update(results);
+                    }
+                }
+            }
+            resultStmt.executeBatch();
+            flush(conn, answerStmt);
+            progress.update(results);
+        }
+    }
+
+    private void flush(Connection conn, PreparedStatement stmt) throws SQLException {
+        stmt.executeBatch();
+        conn.commit();
+    }
+
+    // Prints rows per second at most once a second
+    private static class Progress {
+
+        private final String name;
+        private final long total;
+        private final long start = System.currentTimeMillis();
+        private long lastPrint;
+
+        Progress(String name, long total) {
+            this.name = name;
+            this.total = total;
+        }
+
+        void update(long done) {
+            long now = System.currentTimeMillis();
+            if (now - lastPrint < 1000 && done < total) {
+                return;
+            }
+            lastPrint = now;
+            double seconds = Math.max(0.001, (now - start) / 1000.0);
+            System.out.println(String.format("%-10s %,12d / %,d  (%,.0f rows/s)", name, done, total, done / seconds));
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        String value = options.get(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return Integer.parseInt(option(name, String.valueOf(defaultValue)));
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        System.out.println("Seeding " + DatabaseManager.getProfile() + " database");
+        new DataGenerator(options).run();
+    }
+}
@@ -1,35 +1,125 @@
 package server;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
+// Database profile is chosen with -Dexam.db.profile:
+//   mysql     local XAMPP MySQL (default)
+//   embedded  in-process H2 in MySQL mode, stored under ./data
+//   memory    in-process H2 in MySQL mode, discarded on exit
+// -Dexam.db.url, -Dexam.db.user and -Dexam.db.password override the profile defaults.
+//
+// -Dexam.db.replicas=url1,url2 adds read replicas of the primary. Calls that only
+// read use getReadConnection, which picks a replica lagging less than
+// -Dexam.db.maxReplicaLagMillis (default 2000) and falls back to the primary.
 public class DatabaseManager {
 
-    private static final String DB_URL = "jdbc:mysql://localhost:3306/exam_system";
-    private static final String DB_USER = "root";
-    private static final String DB_PASSWORD = ""; // Default XAMPP password is empty
+    // Write key for exams, questions and options; see recordWrite
+    public static final String EXAM_CONTENT = "exam-content";
 
-    public DatabaseManager() {
+    private static final String PROFILE = System.getProperty("exam.db.profile", "mysql");
+    private static final String H2_OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+
+    private static final String DB_USER = System.getProperty("exam.db.user", isEmbedded() ? "sa" : "root");
+    private static final String DB_PASSWORD = System.getProperty("exam.db.password", ""); // Default XAMPP password is empty
+
+    // One instance per server process, shared by the service and the admin UI
+    private static DatabaseManager instance;
+
+    private final String dbUrl;
+    private final ReplicaRouter replicaRouter;
+
+    public static synchronized DatabaseManager getInstance() {
+        if (instance == null) {
+            instance = new DatabaseManager();
+        }
+        return instance;
+    }
+
+    private DatabaseManager() {
+        dbUrl = configuredUrl();
         try {
             // Load the JDBC driver
-            Class.forName("com.mysql.cj.jdbc.Driver");
+            Class.forName(isEmbedded() ? "org.h2.Driver" : "com.mysql.cj.jdbc.Driver");
 
             // Initialize the database if needed
             initializeDatabase();
+
+            List<String> replicaUrls = new ArrayList<>();
+            for (String url : System.getProperty("exam.db.replicas", "").split(",")) {
+                if (!url.trim().isEmpty()) {
+                    replicaUrls.add(url.trim());
+                }
+            }
+            replicaRouter = replicaUrls.isEmpty() ? null : new ReplicaRouter(dbUrl, replicaUrls, DB_USER, DB_PASSWORD,
+                    Long.getLong("exam.db.maxReplicaLagMillis", 2000));
         } catch (ClassNotFoundException e) {
-            System.err.println("MySQL JDBC Driver not found: " + e.getMessage());
-            throw new RuntimeException("MySQL JDBC Driver not found", e);
-        } catch (SQLException e) {
+            System.err.println("JDBC Driver not found: " + e.getMessage());
+            throw new RuntimeException("JDBC Driver not found", e);
+        } catch (SQLException | IOException e) {
             System.err.println("Database initialization error: " + e.getMessage());
             throw new RuntimeException("Database initialization error", e);
         }
     }
 
+    public static String getProfile() {
+        return PROFILE;
+    }
+
+    public static boolean isEmbedded() {
+        return "embedded".equals(PROFILE) || "memory".equals(PROFILE);
+    }
+
+    // JDBC URL the instance connects to, read when the instance is created
+    static String configuredUrl() {
+        return System.getProperty("exam.db.url", defaultUrl());
+    }
+
+    private static String defaultUrl() {
+        switch (PROFILE) {
+            case "embedded":
+                return "jdbc:h2:./data/exam_system;DB_CLOSE_DELAY=-1" + H2_OPTIONS;
+            case "memory":
+                return "jdbc:h2:mem:exam_system;DB_CLOSE_DELAY=-1" + H2_OPTIONS;
+            case "mysql":
+                return "jdbc:mysql://localhost:3306/exam_system?rewriteBatchedStatements=true";
+            default:
+                throw new IllegalArgumentException("Unknown database profile: " + PROFILE);
+        }
+    }
+
     public Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+        // Statement execution time is reported through ServiceMetrics
+        return ServiceMetrics.getInstance().instrument(DriverManager.getConnection(dbUrl, DB_USER, DB_PASSWORD));
+    }
+
+    // Connection for read-only work. Goes to a replica that is within the lag limit
+    // and has caught up with the last write recorded under key (may be null).
+    public Connection getReadConnection(String key) throws SQLException {
+        if (replicaRouter != null) {
+            Connection replica = replicaRouter.openReplicaConnection(key);
+            if (replica != null) {
+                return ServiceMetrics.getInstance().instrument(replica);
+            }
+        }
+        return getConnection();
+    }
+
+    // Record a committed write so the next reads for key see it (read-your-writes)
+    public void recordWrite(String key) {
+        if (replicaRouter != null) {
+            replicaRouter.recordWrite(key);
+        }
+    }
+
+    public List<String> describeReplicas() {
+        return replicaRouter != null ? replicaRouter.describeReplicas() : new ArrayList<String>();
     }
 
     public void closeResources(Connection conn, PreparedStatement stmt, ResultSet rs) {
@@ -49,9 +139,8 @@ public class DatabaseManager {
         }
     }
 
-    private void initializeDatabase() throws SQLException {
-        // This method would create the database and tables if they don't exist
-        // For simplicity, we'll assume the database is already set up
-        // In a real application, you would include the SQL to create the schema
+    private void initializeDatabase() throws SQLException, IOException {
+        // Create the schema on a new database and apply any pending migrations
+        new SchemaMigrator(this).migrate();
     }
 }
@@ -0,0 +1,164 @@
+package server;
+
+import java.net.SocketTimeoutException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import shared.ExamEvent;
+import shared.ExamEventListener;
+
+// Fans out ExamEvents to subscribed clients over RMI callbacks.
+// Publishing only appends to a bounded queue per subscriber and never waits on
+// the network. A small pool of delivery threads sends each subscriber's queue
+// in batches, at most one call per subscriber at a time, after a short delay
+// that lets bursts collect into one batch. When a slow client's queue is full
+// its oldest events are dropped and it gets a RESYNC event instead. Clients
+// that cannot be reached, or fail repeatedly, are unsubscribed.
+//
+// A client can also accept the call and never answer (lid closed, Wi-Fi
+// gone), which would hold a delivery thread for good. ExamServerDaemon sets
+// the RMI response timeout to RESPONSE_TIMEOUT_MILLIS, and a client that
+// times out is unsubscribed at once.
+// -Dexam.events.responseTimeoutMillis sets the timeout (default 10000).
+public class EventBroadcaster {
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final int MAX_BATCH = 100;
+    private static final long BATCH_DELAY_MILLIS = 100;
+    private static final int MAX_FAILURES = 3;
+    private static final int DELIVERY_THREADS = 4;
+    static final long RESPONSE_TIMEOUT_MILLIS = Long.getLong("exam.events.responseTimeoutMillis", 10000);
+
+    private final ActivityLog activityLog;
+    private final Map<ExamEventListener, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService delivery;
+
+    public EventBroadcaster(ActivityLog activityLog) {
+        this.activityLog = activityLog;
+        AtomicInteger threads = new AtomicInteger();
+        this.delivery = Executors.newScheduledThreadPool(DELIVERY_THREADS, r -> {
+            Thread thread = new Thread(r, "event-delivery-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void subscribe(String studentId, ExamEventListener listener) {
+        subscribers.put(listener, new Subscriber(listener, studentId));
+    }
+
+    public void unsubscribe(ExamEventListener listener) {
+        subscribers.remove(listener);
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Events with a student id only go to that student and to subscribers without one
+    public void publish(ExamEvent event) {
+        for (Subscriber subscriber : subscribers.values()) {
+            if (event.getStudentId() == null || subscriber.studentId == null
+                    || subscriber.studentId.equals(event.getStudentId())) {
+                subscriber.enqueue(event);
+            }
+        }
+    }
+
+    public void shutdown() {
+        delivery.shutdownNow();
+    }
+
+    private static boolean timedOut(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Subscriber {
+
+        private final ExamEventListener listener;
+        private final String studentId;
+
+        // Guarded by this
+        private final ArrayDeque<ExamEvent> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean overflowed;
+        private int failures;
+
+        Subscriber(ExamEventListener listener, String studentId) {
+            this.listener = listener;
+            this.studentId = studentId;
+        }
+
+        synchronized void enqueue(ExamEvent event) {
+            if (queue.size() >= QUEUE_CAPACITY) {
+                queue.pollFirst();
+                overflowed = true;
+            }
+            queue.addLast(event);
+            if (!scheduled) {
+                scheduled = true;
+                delivery.schedule(this::deliver, BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized List<ExamEvent> nextBatch() {
+            List<ExamEvent> batch = new ArrayList<>();
+            if (overflowed) {
+                batch.add(new ExamEvent(ExamEvent.Type.RESYNC, 0, studentId));
+                overflowed = false;
+            }
+            while (batch.size() < MAX_BATCH && !queue.isEmpty()) {
+                batch.add(queue.pollFirst());
+            }
+            if (batch.isEmpty()) {
+                scheduled = false;
+            }
+            return batch;
+        }
+
+        // Runs on a delivery thread; only one per subscriber at a time
+        private void deliver() {
+            List<ExamEvent> batch;
+            while (!(batch = nextBatch()).isEmpty()) {
+                try {
+                    listener.onEvents(batch);
+                    failures = 0;
+                } catch (RemoteException e) {
+                    boolean gone = e instanceof ConnectException || e instanceof ConnectIOException
+                            || e instanceof NoSuchObjectException || timedOut(e);
+                    if (gone || ++failures >= MAX_FAILURES) {
+                        subscribers.remove(listener, this);
+                        activityLog.log("Event subscriber " + (studentId != null ? studentId : "(all)")
+                                + " removed: " + e.getMessage());
+                        synchronized (this) {
+                            queue.clear();
+                            scheduled = false;
+                        }
+                        return;
+                    }
+                    // The batch is lost; the client catches up with a RESYNC
+                    synchronized (this) {
+                        overflowed = true;
+                    }
+                } catch (RuntimeException e) {
+                    activityLog.log("Event delivery failed: " + e);
+                }
+            }
+        }
+    }
+}
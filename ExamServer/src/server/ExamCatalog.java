@@ -0,0 +1,99 @@
+package server;
+
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import shared.Exam;
+
+// Versioned in-memory snapshot of the active exams.
+// The snapshot is rebuilt lazily after any change to the exams table and
+// every rebuild gets a new version number, so clients can ask for the list
+// only when it has changed. Versions start at a random point in each process,
+// so a version a client got before a restart or from another cluster node is
+// not mistaken for the current one.
+public class ExamCatalog {
+
+    private final DatabaseManager dbManager;
+    // 38 random bits leave room for the completed-exam count the service adds below bit 24
+    private final AtomicLong versions = new AtomicLong(new SecureRandom().nextLong() >>> 26);
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public ExamCatalog(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    public Snapshot getSnapshot() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (snapshot != null) {
+                return snapshot;
+            }
+            long loadedGeneration = generation.get();
+            Snapshot loaded = load();
+
+            // Only keep the snapshot if nothing changed while it was loading
+            if (generation.get() == loadedGeneration) {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    // Call after any committed change to the exams table
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    private Snapshot load() throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<Exam> exams = new ArrayList<>();
+
+        try {
+            conn = dbManager.getConnection();
+            String sql = "SELECT * FROM exams WHERE active = 1";
+            stmt = conn.prepareStatement(sql);
+            rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                exams.add(ExamRows.readExam(rs));
+            }
+
+            return new Snapshot(versions.incrementAndGet(), Collections.unmodifiableList(exams));
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
+
+    public static class Snapshot {
+
+        private final long version;
+        private final List<Exam> exams;
+
+        Snapshot(long version, List<Exam> exams) {
+            this.version = version;
+            this.exams = exams;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public List<Exam> getExams() {
+            return exams;
+        }
+    }
+}
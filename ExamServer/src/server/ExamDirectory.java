@@ -0,0 +1,122 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import shared.ClusterNode;
+import shared.ClusterView;
+import shared.RemoteExamDirectory;
+
+// Lightweight directory for a cluster of exam server nodes. Nodes register and
+// send a heartbeat every second; a node that misses heartbeats for
+// EXPIRY_MILLIS is dropped, which moves its exams to the remaining nodes.
+// Clients fetch the view and route calls with ExamHashRing.
+//
+// Usage: java -cp ExamServer.jar server.ExamDirectory [port]   (default 1098)
+public class ExamDirectory implements RemoteExamDirectory {
+
+    public static final String SERVICE_NAME = "ExamDirectory";
+    public static final int DEFAULT_PORT = 1098;
+
+    private static final long EXPIRY_MILLIS = 5000;
+
+    private final Map<String, Member> members = new LinkedHashMap<>();
+    private long version;
+    private long examsVersion;
+
+    private static class Member {
+
+        private final ClusterNode node;
+        private long lastHeartbeat;
+
+        Member(ClusterNode node) {
+            this.node = node;
+            this.lastHeartbeat = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public synchronized ClusterView register(ClusterNode node) throws RemoteException {
+        Member previous = members.put(node.getNodeId(), new Member(node));
+        if (previous == null) {
+            version++;
+            System.out.println("Node joined: " + node.getNodeId() + " (" + members.size() + " nodes)");
+        }
+        return view();
+    }
+
+    @Override
+    public synchronized ClusterView heartbeat(String nodeId) throws RemoteException {
+        Member member = members.get(nodeId);
+        if (member == null) {
+            return null;
+        }
+        member.lastHeartbeat = System.currentTimeMillis();
+        return view();
+    }
+
+    @Override
+    public synchronized void unregister(String nodeId) throws RemoteException {
+        if (members.remove(nodeId) != null) {
+            version++;
+            System.out.println("Node left: " + nodeId + " (" + members.size() + " nodes)");
+        }
+    }
+
+    @Override
+    public synchronized ClusterView examsChanged(String nodeId) throws RemoteException {
+        examsVersion++;
+        return view();
+    }
+
+    @Override
+    public synchronized ClusterView getClusterView() throws RemoteException {
+        return view();
+    }
+
+    private synchronized void expireMembers() {
+        long cutoff = System.currentTimeMillis() - EXPIRY_MILLIS;
+        if (members.values().removeIf(member -> {
+            if (member.lastHeartbeat < cutoff) {
+                System.out.println("Node expired: " + member.node.getNodeId());
+                return true;
+            }
+            return false;
+        })) {
+            version++;
+        }
+    }
+
+    private ClusterView view() {
+        List<ClusterNode> nodes = new ArrayList<>();
+        for (Member member : members.values()) {
+            nodes.add(member.node);
+        }
+        nodes.sort(Comparator.comparing(ClusterNode::getNodeId));
+        return new ClusterView(version, examsVersion, Collections.unmodifiableList(nodes));
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        ExamDirectory directory = new ExamDirectory();
+
+        RemoteExamDirectory stub = (RemoteExamDirectory) UnicastRemoteObject.exportObject(directory, 0);
+        Registry registry = LocateRegistry.createRegistry(port);
+        registry.rebind(SERVICE_NAME, stub);
+
+        ScheduledExecutorService expiry = Executors.newSingleThreadScheduledExecutor();
+        expiry.scheduleWithFixedDelay(directory::expireMembers, 1, 1, TimeUnit.SECONDS);
+
+        System.out.println("Exam directory listening on port " + port);
+    }
+}
@@ -1,6 +1,9 @@
 package server;
 
 import java.net.URL;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
@@ -33,6 +36,12 @@ public class ExamEditorController implements Initializable {
     private TextField examDurationField;
     @FXML
     private CheckBox resultsVisibleCheckbox;
+    @FXML
+    private TextField scheduledStartField;
+    @FXML
+    private ComboBox<QuestionPoolIndex.PoolInfo> questionPoolCombo;
+    @FXML
+    private TextField poolDrawCountField;
 
     // Questions table
     @FXML
@@ -60,6 +69,8 @@ public class ExamEditorController implements Initializable {
     private ToggleGroup optionsGroup = new ToggleGroup();
     private boolean isEditMode = false;
 
+    private static final String SCHEDULE_FORMAT = "yyyy-MM-dd HH:mm";
+
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         // Initialize the questions table
@@ -82,6 +93,15 @@ public class ExamEditorController implements Initializable {
 
     public void setExamService(ExamServiceImpl examService) {
         this.examService = examService;
+
+        // The null entry shows the prompt text and stands for fixed questions
+        questionPoolCombo.getItems().add(null);
+        try {
+            questionPoolCombo.getItems().addAll(examService.getQuestionPools());
+        } catch (Exception e) {
+            showAlert(Alert.AlertType.ERROR, "Error", "Could not load question pools", e.getMessage());
+        }
+        questionPoolCombo.getSelectionModel().selectFirst();
     }
 
     public void loadExam(Exam exam) {
@@ -95,6 +115,14 @@ public class ExamEditorController implements Initializable {
         examDescriptionField.setText(exam.getDescription());
         examDurationField.setText(String.valueOf(exam.getDurationMinutes()));
         resultsVisibleCheckbox.setSelected(exam.isResultsVisible());
+        scheduledStartField.setText(exam.getScheduledStart() > 0
+                ? new SimpleDateFormat(SCHEDULE_FORMAT).format(new Date(exam.getScheduledStart())) : "");
+        for (QuestionPoolIndex.PoolInfo pool : questionPoolCombo.getItems()) {
+            if (pool != null && pool.getId() == exam.getPoolId()) {
+                questionPoolCombo.getSelectionModel().select(pool);
+                poolDrawCountField.setText(String.valueOf(exam.getPoolDrawCount()));
+            }
+        }
 
         // Load questions
         questions.clear();
@@ -195,6 +223,10 @@ public class ExamEditorController implements Initializable {
             currentExam.setDescription(examDescriptionField.getText().trim());
             currentExam.setDurationMinutes(Integer.parseInt(examDurationField.getText().trim()));
             currentExam.setResultsVisible(resultsVisibleCheckbox.isSelected());
+            currentExam.setScheduledStart(parseScheduledStart());
+            QuestionPoolIndex.PoolInfo pool = questionPoolCombo.getValue();
+            currentExam.setPoolId(pool != null ? pool.getId() : 0);
+            currentExam.setPoolDrawCount(pool != null ? Integer.parseInt(poolDrawCountField.getText().trim()) : 0);
             currentExam.setQuestions(new ArrayList<>(questions));
 
             // Save to the database
@@ -349,6 +381,39 @@ public class ExamEditorController implements Initializable {
             return false;
         }
 
+        // Check the scheduled start; empty means the exam can be started at any time
+        try {
+            parseScheduledStart();
+        } catch (ParseException e) {
+            showAlert(Alert.AlertType.WARNING, "Validation Error",
+                    "Invalid Start Time", "Please enter the start time as " + SCHEDULE_FORMAT + ", or leave it empty.");
+            return false;
+        }
+
+        // A pooled exam draws all its questions from the pool
+        QuestionPoolIndex.PoolInfo pool = questionPoolCombo.getValue();
+        if (pool != null) {
+            if (!questions.isEmpty()) {
+                showAlert(Alert.AlertType.WARNING, "Validation Error", "Questions and Pool",
+                        "An exam drawing from a question pool cannot have its own questions. "
+                        + "Remove the questions or choose no pool.");
+                return false;
+            }
+            try {
+                int drawCount = Integer.parseInt(poolDrawCountField.getText().trim());
+                if (drawCount <= 0 || drawCount > pool.getSize()) {
+                    showAlert(Alert.AlertType.WARNING, "Validation Error", "Invalid Question Count",
+                            "The number of questions drawn must be between 1 and " + pool.getSize() + ".");
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                showAlert(Alert.AlertType.WARNING, "Validation Error",
+                        "Invalid Question Count", "Please enter a valid number of questions to draw.");
+                return false;
+            }
+            return true;
+        }
+
         // Check if there are questions
         if (questions.isEmpty()) {
             showAlert(Alert.AlertType.WARNING, "Validation Error",
@@ -382,6 +447,16 @@ public class ExamEditorController implements Initializable {
         return true;
     }
 
+    private long parseScheduledStart() throws ParseException {
+        String text = scheduledStartField.getText().trim();
+        if (text.isEmpty()) {
+            return 0;
+        }
+        SimpleDateFormat format = new SimpleDateFormat(SCHEDULE_FORMAT);
+        format.setLenient(false);
+        return format.parse(text).getTime();
+    }
+
     private void showAlert(Alert.AlertType type, String title, String header, String content) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
@@ -0,0 +1,55 @@
+package server;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import shared.Exam;
+import shared.ExamResult;
+import shared.Question;
+
+// Maps rows of the exams, questions and exam_results tables to model objects
+public class ExamRows {
+
+    private ExamRows() {
+    }
+
+    public static Exam readExam(ResultSet rs) throws SQLException {
+        Exam exam = new Exam(
+                rs.getInt("id"),
+                rs.getString("title"),
+                rs.getString("description"),
+                rs.getInt("duration_minutes"),
+                rs.getBoolean("results_visible")
+        );
+        exam.setActive(rs.getBoolean("active"));
+        exam.setScheduledStart(rs.getLong("scheduled_start"));
+        exam.setPoolId(rs.getInt("pool_id"));
+        exam.setPoolDrawCount(rs.getInt("pool_draw_count"));
+        return exam;
+    }
+
+    public static Question readQuestion(ResultSet rs, List<String> options) throws SQLException {
+        return new Question(
+                rs.getInt("id"),
+                rs.getString("text"),
+                options,
+                rs.getInt("correct_option"),
+                rs.getInt("points")
+        );
+    }
+
+    // Expects the exam_results columns plus student_name and exam_title
+    public static ExamResult readResult(ResultSet rs) throws SQLException {
+        ExamResult result = new ExamResult(
+                rs.getInt("id"),
+                rs.getInt("exam_id"),
+                rs.getString("student_id"),
+                rs.getString("student_name"),
+                rs.getInt("score"),
+                rs.getInt("total_possible"),
+                rs.getTimestamp("submission_time")
+        );
+        result.setExamTitle(rs.getString("exam_title"));
+        return result;
+    }
+}
@@ -0,0 +1,203 @@
+package server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.zip.Deflater;
+import shared.ClusterNode;
+import shared.CompressingSocketFactory;
+import shared.RemoteExamService;
+
+// Starts the exam service and the RMI registry without any JavaFX classes.
+// Run directly for a headless server, e.g.
+//   java -cp ExamServer.jar:lib/* server.ExamServerDaemon
+// The JavaFX admin UI starts the same service at launch and attaches to it.
+//
+// -Dexam.rmi.port sets the registry port (default 1099). With
+// -Dexam.directory=host:port the node joins a cluster run by ExamDirectory and
+// advertises itself as -Dexam.node.host (default localhost) and the RMI port.
+//
+// -Dexam.rmi.compression=true exports the service on compressing sockets
+// (shared.CompressingSocketFactory); replies of at least
+// -Dexam.rmi.compressionThreshold bytes (default 512) are deflated at
+// -Dexam.rmi.compressionLevel (default 1). Worth it on slow lab links, where
+// an exam's question text takes longer to send than to compress; measure with
+// ServerBenchmarks compress. Clients need the factory class, so update them
+// before turning it on.
+//
+// -Dexam.nio.port=1100 also serves the service over NioExamServer for
+// clients started with -Dexam.transport=nio, and -Dexam.http.port=8080 serves
+// the student calls as HTTP/JSON for browsers through HttpGateway.
+public class ExamServerDaemon {
+
+    private static final int RMI_PORT = Integer.getInteger("exam.rmi.port", 1099);
+    private static final String SERVICE_NAME = "ExamService";
+    private static final boolean COMPRESSION = Boolean.getBoolean("exam.rmi.compression");
+    private static final int COMPRESSION_THRESHOLD = Integer.getInteger("exam.rmi.compressionThreshold", 512);
+    private static final int COMPRESSION_LEVEL = Integer.getInteger("exam.rmi.compressionLevel", Deflater.BEST_SPEED);
+    private static Registry registry;
+    private static ExamServiceImpl examService;
+    private static RemoteExamService exportedService;
+    private static ClusterMember clusterMember;
+    private static NioExamServer nioServer;
+    private static HttpGateway httpGateway;
+
+    public static synchronized ExamServiceImpl start() throws Exception {
+        if (examService != null) {
+            return examService;
+        }
+        ActivityLog activityLog = ActivityLog.getDefault();
+
+        // Outbound RMI calls, i.e. event callbacks to clients, give up on a client that
+        // stops answering; read once, before the first call
+        if (System.getProperty("sun.rmi.transport.tcp.responseTimeout") == null) {
+            System.setProperty("sun.rmi.transport.tcp.responseTimeout",
+                    String.valueOf(EventBroadcaster.RESPONSE_TIMEOUT_MILLIS));
+        }
+
+        ExamServiceImpl service = new ExamServiceImpl(activityLog);
+
+        // Time every remote call and publish the timings over JMX
+        ServiceMetrics metrics = ServiceMetrics.getInstance();
+        metrics.registerMBeans();
+        exportedService = metrics.instrument(service);
+
+        // Refuse calls over the per-student limits before they are timed or reach the database
+        if (RateLimiter.isEnabled()) {
+            exportedService = new RateLimiter().wrap(exportedService);
+        }
+
+        // Start the RMI service
+        RemoteExamService stub;
+        if (COMPRESSION) {
+            CompressingSocketFactory sockets = new CompressingSocketFactory(COMPRESSION_THRESHOLD, COMPRESSION_LEVEL);
+            stub = (RemoteExamService) UnicastRemoteObject.exportObject(exportedService, 0, sockets, sockets);
+        } else {
+            stub = (RemoteExamService) UnicastRemoteObject.exportObject(exportedService, 0);
+        }
+
+        // Create and start the RMI registry
+        registry = LocateRegistry.createRegistry(RMI_PORT);
+        registry.rebind(SERVICE_NAME, stub);
+        examService = service;
+
+        if (NioExamServer.configuredPort() > 0) {
+            nioServer = new NioExamServer(NioExamServer.configuredPort(), exportedService, activityLog);
+            nioServer.start();
+        }
+
+        if (HttpGateway.configuredPort() > 0) {
+            httpGateway = new HttpGateway(HttpGateway.configuredPort(), exportedService, service, activityLog);
+            httpGateway.start();
+        }
+
+        long readyMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        activityLog.log("Exam service bound to RMI registry on port " + RMI_PORT
+                + " - ready " + readyMillis + " ms after JVM start, " + describeMemory());
+        for (String replica : DatabaseManager.getInstance().describeReplicas()) {
+            activityLog.log("Read replica " + replica);
+        }
+
+        String directory = System.getProperty("exam.directory");
+        if (directory != null) {
+            ClusterNode self = new ClusterNode(System.getProperty("exam.node.host", "localhost"), RMI_PORT);
+            clusterMember = new ClusterMember(directory, self, service, activityLog);
+            clusterMember.start();
+        }
+        System.out.println("Exam Server started. RMI service bound to registry.");
+        return service;
+    }
+
+    // The running service, or null if it has not been started
+    public static synchronized ExamServiceImpl getService() {
+        return examService;
+    }
+
+    public static synchronized void stop() {
+        // Leave the cluster first so clients stop routing here
+        if (clusterMember != null) {
+            clusterMember.stop();
+            clusterMember = null;
+        }
+
+        if (nioServer != null) {
+            nioServer.stop();
+            nioServer = null;
+        }
+
+        if (httpGateway != null) {
+            httpGateway.stop();
+            httpGateway = null;
+        }
+
+        if (registry != null) {
+            try {
+                registry.unbind(SERVICE_NAME);
+                System.out.println("Server stopped, service unbound.");
+            } catch (Exception e) {
+                // Registry or service not found, which is fine during shutdown
+                System.out.println("No service to unbind or registry not available.");
+            }
+        }
+
+        if (examService != null) {
+            try {
+                UnicastRemoteObject.unexportObject(exportedService, true);
+            } catch (Exception e) {
+                System.err.println("Error unexporting exam service: " + e.getMessage());
+            }
+            // Shutdown the thread pool
+            examService.shutdown();
+            examService = null;
+        }
+
+        // Flush pending log lines to the log file
+        ActivityLog.getDefault().close();
+    }
+
+    private static String describeMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long heapUsed = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        String description = "heap used " + heapUsed + " MB";
+
+        // Resident set size is only available on Linux
+        Path status = Paths.get("/proc/self/status");
+        if (Files.isReadable(status)) {
+            try {
+                for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("VmRSS:")) {
+                        description += ", resident " + line.substring(6).trim();
+                    }
+                }
+            } catch (IOException e) {
+                // Leave the resident size out
+            }
+        }
+        return description;
+    }
+
+    public static void main(String[] args) {
+        // Echo the activity log to the console
+        ActivityLog.getDefault().addListener((lines, droppedTotal) -> {
+            for (String line : lines) {
+                System.out.println(line);
+            }
+        });
+
+        try {
+            start();
+        } catch (Exception e) {
+            System.err.println("Error starting RMI service: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread(ExamServerDaemon::stop, "exam-server-shutdown"));
+    }
+}
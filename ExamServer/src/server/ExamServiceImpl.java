@@ -1,18 +1,25 @@
 package server;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
@@ -24,7 +31,13 @@ public class ExamServiceImpl implements RemoteExamService {
     private static final Logger LOGGER = Logger.getLogger(ExamServiceImpl.class.getName());
 
     private final DatabaseManager dbManager;
-    private final ServerMainController controller;
+    private final ActivityLog activityLog;
+
+    // Admin UIs attached to this service; the service runs fine without any
+    private final List<ExamServiceListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Clients subscribed to exam events
+    private final EventBroadcaster events;
 
     // Thread pool for handling concurrent student requests
     private final ExecutorService threadPool;
@@ -32,15 +45,56 @@ public class ExamServiceImpl implements RemoteExamService {
     // Track active exam sessions - using ConcurrentHashMap for thread safety
     private final Map<String, ActiveExamSession> activeExams = new ConcurrentHashMap<>();
 
-    public ExamServiceImpl(ServerMainController controller) {
-        this.dbManager = new DatabaseManager();
-        this.controller = controller;
+    // Answers "has this student taken this exam" without touching exam_results
+    private final CompletionIndex completionIndex = new CompletionIndex();
+
+    // Snapshot of the active exams shared by all student dashboards
+    private final ExamCatalog catalog;
+
+    // Question pools and the draw settings of pooled exams
+    private final QuestionPoolIndex poolIndex;
+
+    // Queues students at the start of scheduled exams
+    private final AdmissionController admission = new AdmissionController();
+
+    // Outcomes of recent submissions by submission key, for retried submitExam calls
+    private final RecentSubmissions recentSubmissions = new RecentSubmissions();
+
+    // Exams with questions, loaded once and encrypted once for pre-distribution.
+    // Entries are dropped when the exam changes; building and dropping lock the map.
+    private final Map<Integer, PreparedExam> preparedExams = new ConcurrentHashMap<>();
+
+    // Cluster mode: hash ring of the current cluster view and this node's id, both null
+    // when running alone. The completion index is then only trusted for exams this
+    // node has owned since it last reloaded them from the database.
+    private volatile ExamHashRing clusterRing;
+    private volatile String nodeId;
+    private final Set<Integer> trustedExams = ConcurrentHashMap.newKeySet();
+
+    public ExamServiceImpl(ActivityLog activityLog) {
+        this.dbManager = DatabaseManager.getInstance();
+        this.activityLog = activityLog;
+        this.catalog = new ExamCatalog(dbManager);
+        this.poolIndex = new QuestionPoolIndex(dbManager);
+        this.events = new EventBroadcaster(activityLog);
 
         // Create a thread pool with a fixed number of threads
         // Adjust the number based on expected concurrent users
         this.threadPool = Executors.newFixedThreadPool(20);
 
-        controller.logActivity("Thread pool initialized with 20 threads for concurrent student sessions");
+        activityLog.log("Thread pool initialized with 20 threads for concurrent student sessions");
+
+        // Load completed exams into memory
+        try {
+            completionIndex.load(dbManager);
+            activityLog.log("Completion index loaded: " + completionIndex.getCompletionCount()
+                    + " completions for " + completionIndex.getStudentCount() + " students, ~"
+                    + (completionIndex.getBitmapFootprintBytes() + completionIndex.getOrdinalMapFootprintBytes()) / 1024
+                    + " KB");
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading completion index", e);
+            throw new RuntimeException("Error loading completion index", e);
+        }
     }
 
     @Override
@@ -50,114 +104,339 @@ public class ExamServiceImpl implements RemoteExamService {
         ResultSet rs = null;
 
         try {
-            conn = dbManager.getConnection();
+            conn = dbManager.getReadConnection(null);
             String table = isTeacher ? "teachers" : "students";
-            String sql = "SELECT * FROM " + table + " WHERE username = ? AND password = ?";
+            String sql = "SELECT password FROM " + table + " WHERE username = ?";
 
             stmt = conn.prepareStatement(sql);
             stmt.setString(1, username);
-            stmt.setString(2, password); // In a real app, use password hashing
 
             rs = stmt.executeQuery();
-            boolean authenticated = rs.next();
+            boolean authenticated = rs.next() && PasswordHasher.verify(password, rs.getString("password"));
 
             // Log the authentication attempt
-            controller.logActivity(username + " (" + (isTeacher ? "teacher" : "student")
+            activityLog.log(username + " (" + (isTeacher ? "teacher" : "student")
                     + ") authentication " + (authenticated ? "successful" : "failed"));
 
             return authenticated;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Authentication error", e);
-            controller.logActivity("Authentication error: " + e.getMessage());
+            activityLog.log("Authentication error: " + e.getMessage());
             throw new RemoteException("Authentication failed", e);
         } finally {
             dbManager.closeResources(conn, stmt, rs);
         }
     }
 
-    @Override
-    public List<Exam> getAvailableExams(String studentId) throws RemoteException {
+    // Student id of a username, or null; for the HTTP gateway, whose clients cannot query the database
+    public String findStudentId(String username) throws RemoteException {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
-        List<Exam> exams = new ArrayList<>();
 
         try {
-            conn = dbManager.getConnection();
-
-            // First, get exams the student has already taken
-            String takenSql = "SELECT exam_id FROM exam_results WHERE student_id = ?";
-            stmt = conn.prepareStatement(takenSql);
-            stmt.setString(1, studentId);
+            conn = dbManager.getReadConnection(null);
+            stmt = conn.prepareStatement("SELECT id FROM students WHERE username = ?");
+            stmt.setString(1, username);
             rs = stmt.executeQuery();
+            return rs.next() ? rs.getString("id") : null;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error looking up student id", e);
+            throw new RemoteException("Failed to look up student: " + e.getMessage(), e);
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
 
-            Set<Integer> takenExamIds = new HashSet<>();
-            while (rs.next()) {
-                takenExamIds.add(rs.getInt("exam_id"));
+    @Override
+    public List<Exam> getAvailableExams(String studentId) throws RemoteException {
+        try {
+            List<Exam> exams = buildAvailableExams(studentId, catalog.getSnapshot());
+
+            activityLog.log("Student " + studentId + " retrieved available exams - found " + exams.size() + " exams");
+            return exams;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving available exams", e);
+            activityLog.log("Error retrieving exams: " + e.getMessage());
+            throw new RemoteException("Failed to retrieve exams: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public AvailableExams getAvailableExamsIfChanged(String studentId, long knownVersion) throws RemoteException {
+        try {
+            ExamCatalog.Snapshot snapshot = catalog.getSnapshot();
+            List<Exam> exams = buildAvailableExams(studentId, snapshot);
+
+            // The view only changes when the catalog changes or the student completes an exam
+            long version = (snapshot.getVersion() << 24) + (snapshot.getExams().size() - exams.size());
+            if (version == knownVersion) {
+                return new AvailableExams(version, false, null);
             }
 
-            // Close previous resources
-            dbManager.closeResources(null, stmt, rs);
+            activityLog.log("Student " + studentId + " retrieved available exams - found " + exams.size() + " exams");
+            return new AvailableExams(version, true, exams);
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving available exams", e);
+            activityLog.log("Error retrieving exams: " + e.getMessage());
+            throw new RemoteException("Failed to retrieve exams: " + e.getMessage(), e);
+        }
+    }
+
+    // Active exams from the catalog minus the ones the student has already taken
+    private List<Exam> buildAvailableExams(String studentId, ExamCatalog.Snapshot snapshot) throws SQLException {
+        int studentOrdinal = completionIndex.ordinalOf(studentId);
+        List<Exam> exams = new ArrayList<>();
+        Set<Integer> completedInDatabase = null;
 
-            // Get all active exams
-            String sql = "SELECT * FROM exams WHERE active = 1";
+        for (Exam exam : snapshot.getExams()) {
+            boolean taken;
+            if (clusterRing == null || trustedExams.contains(exam.getId())) {
+                taken = completionIndex.hasTaken(exam.getId(), studentOrdinal);
+            } else {
+                // Exams owned by other nodes: one query covers all of them
+                if (completedInDatabase == null) {
+                    completedInDatabase = getCompletedExamIds(studentId);
+                }
+                taken = completedInDatabase.contains(exam.getId());
+            }
+            if (!taken) {
+                exams.add(exam);
+            }
+        }
+        return exams;
+    }
+
+    private Set<Integer> getCompletedExamIds(String studentId) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        Set<Integer> examIds = new HashSet<>();
+
+        try {
+            conn = dbManager.getReadConnection(studentId);
+            String sql = "SELECT exam_id FROM exam_results WHERE student_id = ?";
             stmt = conn.prepareStatement(sql);
+            stmt.setString(1, studentId);
             rs = stmt.executeQuery();
 
             while (rs.next()) {
-                int examId = rs.getInt("id");
+                examIds.add(rs.getInt("exam_id"));
+            }
+            return examIds;
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
 
-                // Skip exams the student has already taken
-                if (takenExamIds.contains(examId)) {
-                    continue;
+    @Override
+    public Admission requestAdmission(int examId, String studentId) throws RemoteException {
+        try {
+            // Answered from memory: the catalog, the completion index and the admission queue
+            Exam exam = null;
+            for (Exam active : catalog.getSnapshot().getExams()) {
+                if (active.getId() == examId) {
+                    exam = active;
                 }
-
-                Exam exam = new Exam(
-                        examId,
-                        rs.getString("title"),
-                        rs.getString("description"),
-                        rs.getInt("duration_minutes"),
-                        rs.getBoolean("results_visible")
-                );
-                exam.setActive(rs.getBoolean("active"));
-                exams.add(exam);
             }
-
-            controller.logActivity("Student " + studentId + " retrieved available exams - found " + exams.size() + " exams");
-            return exams;
+            if (exam == null) {
+                throw new RemoteException("Exam not found");
+            }
+            ensureCompletionsCurrent(examId);
+            if (completionIndex.hasTaken(examId, studentId)) {
+                throw new RemoteException("You have already taken this exam");
+            }
+            if (activeExams.containsKey(studentId + "-" + examId)) {
+                return new Admission(true, 0, 0);
+            }
+            return admission.admit(examId, exam.getScheduledStart(), studentId);
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving available exams", e);
-            controller.logActivity("Error retrieving exams: " + e.getMessage());
-            throw new RemoteException("Failed to retrieve exams: " + e.getMessage(), e);
-        } finally {
-            dbManager.closeResources(conn, stmt, rs);
+            LOGGER.log(Level.SEVERE, "Error checking exam admission", e);
+            activityLog.log("Error checking exam admission: " + e.getMessage());
+            throw new RemoteException("Failed to check exam admission: " + e.getMessage(), e);
+        }
+    }
+
+    // Starting an exam without having been admitted, e.g. by an older client, also
+    // goes through the queue; resuming a started session does not
+    private void checkAdmitted(Exam exam, String studentId) throws RemoteException {
+        if (activeExams.containsKey(studentId + "-" + exam.getId())) {
+            return;
+        }
+        Admission result = admission.admit(exam.getId(), exam.getScheduledStart(), studentId);
+        if (!result.isAdmitted()) {
+            throw new RemoteException("You are number " + result.getPosition() + " in line for this exam. "
+                    + "Please try again in " + (result.getRetryAfterMillis() + 999) / 1000 + " s.");
         }
     }
 
     @Override
     public Exam getExamQuestions(int examId, String studentId) throws RemoteException {
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-
         try {
             // First check if the student has already taken this exam
-            conn = dbManager.getConnection();
-            String checkSql = "SELECT * FROM exam_results WHERE exam_id = ? AND student_id = ?";
-            stmt = conn.prepareStatement(checkSql);
-            stmt.setInt(1, examId);
-            stmt.setString(2, studentId);
-            rs = stmt.executeQuery();
+            ensureCompletionsCurrent(examId);
+            if (completionIndex.hasTaken(examId, studentId)) {
+                activityLog.log("Student " + studentId + " attempted to retake exam " + examId);
+                throw new RemoteException("You have already taken this exam");
+            }
 
-            if (rs.next()) {
-                controller.logActivity("Student " + studentId + " attempted to retake exam " + examId);
+            PreparedExam prepared = getPreparedExam(examId);
+            checkStarted(prepared.exam);
+            checkAdmitted(prepared.exam, studentId);
+
+            // Create an active exam session, or resume the one the student already started;
+            // a pooled exam is drawn with the cutoff recorded when the session started
+            ActiveExamSession session = startSession(examId, studentId,
+                    prepared.exam.getDurationMinutes() * 60 * 1000L);
+            Exam exam = studentExam(examId, studentId, session.getPoolCutoff());
+
+            activityLog.log("Student " + studentId + " started exam " + examId);
+            return exam;
+        } catch (SQLException | GeneralSecurityException | IOException e) {
+            LOGGER.log(Level.SEVERE, "Error retrieving exam questions", e);
+            activityLog.log("Error retrieving exam questions: " + e.getMessage());
+            throw new RemoteException("Failed to retrieve exam questions: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public EncryptedExam prefetchExam(int examId, String studentId) throws RemoteException {
+        try {
+            ensureCompletionsCurrent(examId);
+            if (completionIndex.hasTaken(examId, studentId)) {
                 throw new RemoteException("You have already taken this exam");
             }
 
-            // Close previous resources
-            dbManager.closeResources(null, stmt, rs);
+            // Every student gets the same ciphertext, except in pooled exams where each
+            // student's draw is sealed with the exam key; only the clock reading is per call.
+            // The draw uses the whole pool: adding questions to the pool replaces the key,
+            // so a copy drawn before that cannot be opened and the client asks again.
+            PreparedExam prepared = getPreparedExam(examId);
+            EncryptedExam cached = prepared.payload != null ? prepared.payload
+                    : EncryptedExam.seal(studentExam(examId, studentId, 0), prepared.key);
+            EncryptedExam payload = new EncryptedExam(cached.getExamId(), cached.getKeyId(),
+                    cached.getScheduledStart(), cached.getIv(), cached.getCiphertext());
+            payload.setServerTime(System.currentTimeMillis());
+
+            activityLog.log("Student " + studentId + " prefetched exam " + examId);
+            return payload;
+        } catch (SQLException | GeneralSecurityException | IOException e) {
+            LOGGER.log(Level.SEVERE, "Error preparing exam for prefetch", e);
+            activityLog.log("Error preparing exam for prefetch: " + e.getMessage());
+            throw new RemoteException("Failed to prefetch exam: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ExamKey releaseExamKey(int examId, String studentId) throws RemoteException {
+        try {
+            ensureCompletionsCurrent(examId);
+            if (completionIndex.hasTaken(examId, studentId)) {
+                activityLog.log("Student " + studentId + " attempted to retake exam " + examId);
+                throw new RemoteException("You have already taken this exam");
+            }
+
+            PreparedExam prepared = getPreparedExam(examId);
+            checkStarted(prepared.exam);
+            checkAdmitted(prepared.exam, studentId);
+
+            // The key release is the start of the student's session
+            ActiveExamSession session = startSession(examId, studentId,
+                    prepared.exam.getDurationMinutes() * 60 * 1000L);
+
+            activityLog.log("Student " + studentId + " started exam " + examId + " (key released)");
+            return prepared.key.forSession(session.getStartTime());
+        } catch (SQLException | GeneralSecurityException | IOException e) {
+            LOGGER.log(Level.SEVERE, "Error releasing exam key", e);
+            activityLog.log("Error releasing exam key: " + e.getMessage());
+            throw new RemoteException("Failed to release exam key: " + e.getMessage(), e);
+        }
+    }
+
+    private void checkStarted(Exam exam) throws RemoteException {
+        if (exam.getScheduledStart() > System.currentTimeMillis()) {
+            throw new RemoteException("This exam starts at "
+                    + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(exam.getScheduledStart())));
+        }
+    }
+
+    private PreparedExam getPreparedExam(int examId)
+            throws SQLException, RemoteException, GeneralSecurityException, IOException {
+        PreparedExam prepared = preparedExams.get(examId);
+        if (prepared != null) {
+            return prepared;
+        }
+
+        synchronized (preparedExams) {
+            prepared = preparedExams.get(examId);
+            if (prepared == null) {
+                Exam exam = loadExam(examId);
+                ExamKey key = ExamKey.generate(examId);
+                if (exam.getPoolId() > 0) {
+                    // The questions are the whole pool; each student gets a sealed copy of their draw
+                    prepared = new PreparedExam(exam, key, null);
+                } else {
+                    prepared = new PreparedExam(exam, key, EncryptedExam.seal(exam, key));
+                }
+                preparedExams.put(examId, prepared);
+            }
+            return prepared;
+        }
+    }
+
+    // The exam as the student sees it: the prepared exam itself, or for a pooled
+    // exam a copy holding the questions drawn for this student up to poolCutoff
+    private Exam studentExam(int examId, String studentId, int poolCutoff)
+            throws SQLException, RemoteException, GeneralSecurityException, IOException {
+        for (int attempt = 0; attempt < 2; attempt++) {
+            PreparedExam prepared = getPreparedExam(examId);
+            int[] drawn = prepared.exam.getPoolId() > 0 ? poolIndex.draw(examId, studentId, poolCutoff) : null;
+            if (drawn == null) {
+                return prepared.exam;
+            }
+
+            List<Question> questions = new ArrayList<>(drawn.length);
+            for (int questionId : drawn) {
+                Question question = prepared.poolQuestions.get(questionId);
+                if (question == null) {
+                    break;
+                }
+                questions.add(question);
+            }
+            if (questions.size() == drawn.length) {
+                Exam exam = prepared.exam;
+                Exam copy = new Exam(exam.getId(), exam.getTitle(), exam.getDescription(),
+                        exam.getDurationMinutes(), exam.isResultsVisible());
+                copy.setActive(exam.isActive());
+                copy.setScheduledStart(exam.getScheduledStart());
+                copy.setPoolId(exam.getPoolId());
+                copy.setPoolDrawCount(exam.getPoolDrawCount());
+                copy.setQuestions(questions);
+                return copy;
+            }
+
+            // The pool changed between loading the exam and the index; load both again
+            discardPreparedExam(examId);
+            poolIndex.invalidate();
+        }
+        throw new RemoteException("The question pool of this exam is being changed. Please try again.");
+    }
+
+    // Call after a committed change to an exam or its questions
+    private void discardPreparedExam(int examId) {
+        synchronized (preparedExams) {
+            preparedExams.remove(examId);
+        }
+    }
+
+    private Exam loadExam(int examId) throws SQLException, RemoteException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
 
+        try {
             // Get the exam details
+            conn = dbManager.getReadConnection(DatabaseManager.EXAM_CONTENT);
             String examSql = "SELECT * FROM exams WHERE id = ?";
             stmt = conn.prepareStatement(examSql);
             stmt.setInt(1, examId);
@@ -167,18 +446,16 @@ public class ExamServiceImpl implements RemoteExamService {
                 throw new RemoteException("Exam not found");
             }
 
-            Exam exam = new Exam(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("description"),
-                    rs.getInt("duration_minutes"),
-                    rs.getBoolean("results_visible")
-            );
-            exam.setActive(rs.getBoolean("active"));
+            Exam exam = ExamRows.readExam(rs);
 
             // Close previous resources
             dbManager.closeResources(null, stmt, rs);
 
+            if (exam.getPoolId() > 0) {
+                exam.setQuestions(loadPoolQuestions(conn, exam.getPoolId()));
+                return exam;
+            }
+
             // Get the questions for this exam
             String questionsSql = "SELECT q.* FROM questions q "
                     + "JOIN exam_questions eq ON q.id = eq.question_id "
@@ -189,38 +466,109 @@ public class ExamServiceImpl implements RemoteExamService {
 
             List<Question> questions = new ArrayList<>();
             while (rs.next()) {
-                int questionId = rs.getInt("id");
-                Question question = new Question(
-                        questionId,
-                        rs.getString("text"),
-                        getOptionsForQuestion(questionId),
-                        rs.getInt("correct_option"),
-                        rs.getInt("points")
-                );
-                questions.add(question);
+                questions.add(ExamRows.readQuestion(rs, getOptionsForQuestion(rs.getInt("id"))));
             }
 
             exam.setQuestions(questions);
+            return exam;
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
 
-            // Create an active exam session
-            ActiveExamSession session = new ActiveExamSession(
-                    examId,
-                    studentId,
-                    System.currentTimeMillis(),
-                    exam.getDurationMinutes() * 60 * 1000
-            );
-            activeExams.put(studentId + "-" + examId, session);
+    // All questions of a pool with two queries, however large the pool
+    private List<Question> loadPoolQuestions(Connection conn, int poolId) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
 
-            controller.logActivity("Student " + studentId + " started exam " + examId);
+        try {
+            String optionsSql = "SELECT qo.question_id, qo.option_text FROM question_options qo "
+                    + "JOIN pool_questions pq ON pq.question_id = qo.question_id "
+                    + "WHERE pq.pool_id = ? ORDER BY qo.question_id, qo.option_order";
+            stmt = conn.prepareStatement(optionsSql);
+            stmt.setInt(1, poolId);
+            rs = stmt.executeQuery();
 
-            // Update active sessions in the UI
-            controller.refreshSessions();
+            Map<Integer, List<String>> options = new HashMap<>();
+            while (rs.next()) {
+                options.computeIfAbsent(rs.getInt("question_id"), id -> new ArrayList<>())
+                        .add(rs.getString("option_text"));
+            }
+            dbManager.closeResources(null, stmt, rs);
 
-            return exam;
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error retrieving exam questions", e);
-            controller.logActivity("Error retrieving exam questions: " + e.getMessage());
-            throw new RemoteException("Failed to retrieve exam questions: " + e.getMessage(), e);
+            String questionsSql = "SELECT q.* FROM questions q "
+                    + "JOIN pool_questions pq ON q.id = pq.question_id "
+                    + "WHERE pq.pool_id = ?";
+            stmt = conn.prepareStatement(questionsSql);
+            stmt.setInt(1, poolId);
+            rs = stmt.executeQuery();
+
+            List<Question> questions = new ArrayList<>();
+            while (rs.next()) {
+                int questionId = rs.getInt("id");
+                questions.add(ExamRows.readQuestion(rs,
+                        options.getOrDefault(questionId, new ArrayList<>())));
+            }
+            return questions;
+        } finally {
+            dbManager.closeResources(null, stmt, rs);
+        }
+    }
+
+    // Sessions are stored in exam_sessions so a restarted node, or the node taking
+    // over the exam, keeps the original start time and pool cutoff. Also updates the
+    // session list in the UI.
+    private ActiveExamSession startSession(int examId, String studentId, long durationMillis) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        long startTime = System.currentTimeMillis();
+        int poolCutoff = poolIndex.cutoff(examId);
+        boolean started = true;
+
+        try {
+            conn = dbManager.getConnection();
+            String insertSql = "INSERT INTO exam_sessions (exam_id, student_id, started_at, duration_millis, "
+                    + "pool_cutoff) VALUES (?, ?, ?, ?, ?)";
+            stmt = conn.prepareStatement(insertSql);
+            stmt.setInt(1, examId);
+            stmt.setString(2, studentId);
+            stmt.setLong(3, startTime);
+            stmt.setLong(4, durationMillis);
+            if (poolCutoff > 0) {
+                stmt.setInt(5, poolCutoff);
+            } else {
+                stmt.setNull(5, Types.INTEGER);
+            }
+
+            try {
+                stmt.executeUpdate();
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                started = false;
+                dbManager.closeResources(null, stmt, null);
+
+                String selectSql = "SELECT started_at, pool_cutoff FROM exam_sessions "
+                        + "WHERE exam_id = ? AND student_id = ?";
+                stmt = conn.prepareStatement(selectSql);
+                stmt.setInt(1, examId);
+                stmt.setString(2, studentId);
+                rs = stmt.executeQuery();
+                if (rs.next()) {
+                    startTime = rs.getLong("started_at");
+                    poolCutoff = rs.getInt("pool_cutoff");
+                }
+            }
+            ActiveExamSession session = new ActiveExamSession(examId, studentId, startTime, durationMillis,
+                    poolCutoff);
+            activeExams.put(studentId + "-" + examId, session);
+            fireSessionsChanged();
+            if (started) {
+                events.publish(new ExamEvent(ExamEvent.Type.SESSION_STARTED, examId, studentId));
+            }
+            return session;
         } finally {
             dbManager.closeResources(conn, stmt, rs);
         }
@@ -233,7 +581,7 @@ public class ExamServiceImpl implements RemoteExamService {
         List<String> options = new ArrayList<>();
 
         try {
-            conn = dbManager.getConnection();
+            conn = dbManager.getReadConnection(DatabaseManager.EXAM_CONTENT);
             String sql = "SELECT * FROM question_options WHERE question_id = ? ORDER BY option_order";
 
             stmt = conn.prepareStatement(sql);
@@ -252,9 +600,45 @@ public class ExamServiceImpl implements RemoteExamService {
 
     @Override
     public boolean submitExam(int examId, String studentId, List<Answer> answers) throws RemoteException {
+        return storeSubmission(examId, studentId, answers, null);
+    }
+
+    // A retry with the same key returns the outcome of the first attempt
+    @Override
+    public boolean submitExam(int examId, String studentId, List<Answer> answers, String submissionKey)
+            throws RemoteException {
+        if (submissionKey == null) {
+            return storeSubmission(examId, studentId, answers, null);
+        }
+        if (submissionKey.isEmpty() || submissionKey.length() > 64) {
+            throw new RemoteException("Invalid submission key");
+        }
+
+        RecentSubmissions.Attempt earlier = recentSubmissions.begin(submissionKey, examId, studentId);
+        if (earlier != null) {
+            activityLog.log("Student " + studentId + " retried submission of exam " + examId);
+            return earlier.await();
+        }
+        try {
+            boolean stored = storeSubmission(examId, studentId, answers, submissionKey);
+            recentSubmissions.succeeded(submissionKey);
+            return stored;
+        } catch (RemoteException e) {
+            recentSubmissions.failed(submissionKey, e);
+            throw e;
+        } catch (RuntimeException e) {
+            recentSubmissions.failed(submissionKey, new RemoteException("Failed to submit exam: " + e.getMessage(), e));
+            throw e;
+        }
+    }
+
+    private boolean storeSubmission(int examId, String studentId, List<Answer> answers, String submissionKey)
+            throws RemoteException {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
+        boolean reserved = false;
+        boolean submitted = false;
 
         try {
             // First verify that the student exists in the database
@@ -265,94 +649,82 @@ public class ExamServiceImpl implements RemoteExamService {
             rs = stmt.executeQuery();
 
             if (!rs.next()) {
-                controller.logActivity("Error: Student ID " + studentId + " not found in database");
+                activityLog.log("Error: Student ID " + studentId + " not found in database");
                 throw new RemoteException("Student ID not found in database. Please contact your administrator.");
             }
 
             // Close previous resources
             dbManager.closeResources(null, stmt, rs);
 
-            // Check if the student has already submitted this exam
-            String checkSql = "SELECT COUNT(*) FROM exam_results WHERE exam_id = ? AND student_id = ?";
-            stmt = conn.prepareStatement(checkSql);
-            stmt.setInt(1, examId);
-            stmt.setString(2, studentId);
-            rs = stmt.executeQuery();
-
-            if (rs.next() && rs.getInt(1) > 0) {
-                controller.logActivity("Student " + studentId + " attempted to resubmit exam " + examId);
-                throw new RemoteException("You have already submitted this exam");
-            }
-
-            // Close previous resources
-            dbManager.closeResources(null, stmt, rs);
-
             // Check if the exam exists
-            String checkExamSql = "SELECT id FROM exams WHERE id = ?";
+            String checkExamSql = "SELECT id, pool_id FROM exams WHERE id = ?";
             stmt = conn.prepareStatement(checkExamSql);
             stmt.setInt(1, examId);
             rs = stmt.executeQuery();
 
             if (!rs.next()) {
-                controller.logActivity("Error: Exam ID " + examId + " not found in database");
+                activityLog.log("Error: Exam ID " + examId + " not found in database");
                 throw new RemoteException("Exam ID not found in database. Please contact your administrator.");
             }
+            boolean pooled = rs.getInt("pool_id") > 0;
 
             // Close previous resources
             dbManager.closeResources(null, stmt, rs);
 
-            // Get a connection and disable auto-commit for transaction
-            conn = dbManager.getConnection();
+            // Reserve the completion so a concurrent submission of the same exam is rejected
+            ensureCompletionsCurrent(examId);
+            if (!completionIndex.markTaken(examId, studentId)) {
+                // A retry whose first attempt is no longer in recentSubmissions
+                if (isStoredSubmission(conn, examId, studentId, submissionKey)) {
+                    activityLog.log("Student " + studentId + " retried submission of exam " + examId);
+                    return true;
+                }
+                activityLog.log("Student " + studentId + " attempted to resubmit exam " + examId);
+                throw new RemoteException("You have already submitted this exam");
+            }
+            reserved = true;
+
+            // Disable auto-commit for the transaction
             conn.setAutoCommit(false);
 
             try {
-                // Calculate the score
-                int score = 0;
-                int totalPossible = 0;
-
-                Map<Integer, Integer> questionPoints = new HashMap<>();
-                Map<Integer, Integer> correctAnswers = new HashMap<>();
-
-                // Get all questions and their correct answers
-                String questionsSql = "SELECT id, correct_option, points FROM questions "
-                        + "WHERE id IN (SELECT question_id FROM exam_questions WHERE exam_id = ?)";
-                stmt = conn.prepareStatement(questionsSql);
-                stmt.setInt(1, examId);
-                rs = stmt.executeQuery();
-
-                while (rs.next()) {
-                    int questionId = rs.getInt("id");
-                    int correctOption = rs.getInt("correct_option");
-                    int points = rs.getInt("points");
+                // A pooled exam is scored against the student's draw, computed again from the
+                // pool index with the cutoff of the student's session
+                AnswerKey answerKey = pooled
+                        ? poolIndex.answerKey(examId, studentId, sessionPoolCutoff(conn, examId, studentId))
+                        : null;
+                if (answerKey == null) {
+                    // Get all questions and their correct answers
+                    String questionsSql = "SELECT id, correct_option, points FROM questions "
+                            + "WHERE id IN (SELECT question_id FROM exam_questions WHERE exam_id = ?)";
+                    stmt = conn.prepareStatement(questionsSql);
+                    stmt.setInt(1, examId);
+                    rs = stmt.executeQuery();
 
-                    questionPoints.put(questionId, points);
-                    correctAnswers.put(questionId, correctOption);
-                    totalPossible += points;
+                    AnswerKey.Builder keyBuilder = new AnswerKey.Builder();
+                    while (rs.next()) {
+                        keyBuilder.add(rs.getInt("id"), rs.getInt("correct_option"), rs.getInt("points"));
+                    }
+                    answerKey = keyBuilder.build();
+                    dbManager.closeResources(null, stmt, rs);
                 }
 
                 // Calculate score based on answers
-                for (Answer answer : answers) {
-                    int questionId = answer.getQuestionId();
-                    int selectedOption = answer.getSelectedOptionIndex();
-
-                    if (correctAnswers.containsKey(questionId)
-                            && correctAnswers.get(questionId) == selectedOption) {
-                        score += questionPoints.get(questionId);
-                    }
-                }
+                int score = answerKey.score(answers);
+                int totalPossible = answerKey.getTotalPossible();
 
                 // Save the result to the database
-                dbManager.closeResources(null, stmt, rs);
 
-                String resultSql = "INSERT INTO exam_results (exam_id, student_id, score, total_possible, submission_time) "
-                        + "VALUES (?, ?, ?, ?, NOW())";
+                String resultSql = "INSERT INTO exam_results (exam_id, student_id, score, total_possible, submission_time, "
+                        + "submission_key) VALUES (?, ?, ?, ?, NOW(), ?)";
                 stmt = conn.prepareStatement(resultSql);
                 stmt.setInt(1, examId);
                 stmt.setString(2, studentId);
                 stmt.setInt(3, score);
                 stmt.setInt(4, totalPossible);
+                stmt.setString(5, submissionKey);
 
-                controller.logActivity("Inserting exam result for student " + studentId + " with exam " + examId);
+                activityLog.log("Inserting exam result for student " + studentId + " with exam " + examId);
                 int resultRows = stmt.executeUpdate();
 
                 if (resultRows != 1) {
@@ -376,10 +748,23 @@ public class ExamServiceImpl implements RemoteExamService {
 
                 int[] answerResults = stmt.executeBatch();
 
+                // The session is over
+                dbManager.closeResources(null, stmt, null);
+                String sessionSql = "DELETE FROM exam_sessions WHERE exam_id = ? AND student_id = ?";
+                stmt = conn.prepareStatement(sessionSql);
+                stmt.setInt(1, examId);
+                stmt.setString(2, studentId);
+                stmt.executeUpdate();
+
                 // Commit the transaction
                 conn.commit();
+                submitted = true;
+                dbManager.recordWrite(studentId);
+                activeExams.remove(studentId + "-" + examId);
+                fireSessionsChanged();
+                events.publish(new ExamEvent(ExamEvent.Type.EXAM_SUBMITTED, examId, studentId));
 
-                controller.logActivity("Student " + studentId + " submitted exam " + examId
+                activityLog.log("Student " + studentId + " submitted exam " + examId
                         + " with score " + score + "/" + totalPossible);
 
                 return true;
@@ -389,28 +774,107 @@ public class ExamServiceImpl implements RemoteExamService {
                     try {
                         conn.rollback();
                     } catch (SQLException ex) {
-                        controller.logActivity("Error rolling back transaction: " + ex.getMessage());
+                        activityLog.log("Error rolling back transaction: " + ex.getMessage());
+                    }
+                }
+
+                // The unique (exam_id, student_id) key rejects a second result for the same exam
+                if (isDuplicateKey(e)) {
+                    reserved = false;
+                    dbManager.closeResources(null, stmt, rs);
+                    stmt = null;
+                    rs = null;
+                    if (isStoredSubmission(conn, examId, studentId, submissionKey)) {
+                        activityLog.log("Student " + studentId + " retried submission of exam " + examId);
+                        return true;
                     }
+                    activityLog.log("Student " + studentId + " attempted to resubmit exam " + examId);
+                    throw new RemoteException("You have already submitted this exam");
                 }
-                controller.logActivity("Error submitting exam: " + e.getMessage());
+                activityLog.log("Error submitting exam: " + e.getMessage());
                 throw new RemoteException("Failed to submit exam: " + e.getMessage(), e);
             }
         } catch (SQLException e) {
-            controller.logActivity("Database error during exam submission: " + e.getMessage());
+            activityLog.log("Database error during exam submission: " + e.getMessage());
             throw new RemoteException("Failed to submit exam: " + e.getMessage(), e);
         } finally {
+            // Release the reservation if the result was not stored
+            if (reserved && !submitted) {
+                completionIndex.unmarkTaken(examId, studentId);
+            }
+
             // Restore auto-commit
             if (conn != null) {
                 try {
                     conn.setAutoCommit(true);
                 } catch (SQLException e) {
-                    controller.logActivity("Error restoring auto-commit: " + e.getMessage());
+                    activityLog.log("Error restoring auto-commit: " + e.getMessage());
                 }
             }
             dbManager.closeResources(conn, stmt, rs);
         }
     }
 
+    // 0 means the exam can be started at any time
+    private static void setScheduledStart(PreparedStatement stmt, int index, Exam exam) throws SQLException {
+        if (exam.getScheduledStart() > 0) {
+            stmt.setLong(index, exam.getScheduledStart());
+        } else {
+            stmt.setNull(index, Types.BIGINT);
+        }
+    }
+
+    // Sets pool_id, pool_draw_count and a new pool_seed; all null for an exam with fixed questions
+    private static void setPool(PreparedStatement stmt, int index, Exam exam) throws SQLException {
+        if (exam.getPoolId() > 0) {
+            stmt.setInt(index, exam.getPoolId());
+            stmt.setInt(index + 1, exam.getPoolDrawCount());
+            stmt.setLong(index + 2, new SecureRandom().nextLong());
+        } else {
+            stmt.setNull(index, Types.INTEGER);
+            stmt.setNull(index + 1, Types.INTEGER);
+            stmt.setNull(index + 2, Types.BIGINT);
+        }
+    }
+
+    // Whether the result of this exam and student was stored with the submission key
+    private boolean isStoredSubmission(Connection conn, int examId, String studentId, String submissionKey)
+            throws SQLException {
+        if (submissionKey == null) {
+            return false;
+        }
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement("SELECT exam_id, student_id FROM exam_results WHERE submission_key = ?");
+            stmt.setString(1, submissionKey);
+            rs = stmt.executeQuery();
+            return rs.next() && rs.getInt("exam_id") == examId && studentId.equals(rs.getString("student_id"));
+        } finally {
+            dbManager.closeResources(null, stmt, rs);
+        }
+    }
+
+    // The pool cutoff recorded when the student started; 0 (the whole pool) without a session
+    private int sessionPoolCutoff(Connection conn, int examId, String studentId) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            stmt = conn.prepareStatement("SELECT pool_cutoff FROM exam_sessions WHERE exam_id = ? AND student_id = ?");
+            stmt.setInt(1, examId);
+            stmt.setString(2, studentId);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt("pool_cutoff") : 0;
+        } finally {
+            dbManager.closeResources(null, stmt, rs);
+        }
+    }
+
+    // MySQL reports duplicate keys as error 1062, H2 as SQL state 23505
+    private static boolean isDuplicateKey(SQLException e) {
+        return e.getErrorCode() == 1062 || "23505".equals(e.getSQLState());
+    }
+
     @Override
     public ExamResult getExamResult(int examId, String studentId) throws RemoteException {
         Connection conn = null;
@@ -418,7 +882,8 @@ public class ExamServiceImpl implements RemoteExamService {
         ResultSet rs = null;
 
         try {
-            conn = dbManager.getConnection();
+            // The flag is exam content: read it where setResultVisibility's write is visible
+            conn = dbManager.getReadConnection(DatabaseManager.EXAM_CONTENT);
 
             // First check if results are visible for this exam
             String examSql = "SELECT results_visible FROM exams WHERE id = ?";
@@ -433,13 +898,14 @@ public class ExamServiceImpl implements RemoteExamService {
             boolean resultsVisible = rs.getBoolean("results_visible");
 
             if (!resultsVisible) {
-                controller.logActivity("Student " + studentId + " attempted to view results for exam "
+                activityLog.log("Student " + studentId + " attempted to view results for exam "
                         + examId + " but results are not visible");
                 throw new RemoteException("Results are not available for viewing yet");
             }
 
-            // Close previous resources
-            dbManager.closeResources(null, stmt, rs);
+            // Close previous resources; the result itself follows the student's own writes
+            dbManager.closeResources(conn, stmt, rs);
+            conn = dbManager.getReadConnection(studentId);
 
             // Get the exam result
             String resultSql = "SELECT er.*, s.name as student_name, e.title as exam_title "
@@ -456,22 +922,13 @@ public class ExamServiceImpl implements RemoteExamService {
                 throw new RemoteException("No result found for this exam");
             }
 
-            ExamResult result = new ExamResult(
-                    rs.getInt("id"),
-                    rs.getInt("exam_id"),
-                    rs.getString("student_id"),
-                    rs.getString("student_name"),
-                    rs.getInt("score"),
-                    rs.getInt("total_possible"),
-                    rs.getTimestamp("submission_time")
-            );
-            result.setExamTitle(rs.getString("exam_title"));
+            ExamResult result = ExamRows.readResult(rs);
 
-            controller.logActivity("Student " + studentId + " viewed results for exam " + examId);
+            activityLog.log("Student " + studentId + " viewed results for exam " + examId);
             return result;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving exam result", e);
-            controller.logActivity("Error retrieving exam result: " + e.getMessage());
+            activityLog.log("Error retrieving exam result: " + e.getMessage());
             throw new RemoteException("Failed to retrieve exam result: " + e.getMessage(), e);
         } finally {
             dbManager.closeResources(conn, stmt, rs);
@@ -486,7 +943,7 @@ public class ExamServiceImpl implements RemoteExamService {
         List<ExamResult> results = new ArrayList<>();
 
         try {
-            conn = dbManager.getConnection();
+            conn = dbManager.getReadConnection(null);
             String sql = "SELECT er.*, s.name as student_name, e.title as exam_title "
                     + "FROM exam_results er "
                     + "JOIN students s ON er.student_id = s.id "
@@ -499,24 +956,14 @@ public class ExamServiceImpl implements RemoteExamService {
             rs = stmt.executeQuery();
 
             while (rs.next()) {
-                ExamResult result = new ExamResult(
-                        rs.getInt("id"),
-                        rs.getInt("exam_id"),
-                        rs.getString("student_id"),
-                        rs.getString("student_name"),
-                        rs.getInt("score"),
-                        rs.getInt("total_possible"),
-                        rs.getTimestamp("submission_time")
-                );
-                result.setExamTitle(rs.getString("exam_title"));
-                results.add(result);
+                results.add(ExamRows.readResult(rs));
             }
 
-            controller.logActivity("Retrieved results for exam " + examId);
+            activityLog.log("Retrieved results for exam " + examId);
             return results;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error retrieving exam results", e);
-            controller.logActivity("Error retrieving exam results: " + e.getMessage());
+            activityLog.log("Error retrieving exam results: " + e.getMessage());
             throw new RemoteException("Failed to retrieve exam results: " + e.getMessage(), e);
         } finally {
             dbManager.closeResources(conn, stmt, rs);
@@ -535,14 +982,16 @@ public class ExamServiceImpl implements RemoteExamService {
 
             try {
                 // Insert the exam
-                String examSql = "INSERT INTO exams (title, description, duration_minutes, results_visible, active) "
-                        + "VALUES (?, ?, ?, ?, ?)";
+                String examSql = "INSERT INTO exams (title, description, duration_minutes, results_visible, active, "
+                        + "scheduled_start, pool_id, pool_draw_count, pool_seed) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
                 stmt = conn.prepareStatement(examSql, Statement.RETURN_GENERATED_KEYS);
                 stmt.setString(1, exam.getTitle());
                 stmt.setString(2, exam.getDescription());
                 stmt.setInt(3, exam.getDurationMinutes());
                 stmt.setBoolean(4, exam.isResultsVisible());
                 stmt.setBoolean(5, exam.isActive());
+                setScheduledStart(stmt, 6, exam);
+                setPool(stmt, 7, exam);
 
                 int examRows = stmt.executeUpdate();
                 if (examRows != 1) {
@@ -620,10 +1069,14 @@ public class ExamServiceImpl implements RemoteExamService {
 
                 // Commit the transaction
                 conn.commit();
-                controller.logActivity("Created exam: " + exam.getTitle());
+                catalog.invalidate();
+                poolIndex.invalidate();
+                dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
+                activityLog.log("Created exam: " + exam.getTitle());
 
-                // Refresh the UI
-                controller.refreshExams();
+                // Refresh the UI and the student dashboards
+                fireExamsChanged(new ExamEvent(exam.isActive() ? ExamEvent.Type.EXAM_PUBLISHED
+                        : ExamEvent.Type.EXAMS_CHANGED, examId, null));
 
                 return true;
             } catch (SQLException e) {
@@ -633,16 +1086,16 @@ public class ExamServiceImpl implements RemoteExamService {
                         conn.rollback();
                     } catch (SQLException ex) {
                         LOGGER.log(Level.SEVERE, "Error rolling back transaction", ex);
-                        controller.logActivity("Error rolling back transaction: " + ex.getMessage());
+                        activityLog.log("Error rolling back transaction: " + ex.getMessage());
                     }
                 }
                 LOGGER.log(Level.SEVERE, "Error creating exam", e);
-                controller.logActivity("Error creating exam: " + e.getMessage());
+                activityLog.log("Error creating exam: " + e.getMessage());
                 throw new RemoteException("Failed to create exam: " + e.getMessage(), e);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Database error during exam creation", e);
-            controller.logActivity("Database error during exam creation: " + e.getMessage());
+            activityLog.log("Database error during exam creation: " + e.getMessage());
             throw new RemoteException("Failed to create exam: " + e.getMessage(), e);
         } finally {
             // Restore auto-commit
@@ -651,7 +1104,7 @@ public class ExamServiceImpl implements RemoteExamService {
                     conn.setAutoCommit(true);
                 } catch (SQLException e) {
                     LOGGER.log(Level.SEVERE, "Error restoring auto-commit", e);
-                    controller.logActivity("Error restoring auto-commit: " + e.getMessage());
+                    activityLog.log("Error restoring auto-commit: " + e.getMessage());
                 }
             }
             dbManager.closeResources(conn, stmt, rs);
@@ -670,15 +1123,19 @@ public class ExamServiceImpl implements RemoteExamService {
 
             try {
                 // Update the exam
+                // An exam keeps its pool seed, so changing the draw count keeps the draws stable
                 String examSql = "UPDATE exams SET title = ?, description = ?, duration_minutes = ?, "
-                        + "results_visible = ?, active = ? WHERE id = ?";
+                        + "results_visible = ?, active = ?, scheduled_start = ?, pool_id = ?, pool_draw_count = ?, "
+                        + "pool_seed = COALESCE(pool_seed, ?) WHERE id = ?";
                 stmt = conn.prepareStatement(examSql);
                 stmt.setString(1, exam.getTitle());
                 stmt.setString(2, exam.getDescription());
                 stmt.setInt(3, exam.getDurationMinutes());
                 stmt.setBoolean(4, exam.isResultsVisible());
                 stmt.setBoolean(5, exam.isActive());
-                stmt.setInt(6, exam.getId());
+                setScheduledStart(stmt, 6, exam);
+                setPool(stmt, 7, exam);
+                stmt.setInt(10, exam.getId());
 
                 int examRows = stmt.executeUpdate();
                 if (examRows != 1) {
@@ -791,10 +1248,15 @@ public class ExamServiceImpl implements RemoteExamService {
 
                 // Commit the transaction
                 conn.commit();
-                controller.logActivity("Updated exam: " + exam.getTitle());
+                catalog.invalidate();
+                poolIndex.invalidate();
+                discardPreparedExam(exam.getId());
+                admission.reset(exam.getId());
+                dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
+                activityLog.log("Updated exam: " + exam.getTitle());
 
-                // Refresh the UI
-                controller.refreshExams();
+                // Refresh the UI and the student dashboards
+                fireExamsChanged(new ExamEvent(ExamEvent.Type.EXAMS_CHANGED, exam.getId(), null));
 
                 return true;
             } catch (SQLException e) {
@@ -804,16 +1266,16 @@ public class ExamServiceImpl implements RemoteExamService {
                         conn.rollback();
                     } catch (SQLException ex) {
                         LOGGER.log(Level.SEVERE, "Error rolling back transaction", ex);
-                        controller.logActivity("Error rolling back transaction: " + ex.getMessage());
+                        activityLog.log("Error rolling back transaction: " + ex.getMessage());
                     }
                 }
                 LOGGER.log(Level.SEVERE, "Error updating exam", e);
-                controller.logActivity("Error updating exam: " + e.getMessage());
+                activityLog.log("Error updating exam: " + e.getMessage());
                 throw new RemoteException("Failed to update exam: " + e.getMessage(), e);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Database error during exam update", e);
-            controller.logActivity("Database error during exam update: " + e.getMessage());
+            activityLog.log("Database error during exam update: " + e.getMessage());
             throw new RemoteException("Failed to update exam: " + e.getMessage(), e);
         } finally {
             // Restore auto-commit
@@ -822,7 +1284,7 @@ public class ExamServiceImpl implements RemoteExamService {
                     conn.setAutoCommit(true);
                 } catch (SQLException e) {
                     LOGGER.log(Level.SEVERE, "Error restoring auto-commit", e);
-                    controller.logActivity("Error restoring auto-commit: " + e.getMessage());
+                    activityLog.log("Error restoring auto-commit: " + e.getMessage());
                 }
             }
             dbManager.closeResources(conn, stmt, rs);
@@ -858,6 +1320,13 @@ public class ExamServiceImpl implements RemoteExamService {
                 stmt.setInt(1, examId);
                 stmt.executeUpdate();
 
+                // Delete sessions of students still taking the exam
+                dbManager.closeResources(null, stmt, null);
+                String deleteSessionsSql = "DELETE FROM exam_sessions WHERE exam_id = ?";
+                stmt = conn.prepareStatement(deleteSessionsSql);
+                stmt.setInt(1, examId);
+                stmt.executeUpdate();
+
                 // Delete exam results
                 dbManager.closeResources(null, stmt, null);
                 String deleteResultsSql = "DELETE FROM exam_results WHERE exam_id = ?";
@@ -907,10 +1376,17 @@ public class ExamServiceImpl implements RemoteExamService {
 
                 // Commit the transaction
                 conn.commit();
-                controller.logActivity("Deleted exam with ID: " + examId);
-
-                // Refresh the UI
-                controller.refreshExams();
+                catalog.invalidate();
+                poolIndex.invalidate();
+                discardPreparedExam(examId);
+                admission.reset(examId);
+                dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
+                completionIndex.removeExam(examId);
+                recentSubmissions.removeExam(examId);
+                activityLog.log("Deleted exam with ID: " + examId);
+
+                // Refresh the UI and the student dashboards
+                fireExamsChanged(new ExamEvent(ExamEvent.Type.EXAMS_CHANGED, examId, null));
 
                 return true;
             } catch (SQLException e) {
@@ -920,16 +1396,16 @@ public class ExamServiceImpl implements RemoteExamService {
                         conn.rollback();
                     } catch (SQLException ex) {
                         LOGGER.log(Level.SEVERE, "Error rolling back transaction", ex);
-                        controller.logActivity("Error rolling back transaction: " + ex.getMessage());
+                        activityLog.log("Error rolling back transaction: " + ex.getMessage());
                     }
                 }
                 LOGGER.log(Level.SEVERE, "Error deleting exam", e);
-                controller.logActivity("Error deleting exam: " + e.getMessage());
+                activityLog.log("Error deleting exam: " + e.getMessage());
                 throw new RemoteException("Failed to delete exam: " + e.getMessage(), e);
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Database error during exam deletion", e);
-            controller.logActivity("Database error during exam deletion: " + e.getMessage());
+            activityLog.log("Database error during exam deletion: " + e.getMessage());
             throw new RemoteException("Failed to delete exam: " + e.getMessage(), e);
         } finally {
             // Restore auto-commit
@@ -938,7 +1414,7 @@ public class ExamServiceImpl implements RemoteExamService {
                     conn.setAutoCommit(true);
                 } catch (SQLException e) {
                     LOGGER.log(Level.SEVERE, "Error restoring auto-commit", e);
-                    controller.logActivity("Error restoring auto-commit: " + e.getMessage());
+                    activityLog.log("Error restoring auto-commit: " + e.getMessage());
                 }
             }
             dbManager.closeResources(conn, stmt, rs);
@@ -962,53 +1438,193 @@ public class ExamServiceImpl implements RemoteExamService {
             if (rows != 1) {
                 throw new SQLException("Failed to update exam result visibility");
             }
+            catalog.invalidate();
+            dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
 
-            controller.logActivity("Set result visibility for exam " + examId + " to " + visible);
+            activityLog.log("Set result visibility for exam " + examId + " to " + visible);
 
-            // Refresh the UI
-            controller.refreshExams();
+            // Refresh the UI and the student dashboards
+            fireExamsChanged(new ExamEvent(visible ? ExamEvent.Type.RESULTS_VISIBLE
+                    : ExamEvent.Type.EXAMS_CHANGED, examId, null));
 
             return true;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error setting result visibility", e);
-            controller.logActivity("Error setting result visibility: " + e.getMessage());
+            activityLog.log("Error setting result visibility: " + e.getMessage());
             throw new RemoteException("Failed to set result visibility: " + e.getMessage(), e);
         } finally {
             dbManager.closeResources(conn, stmt, null);
         }
     }
 
-    // Method to get all active exam sessions for display in the UI
-    public List<ActiveSessionDisplay> getActiveSessions() {
-        List<ActiveSessionDisplay> sessions = new ArrayList<>();
+    @Override
+    public void subscribe(String studentId, ExamEventListener listener) throws RemoteException {
+        events.subscribe(studentId, listener);
+        activityLog.log("Event subscriber added for " + (studentId != null ? "student " + studentId : "all events")
+                + " (" + events.getSubscriberCount() + " subscribed)");
+    }
 
-        for (Map.Entry<String, ActiveExamSession> entry : activeExams.entrySet()) {
-            ActiveExamSession session = entry.getValue();
+    @Override
+    public void unsubscribe(ExamEventListener listener) throws RemoteException {
+        events.unsubscribe(listener);
+    }
 
-            // Calculate time remaining
-            long currentTime = System.currentTimeMillis();
-            long endTime = session.getStartTime() + session.getDurationMillis();
-            long remainingMillis = Math.max(0, endTime - currentTime);
+    // Admission queues of scheduled exams that are starting, for the admin UI
+    public List<AdmissionController.QueueStatus> getAdmissionQueues() {
+        return admission.getQueues();
+    }
 
-            // Format time remaining as mm:ss
-            long minutes = remainingMillis / (60 * 1000);
-            long seconds = (remainingMillis % (60 * 1000)) / 1000;
-            String timeRemaining = String.format("%02d:%02d", minutes, seconds);
+    public int getSubscriberCount() {
+        return events.getSubscriberCount();
+    }
+
+    public void addListener(ExamServiceListener listener) {
+        listeners.add(listener);
+    }
 
-            // Format start time
-            String startTime = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
-                    .format(new java.util.Date(session.getStartTime()));
+    public void removeListener(ExamServiceListener listener) {
+        listeners.remove(listener);
+    }
 
-            // Get exam title from database
-            String examTitle = getExamTitle(session.getExamId());
+    // Called by ClusterMember when the cluster view changes. Exams that moved to
+    // this node get their completions reloaded on first use and their running
+    // sessions loaded now; sessions of exams that moved away are dropped.
+    public void setClusterRing(ExamHashRing ring, String selfId) {
+        ExamHashRing previous = clusterRing;
+        nodeId = selfId;
+        clusterRing = ring;
 
-            sessions.add(new ActiveSessionDisplay(
-                    session.getStudentId(),
-                    session.getExamId(),
-                    examTitle,
-                    startTime,
-                    timeRemaining
-            ));
+        trustedExams.removeIf(examId -> !ownsExam(examId));
+        activeExams.values().removeIf(session -> !ownsExam(session.getExamId()));
+
+        try {
+            for (Exam exam : catalog.getSnapshot().getExams()) {
+                boolean ownedBefore = previous != null && selfId.equals(previous.nodeFor(exam.getId()));
+                if (ownsExam(exam.getId()) && !ownedBefore) {
+                    loadSessions(exam.getId());
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error loading sessions of newly owned exams", e);
+            activityLog.log("Error loading sessions of newly owned exams: " + e.getMessage());
+        }
+        fireSessionsChanged();
+    }
+
+    // True if this node owns the exam in the current cluster view, or runs alone
+    public boolean ownsExam(int examId) {
+        ExamHashRing ring = clusterRing;
+        return ring == null || nodeId.equals(ring.nodeFor(examId));
+    }
+
+    // Called by ClusterMember when another node changed exams
+    public void reloadExams() {
+        catalog.invalidate();
+        poolIndex.invalidate();
+        synchronized (preparedExams) {
+            preparedExams.clear();
+        }
+        dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
+        fireExamsChanged(new ExamEvent(ExamEvent.Type.EXAMS_CHANGED, 0, null));
+    }
+
+    // Called by the admin UI after QuestionImporter committed questions to an exam
+    public void questionsImported(int examId, boolean newExam) {
+        catalog.invalidate();
+        discardPreparedExam(examId);
+        dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
+        fireExamsChanged(new ExamEvent(newExam ? ExamEvent.Type.EXAM_PUBLISHED
+                : ExamEvent.Type.EXAMS_CHANGED, examId, null));
+    }
+
+    // Called by the admin UI after QuestionImporter added questions to a pool.
+    // Every exam drawing from the pool is prepared again; students already taking
+    // one keep their draw (see QuestionPoolIndex).
+    public void poolQuestionsImported(int poolId) {
+        poolIndex.invalidate();
+        synchronized (preparedExams) {
+            preparedExams.values().removeIf(prepared -> prepared.exam.getPoolId() == poolId);
+        }
+        dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
+        fireExamsChanged(new ExamEvent(ExamEvent.Type.EXAMS_CHANGED, 0, null));
+    }
+
+    // Question pools for the exam editor
+    public List<QuestionPoolIndex.PoolInfo> getQuestionPools() throws SQLException {
+        return poolIndex.listPools();
+    }
+
+    // Make the completion index authoritative for an exam before using it
+    private void ensureCompletionsCurrent(int examId) throws SQLException {
+        if (clusterRing == null || trustedExams.contains(examId)) {
+            return;
+        }
+        completionIndex.reloadExam(dbManager, examId);
+        // Requests for exams owned elsewhere (e.g. during a view change) reload every time
+        if (ownsExam(examId)) {
+            trustedExams.add(examId);
+        }
+    }
+
+    private void loadSessions(int examId) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            conn = dbManager.getConnection();
+            String sql = "SELECT student_id, started_at, duration_millis, pool_cutoff FROM exam_sessions "
+                    + "WHERE exam_id = ?";
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, examId);
+            rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                String studentId = rs.getString("student_id");
+                activeExams.put(studentId + "-" + examId, new ActiveExamSession(examId, studentId,
+                        rs.getLong("started_at"), rs.getLong("duration_millis"), rs.getInt("pool_cutoff")));
+            }
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
+
+    private void fireExamsChanged(ExamEvent event) {
+        events.publish(event);
+        for (ExamServiceListener listener : listeners) {
+            listener.examsChanged();
+        }
+    }
+
+    private void fireSessionsChanged() {
+        for (ExamServiceListener listener : listeners) {
+            listener.sessionsChanged();
+        }
+    }
+
+    // Method to get all active exam sessions for display in the UI
+    public List<ActiveSessionDisplay> getActiveSessions() {
+        List<ActiveSessionDisplay> sessions = new ArrayList<>();
+        long currentTime = System.currentTimeMillis();
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        // Titles of active exams come from the catalog; others from the database
+        Map<Integer, String> titles = new HashMap<>();
+        try {
+            for (Exam exam : catalog.getSnapshot().getExams()) {
+                titles.put(exam.getId(), exam.getTitle());
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error reading exam catalog", e);
+        }
+
+        for (ActiveExamSession session : activeExams.values()) {
+            String examTitle = titles.get(session.getExamId());
+            if (examTitle == null) {
+                examTitle = getExamTitle(session.getExamId());
+                titles.put(session.getExamId(), examTitle);
+            }
+            sessions.add(session.toDisplay(examTitle, currentTime, dateFormat));
         }
 
         return sessions;
@@ -1033,7 +1649,7 @@ public class ExamServiceImpl implements RemoteExamService {
             }
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error getting exam title", e);
-            controller.logActivity("Error getting exam title: " + e.getMessage());
+            activityLog.log("Error getting exam title: " + e.getMessage());
             return "Unknown Exam";
         } finally {
             dbManager.closeResources(conn, stmt, rs);
@@ -1043,22 +1659,48 @@ public class ExamServiceImpl implements RemoteExamService {
     // Shutdown the thread pool when the application closes
     public void shutdown() {
         threadPool.shutdown();
-        controller.logActivity("Thread pool shutdown initiated");
+        events.shutdown();
+        activityLog.log("Thread pool shutdown initiated");
+    }
+
+    // An exam with its questions, its key and the encrypted copy handed out before the start.
+    // A pooled exam holds all questions of its pool by id and has no shared payload.
+    private static class PreparedExam {
+
+        private final Exam exam;
+        private final ExamKey key;
+        private final EncryptedExam payload;
+        private final Map<Integer, Question> poolQuestions = new HashMap<>();
+
+        PreparedExam(Exam exam, ExamKey key, EncryptedExam payload) {
+            this.exam = exam;
+            this.key = key;
+            this.payload = payload;
+            if (exam.getPoolId() > 0) {
+                for (Question question : exam.getQuestions()) {
+                    poolQuestions.put(question.getId(), question);
+                }
+            }
+        }
     }
 
     // Inner class to track active exam sessions
-    private static class ActiveExamSession {
+    static class ActiveExamSession {
 
         private final int examId;
         private final String studentId;
         private final long startTime;
         private final long durationMillis;
+        // Highest pool question id the student's draw uses; 0 for the whole pool
+        private final int poolCutoff;
 
-        public ActiveExamSession(int examId, String studentId, long startTime, long durationMillis) {
+        public ActiveExamSession(int examId, String studentId, long startTime, long durationMillis,
+                int poolCutoff) {
             this.examId = examId;
             this.studentId = studentId;
             this.startTime = startTime;
             this.durationMillis = durationMillis;
+            this.poolCutoff = poolCutoff;
         }
 
         public int getExamId() {
@@ -1076,5 +1718,27 @@ public class ExamServiceImpl implements RemoteExamService {
         public long getDurationMillis() {
             return durationMillis;
         }
+
+        public int getPoolCutoff() {
+            return poolCutoff;
+        }
+
+        public ActiveSessionDisplay toDisplay(String examTitle, long currentTime, SimpleDateFormat dateFormat) {
+            // Calculate time remaining
+            long remainingMillis = Math.max(0, startTime + durationMillis - currentTime);
+
+            // Format time remaining as mm:ss
+            long minutes = remainingMillis / (60 * 1000);
+            long seconds = (remainingMillis % (60 * 1000)) / 1000;
+            String timeRemaining = String.format("%02d:%02d", minutes, seconds);
+
+            return new ActiveSessionDisplay(
+                    studentId,
+                    examId,
+                    examTitle,
+                    dateFormat.format(new Date(startTime)),
+                    timeRemaining
+            );
+        }
     }
 }
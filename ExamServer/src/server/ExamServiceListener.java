@@ -0,0 +1,10 @@
+package server;
+
+// Callbacks from ExamServiceImpl to an attached admin UI.
+// Called on RMI threads, so implementations must hand off to their own thread.
+public interface ExamServiceListener {
+
+    void examsChanged();
+
+    void sessionsChanged();
+}
@@ -0,0 +1,507 @@
+package server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import shared.Admission;
+import shared.Answer;
+import shared.AvailableExams;
+import shared.Exam;
+import shared.ExamResult;
+import shared.Json;
+import shared.Question;
+import shared.RemoteExamService;
+
+// The student side of RemoteExamService as HTTP/JSON, for browser clients,
+// on the JDK's built-in server. Calls go through the same exported service
+// as RMI, so metrics and rate limits apply alike.
+//
+//   POST /api/login                    {"username","password"} -> {"studentId","token"}
+//   GET  /api/exams                    available exams
+//   POST /api/exams/{id}/admission     place in the admission queue
+//   GET  /api/exams/{id}               start or resume the exam, with its questions
+//   POST /api/exams/{id}/submission    {"answers":[{"questionId","selectedOption"}],"submissionKey"}
+//   GET  /api/exams/{id}/result        the student's result
+//
+// Every call but login needs "Authorization: Bearer <token>"; a token is an
+// HMAC-signed student id that expires after TOKEN_HOURS. The exam list and
+// exam payloads carry an ETag and answer If-None-Match with 304. Non-pooled
+// exams are the same for every student, so their JSON is built and gzipped
+// once per exam version and then served from memory; the correct answers are
+// never sent. Bodies of at least GZIP_MIN_BYTES are gzipped for clients that
+// accept it. A refused call answers 409 with {"error": message}.
+//
+// -Dexam.http.port=8080 starts it (off by default), -Dexam.http.threads=64.
+// The JDK server closes kept-alive connections beyond 200 idle ones, and
+// clients do not resend a POST on a connection closed under them, so the
+// gateway allows -Dexam.http.maxIdleConnections=4096.
+//
+// Tokens are signed with a random key per start unless -Dexam.http.tokenSecret
+// is set, which keeps them valid across restarts and cluster nodes.
+public class HttpGateway {
+
+    private static final Logger LOGGER = Logger.getLogger(HttpGateway.class.getName());
+
+    private static final int THREADS = Integer.getInteger("exam.http.threads", 64);
+    private static final int MAX_IDLE_CONNECTIONS = Integer.getInteger("exam.http.maxIdleConnections", 4096);
+    private static final long TOKEN_HOURS = 8;
+    private static final int GZIP_MIN_BYTES = 1024;
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+
+    private static final Pattern EXAM_PATH = Pattern.compile("/api/exams/(\\d+)(/admission|/submission|/result)?");
+
+    private final int port;
+    private final RemoteExamService service;
+    private final ExamServiceImpl examService;
+    private final ActivityLog activityLog;
+    private final SecretKeySpec tokenKey;
+    private final ThreadLocal<Mac> macs;
+    // Serialized exam payloads by exam id, valid while the service returns the same Exam
+    private final Map<Integer, CachedExam> examJson = new ConcurrentHashMap<>();
+    private HttpServer server;
+    private ThreadPoolExecutor handlers;
+
+    public HttpGateway(int port, RemoteExamService service, ExamServiceImpl examService, ActivityLog activityLog) {
+        this.port = port;
+        this.service = service;
+        this.examService = examService;
+        this.activityLog = activityLog;
+
+        String secret = System.getProperty("exam.http.tokenSecret");
+        byte[] keyBytes;
+        if (secret != null) {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        }
+        this.tokenKey = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA256");
+                mac.init(tokenKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HmacSHA256 is not available", e);
+            }
+        });
+    }
+
+    public static int configuredPort() {
+        return Integer.getInteger("exam.http.port", 0);
+    }
+
+    public synchronized void start() throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        handlers = new ThreadPoolExecutor(THREADS, THREADS, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "http-handler-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Read by the JDK server when the first one is created
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        }
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(handlers);
+        server.start();
+        activityLog.log("HTTP gateway listening on port " + port + " with " + THREADS + " handler threads");
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        handlers.shutdownNow();
+        server = null;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        RateLimiter.CLIENT_HOST.set(exchange.getRemoteAddress().getAddress().getHostAddress());
+        try {
+            if ("/api/login".equals(path)) {
+                requireMethod(method, "POST");
+                login(exchange);
+                return;
+            }
+            String studentId = authenticate(exchange);
+            if ("/api/exams".equals(path)) {
+                requireMethod(method, "GET");
+                listExams(exchange, studentId);
+                return;
+            }
+            Matcher matcher = EXAM_PATH.matcher(path);
+            if (!matcher.matches()) {
+                throw new HttpError(404, "Not found");
+            }
+            int examId = Integer.parseInt(matcher.group(1));
+            String action = matcher.group(2);
+            if (action == null) {
+                requireMethod(method, "GET");
+                startExam(exchange, examId, studentId);
+            } else if ("/admission".equals(action)) {
+                requireMethod(method, "POST");
+                requestAdmission(exchange, examId, studentId);
+            } else if ("/submission".equals(action)) {
+                requireMethod(method, "POST");
+                submit(exchange, examId, studentId);
+            } else {
+                requireMethod(method, "GET");
+                result(exchange, examId, studentId);
+            }
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (RemoteException e) {
+            sendError(exchange, 409, messageOf(e));
+        } catch (IllegalArgumentException | ClassCastException | NullPointerException e) {
+            sendError(exchange, 400, "Bad request: " + e.getMessage());
+        } catch (IOException e) {
+            // The client went away
+            LOGGER.log(Level.FINE, "HTTP exchange failed", e);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "HTTP gateway error on " + method + " " + path, e);
+            sendError(exchange, 500, "Internal server error");
+        } finally {
+            RateLimiter.CLIENT_HOST.remove();
+            exchange.close();
+        }
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        Map<String, Object> body = readObject(exchange);
+        String username = (String) body.get("username");
+        String password = (String) body.get("password");
+        if (username == null || password == null) {
+            throw new HttpError(400, "username and password are required");
+        }
+        String studentId = service.authenticateUser(username, password, false)
+                ? examService.findStudentId(username) : null;
+        if (studentId == null) {
+            throw new HttpError(401, "Invalid username or password");
+        }
+        Json.Writer json = new Json.Writer().beginObject()
+                .name("studentId").value(studentId)
+                .name("token").value(issueToken(studentId))
+                .endObject();
+        send(exchange, 200, json, null);
+    }
+
+    private void listExams(HttpExchange exchange, String studentId) throws IOException {
+        long knownVersion = -1;
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch != null && ifNoneMatch.startsWith("\"v") && ifNoneMatch.endsWith("\"")) {
+            try {
+                knownVersion = Long.parseLong(ifNoneMatch.substring(2, ifNoneMatch.length() - 1));
+            } catch (NumberFormatException e) {
+                // Not one of ours; send the list
+            }
+        }
+        AvailableExams available = service.getAvailableExamsIfChanged(studentId, knownVersion);
+        // Versions start at a random point in each process (ExamCatalog), so an ETag
+        // from before a restart or from another node does not match by chance
+        String etag = "\"v" + available.getVersion() + "\"";
+        if (!available.isModified()) {
+            sendNotModified(exchange, etag);
+            return;
+        }
+        Json.Writer json = new Json.Writer().beginArray();
+        for (Exam exam : available.getExams()) {
+            writeExamSummary(json, exam);
+            json.endObject();
+        }
+        json.endArray();
+        send(exchange, 200, json, etag);
+    }
+
+    private void requestAdmission(HttpExchange exchange, int examId, String studentId) throws IOException {
+        Admission admission = service.requestAdmission(examId, studentId);
+        Json.Writer json = new Json.Writer().beginObject()
+                .name("admitted").value(admission.isAdmitted())
+                .name("position").value(admission.getPosition())
+                .name("retryAfterMillis").value(admission.getRetryAfterMillis())
+                .endObject();
+        send(exchange, 200, json, null);
+    }
+
+    // Always asks the service, which checks the student may take the exam and
+    // starts the session; only the serialization is cached
+    private void startExam(HttpExchange exchange, int examId, String studentId) throws IOException {
+        Exam exam = service.getExamQuestions(examId, studentId);
+        CachedExam payload = examJson.get(examId);
+        if (payload == null || payload.source != exam) {
+            payload = new CachedExam(exam);
+            if (exam.getPoolId() <= 0) {
+                // Pooled exams differ per student and are never the same instance twice
+                examJson.put(examId, payload);
+            }
+        }
+        if (payload.etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            sendNotModified(exchange, payload.etag);
+            return;
+        }
+        if (payload.gzipped != null && acceptsGzip(exchange)) {
+            sendBytes(exchange, 200, payload.gzipped, true, payload.etag);
+        } else {
+            sendBytes(exchange, 200, payload.json, false, payload.etag);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void submit(HttpExchange exchange, int examId, String studentId) throws IOException {
+        Map<String, Object> body = readObject(exchange);
+        List<Object> items = (List<Object>) body.get("answers");
+        if (items == null) {
+            throw new HttpError(400, "answers are required");
+        }
+        List<Answer> answers = new ArrayList<>(items.size());
+        for (Object item : items) {
+            Map<String, Object> answer = (Map<String, Object>) item;
+            answers.add(new Answer(((Number) answer.get("questionId")).intValue(),
+                    ((Number) answer.get("selectedOption")).intValue()));
+        }
+        String submissionKey = (String) body.get("submissionKey");
+        boolean stored = submissionKey != null
+                ? service.submitExam(examId, studentId, answers, submissionKey)
+                : service.submitExam(examId, studentId, answers);
+        send(exchange, 200, new Json.Writer().beginObject().name("submitted").value(stored).endObject(), null);
+    }
+
+    private void result(HttpExchange exchange, int examId, String studentId) throws IOException {
+        ExamResult result = service.getExamResult(examId, studentId);
+        Json.Writer json = new Json.Writer().beginObject()
+                .name("examId").value(result.getExamId())
+                .name("examTitle").value(result.getExamTitle())
+                .name("score").value(result.getScore())
+                .name("totalPossible").value(result.getTotalPossible())
+                .name("submissionTime").value(result.getSubmissionTime() != null
+                        ? result.getSubmissionTime().getTime() : 0)
+                .endObject();
+        send(exchange, 200, json, null);
+    }
+
+    // Leaves the object open for the caller to add to
+    private static void writeExamSummary(Json.Writer json, Exam exam) {
+        json.beginObject()
+                .name("id").value(exam.getId())
+                .name("title").value(exam.getTitle())
+                .name("description").value(exam.getDescription())
+                .name("durationMinutes").value(exam.getDurationMinutes())
+                .name("resultsVisible").value(exam.isResultsVisible())
+                .name("scheduledStart").value(exam.getScheduledStart());
+    }
+
+    private static class CachedExam {
+
+        final Exam source;
+        final byte[] json;
+        final byte[] gzipped;
+        final String etag;
+
+        CachedExam(Exam exam) throws IOException {
+            Json.Writer writer = new Json.Writer(new StringBuilder(16 * 1024));
+            writeExamSummary(writer, exam);
+            writer.name("questions").beginArray();
+            if (exam.getQuestions() != null) {
+                for (Question question : exam.getQuestions()) {
+                    writer.beginObject()
+                            .name("id").value(question.getId())
+                            .name("text").value(question.getText())
+                            .name("points").value(question.getPoints())
+                            .name("options").beginArray();
+                    for (String option : question.getOptions()) {
+                        writer.value(option);
+                    }
+                    writer.endArray().endObject();
+                }
+            }
+            writer.endArray().endObject();
+
+            this.source = exam;
+            this.json = writer.toString().getBytes(StandardCharsets.UTF_8);
+            this.gzipped = json.length >= GZIP_MIN_BYTES ? gzip(json) : null;
+            CRC32 crc = new CRC32();
+            crc.update(json);
+            this.etag = "\"e" + exam.getId() + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+    }
+
+    // Token: base64url(studentId|expiry) "." base64url(HMAC of the first part)
+    private String issueToken(String studentId) {
+        long expiry = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(TOKEN_HOURS);
+        String claims = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((studentId + "|" + expiry).getBytes(StandardCharsets.UTF_8));
+        return claims + "." + sign(claims);
+    }
+
+    private String authenticate(HttpExchange exchange) throws HttpError {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new HttpError(401, "Log in first");
+        }
+        String token = header.substring(7).trim();
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            throw new HttpError(401, "Invalid token");
+        }
+        String claims = token.substring(0, dot);
+        byte[] expected = sign(claims).getBytes(StandardCharsets.US_ASCII);
+        if (!MessageDigest.isEqual(expected, token.substring(dot + 1).getBytes(StandardCharsets.US_ASCII))) {
+            throw new HttpError(401, "Invalid token");
+        }
+        String decoded;
+        long expiry;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(claims), StandardCharsets.UTF_8);
+            expiry = Long.parseLong(decoded.substring(decoded.lastIndexOf('|') + 1));
+        } catch (IllegalArgumentException e) {
+            throw new HttpError(401, "Invalid token");
+        }
+        if (expiry < System.currentTimeMillis()) {
+            throw new HttpError(401, "Session expired, log in again");
+        }
+        return decoded.substring(0, decoded.lastIndexOf('|'));
+    }
+
+    private String sign(String claims) {
+        byte[] signature = macs.get().doFinal(claims.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+    }
+
+    private static void requireMethod(String method, String expected) throws HttpError {
+        if (!expected.equals(method)) {
+            throw new HttpError(405, "Use " + expected);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> readObject(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_BODY_BYTES) {
+                    throw new HttpError(413, "Request body too large");
+                }
+            }
+        }
+        Object parsed = Json.parse(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        if (!(parsed instanceof Map)) {
+            throw new HttpError(400, "Expected a JSON object");
+        }
+        return (Map<String, Object>) parsed;
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return accepted != null && accepted.contains("gzip");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, Json.Writer json, String etag) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        if (body.length >= GZIP_MIN_BYTES && acceptsGzip(exchange)) {
+            sendBytes(exchange, status, gzip(body), true, etag);
+        } else {
+            sendBytes(exchange, status, body, false, etag);
+        }
+    }
+
+    private static void sendBytes(HttpExchange exchange, int status, byte[] body, boolean gzipped, String etag)
+            throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", JSON_TYPE);
+        // Every answer is about one student
+        headers.set("Cache-Control", "private, no-cache");
+        headers.set("Vary", "Accept-Encoding, Authorization");
+        if (gzipped) {
+            headers.set("Content-Encoding", "gzip");
+        }
+        if (etag != null) {
+            headers.set("ETag", etag);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendNotModified(HttpExchange exchange, String etag) throws IOException {
+        // A reply without a body is finished as soon as its headers are sent; the JDK
+        // server then closes the connection unless the request was read to the end,
+        // and the client would find it reset on its next request
+        exchange.getRequestBody().close();
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Cache-Control", "private, no-cache");
+        headers.set("ETag", etag);
+        exchange.sendResponseHeaders(304, -1);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) {
+        try {
+            sendBytes(exchange, status, new Json.Writer().beginObject().name("error").value(message).endObject()
+                    .toString().getBytes(StandardCharsets.UTF_8), false, null);
+        } catch (IOException e) {
+            // The client went away
+        }
+    }
+
+    // The service's own message, without RMI's "nested exception" suffix
+    private static String messageOf(RemoteException e) {
+        String message = e.getMessage();
+        int nested = message != null ? message.indexOf("; nested exception is") : -1;
+        return nested >= 0 ? message.substring(0, nested) : message;
+    }
+
+    private static class HttpError extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency, error and database-time counters for one service method
+public class MethodStats implements MethodStatsMBean {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dbNanos = new LongAdder();
+    private final AtomicLong inFlight = new AtomicLong();
+
+    public MethodStats(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void begin() {
+        inFlight.incrementAndGet();
+    }
+
+    void end(long nanos, boolean failed) {
+        inFlight.decrementAndGet();
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    // A call refused by the RateLimiter; it is not timed and never reached the service
+    void reject() {
+        rejected.increment();
+    }
+
+    void addDbTime(long nanos) {
+        dbNanos.add(nanos);
+    }
+
+    @Override
+    public long getCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return latency.getMeanNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latency.getPercentileNanos(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP95Millis() {
+        return latency.getPercentileNanos(95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latency.getPercentileNanos(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latency.getMaxNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getDbTimeMillis() {
+        return dbNanos.sum() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getTotalTimeMillis() {
+        return latency.getTotalNanos() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getDbTimePercent() {
+        long total = latency.getTotalNanos();
+        return total > 0 ? 100.0 * dbNanos.sum() / total : 0;
+    }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.reset();
+        rejected.reset();
+        dbNanos.reset();
+    }
+}
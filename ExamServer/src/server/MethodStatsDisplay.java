@@ -0,0 +1,67 @@
+package server;
+
+public class MethodStatsDisplay {
+    private final String method;
+    private final long calls;
+    private final long errors;
+    private final long rejected;
+    private final long inFlight;
+    private final String p50;
+    private final String p95;
+    private final String p99;
+    private final String max;
+    private final String dbPercent;
+
+    public MethodStatsDisplay(MethodStats stats) {
+        this.method = stats.getName();
+        this.calls = stats.getCount();
+        this.errors = stats.getErrorCount();
+        this.rejected = stats.getRejectedCount();
+        this.inFlight = stats.getInFlight();
+        this.p50 = String.format("%.2f", stats.getP50Millis());
+        this.p95 = String.format("%.2f", stats.getP95Millis());
+        this.p99 = String.format("%.2f", stats.getP99Millis());
+        this.max = String.format("%.2f", stats.getMaxMillis());
+        this.dbPercent = String.format("%.0f%%", stats.getDbTimePercent());
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getInFlight() {
+        return inFlight;
+    }
+
+    public String getP50() {
+        return p50;
+    }
+
+    public String getP95() {
+        return p95;
+    }
+
+    public String getP99() {
+        return p99;
+    }
+
+    public String getMax() {
+        return max;
+    }
+
+    public String getDbPercent() {
+        return dbPercent;
+    }
+}
@@ -0,0 +1,33 @@
+package server;
+
+// JMX view of the timings collected for one service method
+public interface MethodStatsMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    // Calls refused by rate limiting, not included in the count
+    long getRejectedCount();
+
+    long getInFlight();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    double getDbTimeMillis();
+
+    double getTotalTimeMillis();
+
+    // Share of the total time spent executing SQL statements (0-100)
+    double getDbTimePercent();
+
+    void reset();
+}
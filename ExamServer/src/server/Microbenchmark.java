@@ -0,0 +1,93 @@
+package server;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// Small JMH-style harness: timed warmup and measurement iterations, one or
+// more threads running the operation back to back, results consumed into a
+// volatile sink so the JIT cannot drop the work.
+public class Microbenchmark {
+
+    public interface Operation {
+
+        Object run() throws Exception;
+    }
+
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationMillis;
+    private volatile Object sink;
+
+    public Microbenchmark(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationMillis = iterationMillis;
+    }
+
+    // Runs the benchmark and prints throughput and time per operation; returns ns/op
+    public double run(String name, int threads, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(threads, operation);
+        }
+
+        double[] opsPerSecond = new double[measurementIterations];
+        double sum = 0;
+        for (int i = 0; i < measurementIterations; i++) {
+            opsPerSecond[i] = iteration(threads, operation);
+            sum += opsPerSecond[i];
+        }
+
+        double mean = sum / measurementIterations;
+        double variance = 0;
+        for (double value : opsPerSecond) {
+            variance += (value - mean) * (value - mean);
+        }
+        double error = measurementIterations > 1 ? Math.sqrt(variance / (measurementIterations - 1)) : 0;
+
+        System.out.println(String.format("%-45s %3d thr %14.1f ops/s +- %6.1f%% %12.1f ns/op",
+                name, threads, mean, mean > 0 ? 100 * error / mean : 0, threads * 1e9 / mean));
+        return threads * 1e9 / mean;
+    }
+
+    private double iteration(int threads, Operation operation) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        Exception[] failure = new Exception[1];
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long count = 0;
+                started.countDown();
+                try {
+                    started.await();
+                    while (running.get()) {
+                        sink = operation.run();
+                        count++;
+                    }
+                } catch (Exception e) {
+                    failure[0] = e;
+                } finally {
+                    operations.add(count);
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        started.await();
+        long start = System.nanoTime();
+        Thread.sleep(iterationMillis);
+        running.set(false);
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return operations.sum() * 1e9 / elapsed;
+    }
+}
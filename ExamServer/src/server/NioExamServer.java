@@ -0,0 +1,358 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import shared.NioProtocol;
+import shared.RemoteExamService;
+
+// Serves RemoteExamService over non-blocking sockets, next to RMI. One
+// selector thread accepts connections, reads frames (see shared.NioProtocol)
+// and writes replies; a fixed pool of workers decodes requests and calls the
+// same exported service as RMI, so metrics and rate limits apply alike. A
+// client keeps one connection and may have many calls in flight on it, and
+// replies go back in whatever order the calls finish. Thread count no longer
+// grows with the number of connected clients.
+//
+// Backpressure: a connection with MAX_IN_FLIGHT calls running or replies not
+// yet written is not read from until it drains, so a fast client fills its
+// own socket buffers instead of the worker queue. When the worker queue still
+// reaches MAX_QUEUED calls, new calls are answered with a busy error.
+//
+// Requests are much smaller than replies, so a request over MAX_REQUEST_BYTES
+// closes the connection. The read buffer of a connection grows only as the
+// bytes of a large request arrive, so a length header alone allocates nothing.
+//
+// -Dexam.nio.port=1100 starts it (off by default), -Dexam.nio.workers=64,
+// -Dexam.nio.maxInFlight=64 per connection, -Dexam.nio.maxQueued=10000,
+// -Dexam.nio.maxRequestBytes=1048576.
+public class NioExamServer {
+
+    private static final Logger LOGGER = Logger.getLogger(NioExamServer.class.getName());
+
+    private static final int WORKERS = Integer.getInteger("exam.nio.workers", 64);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("exam.nio.maxInFlight", 64);
+    private static final int MAX_QUEUED = Integer.getInteger("exam.nio.maxQueued", 10000);
+    private static final int MAX_REQUEST_BYTES = Integer.getInteger("exam.nio.maxRequestBytes", 1024 * 1024);
+    private static final int READ_BUFFER_BYTES = 16 * 1024;
+
+    private final int port;
+    private final RemoteExamService service;
+    private final ActivityLog activityLog;
+    private final Map<String, Method> methods = new HashMap<>();
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private ThreadPoolExecutor workers;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+
+    public NioExamServer(int port, RemoteExamService service, ActivityLog activityLog) {
+        this.port = port;
+        this.service = service;
+        this.activityLog = activityLog;
+        // Overloads differ in their number of parameters
+        for (Method method : RemoteExamService.class.getMethods()) {
+            methods.put(method.getName() + "/" + method.getParameterCount(), method);
+        }
+    }
+
+    public static int configuredPort() {
+        return Integer.getInteger("exam.nio.port", 0);
+    }
+
+    public synchronized void start() throws IOException {
+        AtomicInteger threads = new AtomicInteger();
+        workers = new ThreadPoolExecutor(WORKERS, WORKERS, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "nio-worker-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        selectorThread = new Thread(this::selectLoop, "nio-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        activityLog.log("NIO exam transport listening on port " + port + " with " + WORKERS + " workers");
+    }
+
+    public synchronized void stop() {
+        if (selector == null) {
+            return;
+        }
+        try {
+            serverChannel.close();
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing NIO transport", e);
+        }
+        workers.shutdownNow();
+        selector = null;
+    }
+
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    private void selectLoop() {
+        try {
+            while (selector.isOpen()) {
+                selector.select();
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    connection.flushWrites();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection selected = (Connection) key.attachment();
+                    try {
+                        if (key.isWritable()) {
+                            selected.flushWrites();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            selected.read();
+                        }
+                    } catch (CancelledKeyException e) {
+                        selected.close();
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // Stopped
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "NIO selector failed", e);
+            activityLog.log("NIO transport stopped: " + e.getMessage());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.incrementAndGet();
+        }
+    }
+
+    // Runs on a worker: decode, call the service, queue the reply
+    private void handle(Connection connection, long id, byte[] frame) {
+        byte status = NioProtocol.OK;
+        Object value;
+        String name = "?";
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(
+                frame, NioProtocol.HEADER_BYTES, frame.length - NioProtocol.HEADER_BYTES))) {
+            name = in.readUTF();
+            Object[] args = (Object[]) in.readObject();
+            Method method = methods.get(name + "/" + (args == null ? 0 : args.length));
+            if (method == null) {
+                throw new RemoteException("Unknown method " + name);
+            }
+            RateLimiter.CLIENT_HOST.set(connection.host);
+            try {
+                value = method.invoke(service, args);
+            } finally {
+                RateLimiter.CLIENT_HOST.remove();
+            }
+        } catch (InvocationTargetException e) {
+            status = NioProtocol.FAILED;
+            value = e.getCause();
+        } catch (Exception e) {
+            status = NioProtocol.FAILED;
+            value = new RemoteException("Bad request: " + e.getMessage());
+        }
+
+        ByteBuffer reply;
+        try {
+            reply = NioProtocol.response(id, status, value);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Cannot encode reply to " + name, e);
+            try {
+                reply = NioProtocol.response(id, NioProtocol.FAILED,
+                        new RemoteException("Cannot encode reply to " + name + ": " + e.getMessage()));
+            } catch (IOException ex) {
+                connection.close();
+                return;
+            }
+        }
+        connection.queueWrite(reply);
+    }
+
+    private class Connection {
+
+        private final SocketChannel channel;
+        private final String host;
+        private SelectionKey key;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        // Replies queued by workers, written by the selector thread
+        private final ArrayDeque<ByteBuffer> writes = new ArrayDeque<>();
+        // Calls read and not yet fully answered
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private boolean readPaused;
+        private volatile boolean closed;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.host = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+        }
+
+        // Selector thread
+        void read() {
+            try {
+                if (channel.read(readBuffer) < 0) {
+                    close();
+                    return;
+                }
+                readBuffer.flip();
+                while (readBuffer.remaining() >= 4) {
+                    int length = readBuffer.getInt(readBuffer.position());
+                    if (length < NioProtocol.HEADER_BYTES - 4 || length > MAX_REQUEST_BYTES - 4) {
+                        throw new IOException("Bad frame length " + length);
+                    }
+                    if (readBuffer.remaining() < length + 4) {
+                        if (readBuffer.remaining() == readBuffer.capacity()) {
+                            // Full with part of a larger frame: double, up to the whole frame
+                            ByteBuffer larger = ByteBuffer.allocate(
+                                    Math.min(length + 4, readBuffer.capacity() * 2));
+                            larger.put(readBuffer);
+                            readBuffer = larger;
+                            return;
+                        }
+                        break;
+                    }
+                    byte[] frame = new byte[length + 4];
+                    readBuffer.get(frame);
+                    dispatch(ByteBuffer.wrap(frame).getLong(4), frame);
+                }
+                readBuffer.compact();
+                if (readBuffer.capacity() > READ_BUFFER_BYTES && readBuffer.position() <= READ_BUFFER_BYTES) {
+                    // Back to the normal size after a large frame
+                    ByteBuffer normal = ByteBuffer.allocate(READ_BUFFER_BYTES);
+                    readBuffer.flip();
+                    normal.put(readBuffer);
+                    readBuffer = normal;
+                }
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void dispatch(long id, byte[] frame) throws IOException {
+            if (workers.getQueue().size() >= MAX_QUEUED) {
+                inFlight.incrementAndGet();
+                ByteBuffer busy = NioProtocol.response(id, NioProtocol.FAILED,
+                        new RemoteException("The exam server is busy. Please try again shortly."));
+                synchronized (writes) {
+                    writes.add(busy);
+                }
+                flushWrites();
+                return;
+            }
+            if (inFlight.incrementAndGet() >= MAX_IN_FLIGHT && !readPaused) {
+                readPaused = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+            workers.execute(() -> handle(this, id, frame));
+        }
+
+        // Any thread
+        void queueWrite(ByteBuffer reply) {
+            synchronized (writes) {
+                writes.add(reply);
+            }
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+
+        // Selector thread; writes what the socket takes and waits for OP_WRITE for the rest
+        void flushWrites() {
+            if (closed) {
+                return;
+            }
+            try {
+                while (true) {
+                    ByteBuffer head;
+                    synchronized (writes) {
+                        head = writes.peek();
+                    }
+                    if (head == null) {
+                        break;
+                    }
+                    channel.write(head);
+                    if (head.hasRemaining()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    synchronized (writes) {
+                        writes.poll();
+                    }
+                    inFlight.decrementAndGet();
+                }
+                int ops = key.interestOps() & ~SelectionKey.OP_WRITE;
+                if (readPaused && inFlight.get() < MAX_IN_FLIGHT / 2) {
+                    readPaused = false;
+                    ops |= SelectionKey.OP_READ;
+                }
+                key.interestOps(ops);
+            } catch (IOException | CancelledKeyException e) {
+                close();
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            connections.decrementAndGet();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+import shared.Answer;
+import shared.Exam;
+import shared.Question;
+
+// Drives every ExamServiceImpl call against a seeded database, records each
+// SQL statement the service prepares together with its parameters, and prints
+// the EXPLAIN plan for each one. Exits with status 1 if a statement with a
+// WHERE clause reads a whole table. QueryPlanCheckTest (ExamServer/test) runs
+// the same check on the memory profile under ant test, so schema and query
+// changes that add a full scan fail the build.
+//
+// Works with the memory/embedded H2 profiles and with MySQL.
+// An empty database is first seeded with DataGenerator, which takes the same options.
+//
+// Usage: java -Dexam.db.profile=memory -cp ExamServer.jar server.QueryPlanCheck [--students=5000 ...]
+public class QueryPlanCheck {
+
+    private static final String PREFIX = "jdbc:plancheck:";
+
+    // SQL text -> parameters of its last execution, in first-seen order
+    private static final Map<String, Object[]> statements = new LinkedHashMap<>();
+    private static volatile boolean recording;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = defaultOptions();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+
+        List<String> scans = check(options);
+        System.out.println();
+        System.out.println(statements.size() + " statements checked, " + scans.size() + " with full scans");
+        System.exit(scans.isEmpty() ? 0 : 1);
+    }
+
+    static Map<String, String> defaultOptions() {
+        Map<String, String> options = new HashMap<>();
+        options.put("students", "5000");
+        options.put("exams", "50");
+        options.put("resultsPerStudent", "2");
+        return options;
+    }
+
+    // Prints the plan of every statement; returns the statements with a WHERE clause that read
+    // a whole table. Runs once per JVM, before anything else opens the database.
+    static List<String> check(Map<String, String> options) throws Exception {
+        // Route the service's connections through the recording driver
+        String targetUrl = DatabaseManager.configuredUrl();
+        DriverManager.registerDriver(new RecordingDriver());
+        System.setProperty("exam.db.url", PREFIX + targetUrl.substring("jdbc:".length()));
+
+        DatabaseManager dbManager = DatabaseManager.getInstance();
+        new DataGenerator(options).run();
+
+        recording = true;
+        ActivityLog activityLog = ActivityLog.getDefault();
+        try {
+            exercise(new ExamServiceImpl(activityLog));
+        } finally {
+            recording = false;
+            activityLog.close();
+        }
+
+        List<String> scans = new ArrayList<>();
+        try (Connection conn = dbManager.getConnection()) {
+            boolean mysql = conn.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+            for (Map.Entry<String, Object[]> entry : statements.entrySet()) {
+                String sql = entry.getKey();
+                if (sql.trim().toUpperCase().startsWith("INSERT")) {
+                    continue;
+                }
+
+                System.out.println();
+                System.out.println(sql);
+                List<String> scannedTables = explain(conn, sql, entry.getValue(), mysql);
+                if (scannedTables.isEmpty()) {
+                    continue;
+                }
+                if (sql.toUpperCase().contains(" WHERE ")) {
+                    System.out.println("  FULL SCAN of " + scannedTables);
+                    scans.add(sql);
+                } else {
+                    System.out.println("  full read of " + scannedTables + " (no WHERE clause)");
+                }
+            }
+        }
+        return scans;
+    }
+
+    // One call of every service method, on exams and students created by DataGenerator
+    private static void exercise(ExamServiceImpl service) throws Exception {
+        String studentId = "LS1";
+        service.authenticateUser("loadstudent1", "password", false);
+        service.authenticateUser("teacher1", "password", true);
+
+        service.getAvailableExamsIfChanged(studentId, -1);
+        List<Exam> available = service.getAvailableExams(studentId);
+        int examId = available.get(0).getId();
+
+        Exam exam = service.getExamQuestions(examId, studentId);
+        List<Answer> answers = new ArrayList<>();
+        for (Question question : exam.getQuestions()) {
+            answers.add(new Answer(question.getId(), 0));
+        }
+        service.submitExam(examId, studentId, answers);
+        service.getActiveSessions();
+
+        // A keyed submission, then its retry on a second service as after a restart:
+        // the retry is not in RecentSubmissions and is found by its key in exam_results
+        String keyedStudentId = "LS3";
+        int keyedExamId = service.getAvailableExams(keyedStudentId).get(0).getId();
+        List<Answer> keyedAnswers = new ArrayList<>();
+        for (Question question : service.getExamQuestions(keyedExamId, keyedStudentId).getQuestions()) {
+            keyedAnswers.add(new Answer(question.getId(), 0));
+        }
+        service.submitExam(keyedExamId, keyedStudentId, keyedAnswers, "query-plan-check");
+        ExamServiceImpl restarted = new ExamServiceImpl(ActivityLog.getDefault());
+        try {
+            if (!restarted.submitExam(keyedExamId, keyedStudentId, keyedAnswers, "query-plan-check")) {
+                throw new RemoteException("Keyed retry was not recognized");
+            }
+        } finally {
+            restarted.shutdown();
+        }
+
+        service.setResultVisibility(examId, true);
+        service.getExamResult(examId, studentId);
+        service.getExamResults(examId);
+
+        // A pooled exam, taken and submitted: the pool queries, the session cutoff and scoring
+        StringBuilder bank = new StringBuilder("text,option_a,option_b,correct_option,points\n");
+        for (int i = 0; i < 40; i++) {
+            bank.append("Pool question ").append(i).append(",Yes,No,").append(i % 2).append(',')
+                    .append(1 + i % 3).append('\n');
+        }
+        QuestionImporter.Result pool;
+        try (QuestionReader reader = QuestionReader.open(
+                new ByteArrayInputStream(bank.toString().getBytes(StandardCharsets.UTF_8)), "csv", "pool.csv")) {
+            pool = new QuestionImporter(100, 1, false).importIntoPool(reader, "Query plan check", null);
+        }
+        service.poolQuestionsImported(pool.getPoolId());
+        Exam pooled = new Exam(0, "Query plan check pool", "Created by QueryPlanCheck", 30, false);
+        pooled.setActive(true);
+        pooled.setPoolId(pool.getPoolId());
+        pooled.setPoolDrawCount(10);
+        pooled.setQuestions(new ArrayList<>());
+        service.createExam(pooled);
+        List<Answer> pooledAnswers = new ArrayList<>();
+        for (Question question : service.getExamQuestions(pooled.getId(), studentId).getQuestions()) {
+            pooledAnswers.add(new Answer(question.getId(), 0));
+        }
+        service.submitExam(pooled.getId(), studentId, pooledAnswers);
+
+        Exam created = new Exam(0, "Query plan check", "Created by QueryPlanCheck", 30, false);
+        List<Question> questions = new ArrayList<>();
+        questions.add(new Question(0, "First question?", Arrays.asList("Yes", "No"), 0, 1));
+        questions.add(new Question(0, "Second question?", Arrays.asList("Yes", "No"), 1, 1));
+        created.setQuestions(questions);
+        service.createExam(created);
+
+        for (Exam candidate : service.getAvailableExams("LS2")) {
+            if ("Query plan check".equals(candidate.getTitle())) {
+                Exam full = service.getExamQuestions(candidate.getId(), "LS2");
+                full.setDescription("Updated by QueryPlanCheck");
+                service.updateExam(full);
+                service.deleteExam(candidate.getId());
+            }
+        }
+    }
+
+    // Prints the plan and returns the tables it reads in full
+    private static List<String> explain(Connection conn, String sql, Object[] parameters, boolean mysql)
+            throws SQLException {
+        List<String> scannedTables = new ArrayList<>();
+        try (PreparedStatement stmt = conn.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; parameters != null && i < parameters.length; i++) {
+                stmt.setObject(i + 1, parameters[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    if (mysql) {
+                        // One row per table; type ALL is a table scan, index a full index scan
+                        String type = rs.getString("type");
+                        System.out.println(String.format("  %-20s type=%-8s key=%s rows=%s",
+                                rs.getString("table"), type, rs.getString("key"), rs.getString("rows")));
+                        if ("ALL".equals(type) || "index".equals(type)) {
+                            scannedTables.add(rs.getString("table"));
+                        }
+                    } else {
+                        // H2 marks table scans with a /* TABLE.tableScan */ comment
+                        String plan = rs.getString(meta.getColumnCount() > 1 ? "PLAN" : meta.getColumnName(1));
+                        for (String line : plan.split("\n")) {
+                            System.out.println("  " + line);
+                            int scan = line.indexOf(".tableScan");
+                            if (scan >= 0) {
+                                scannedTables.add(line.substring(line.lastIndexOf("/*", scan) + 3, scan));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return scannedTables;
+    }
+
+    // Delegates jdbc:plancheck:<rest> to jdbc:<rest> and records prepared statements
+    private static class RecordingDriver implements Driver {
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+            Connection connection = DriverManager.getConnection("jdbc:" + url.substring(PREFIX.length()), info);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (recording && result instanceof PreparedStatement && method.getName().equals("prepareStatement")) {
+                            return recordingStatement((PreparedStatement) result, (String) args[0]);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement recordingStatement(PreparedStatement statement, String sql) {
+            Map<Integer, Object> parameters = new HashMap<>();
+            InvocationHandler handler = (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+                    parameters.put((Integer) args[0], args[1]);
+                } else if (name.startsWith("execute")) {
+                    Object[] values = new Object[parameters.size()];
+                    for (Map.Entry<Integer, Object> entry : parameters.entrySet()) {
+                        if (entry.getKey() <= values.length) {
+                            values[entry.getKey() - 1] = entry.getValue();
+                        }
+                    }
+                    synchronized (statements) {
+                        statements.put(sql, values);
+                    }
+                }
+                return invoke(statement, method, args);
+            };
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, handler);
+        }
+
+        private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        @Override
+        public boolean acceptsURL(String url) {
+            return url != null && url.startsWith(PREFIX);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return false;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+    }
+}
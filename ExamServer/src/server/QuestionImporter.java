@@ -0,0 +1,571 @@
+package server;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Imports a CSV or JSON question bank (see QuestionReader) into an exam or
+// into a question pool (see QuestionPoolIndex). The file is read as a stream
+// and cut into chunks; chunks are validated in parallel and written in file
+// order, each in its own transaction, with multi-row INSERTs for questions,
+// options and exam or pool links. Only a few chunks are in memory at a time,
+// whatever the file size. A failed chunk is rolled back and stops the import;
+// the chunks before it stay committed.
+//
+// New exams are created inactive and activated when the import completes, so
+// students never see a partly imported exam. A running server does not see
+// questions imported by the command line tool until its caches are reloaded;
+// use the Import Questions button in the admin UI while the server is running.
+//
+// Usage: java -Dexam.db.profile=embedded -cp ExamServer.jar server.QuestionImporter --file=bank.csv [--option=value ...]
+//   --format=csv|json                default from the file extension
+//   --examId=12                      add the questions to this exam, or
+//   --examTitle="Question bank"      create a new exam, or
+//   --pool="Algebra"                 add the questions to this pool, created if missing
+//   --duration=60                    minutes, for a new exam
+//   --chunkSize=500                  questions per transaction
+//   --threads=<cores>                validation threads
+//   --dryRun=false                   validate only
+public class QuestionImporter {
+
+    private static final int MAX_TEXT_LENGTH = 65535;
+    private static final int MAX_OPTIONS = 26;
+    private static final int MAX_POINTS = 1000;
+    // Rows per INSERT statement; keeps placeholders well under driver limits
+    private static final int ROWS_PER_STATEMENT = 100;
+    // Rejected questions reported individually
+    private static final int MAX_REPORTED_ERRORS = 50;
+
+    private final DatabaseManager dbManager;
+    private final int chunkSize;
+    private final int threads;
+    private final boolean dryRun;
+
+    // Progress of an import; a snapshot is passed to the progress listener
+    public static class Result {
+
+        private long read;
+        private long imported;
+        private long rejected;
+        private long elapsedMillis;
+        private int examId;
+        private int poolId;
+        private boolean complete;
+        private final List<String> errors = new ArrayList<>();
+
+        public long getRead() {
+            return read;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public int getExamId() {
+            return examId;
+        }
+
+        public int getPoolId() {
+            return poolId;
+        }
+
+        public boolean isComplete() {
+            return complete;
+        }
+
+        // The first rejected questions, with their line and reason
+        public List<String> getErrors() {
+            return errors;
+        }
+
+        public double getQuestionsPerSecond() {
+            return imported * 1000.0 / Math.max(1, elapsedMillis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,d read, %,d imported, %,d rejected in %.1f s (%,.0f questions/s)",
+                    read, imported, rejected, elapsedMillis / 1000.0, getQuestionsPerSecond());
+        }
+    }
+
+    private static class ValidQuestion {
+
+        final String text;
+        final List<String> options;
+        final int correctOption;
+        final int points;
+
+        ValidQuestion(String text, List<String> options, int correctOption, int points) {
+            this.text = text;
+            this.options = options;
+            this.correctOption = correctOption;
+            this.points = points;
+        }
+    }
+
+    private static class Chunk {
+
+        final List<ValidQuestion> questions = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        int read;
+    }
+
+    public QuestionImporter(int chunkSize, int threads, boolean dryRun) {
+        this.dbManager = DatabaseManager.getInstance();
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.dryRun = dryRun;
+    }
+
+    // Imports into examId, or into a new exam when examId is 0 and newExamTitle is set.
+    // progress is called after each committed chunk, on the calling thread.
+    public Result importQuestions(QuestionReader reader, int examId, String newExamTitle, int durationMinutes,
+            Consumer<Result> progress) throws IOException, SQLException {
+        return importInto(reader, examId, newExamTitle, durationMinutes, null, progress);
+    }
+
+    // Imports into the named pool, which is created if it does not exist
+    public Result importIntoPool(QuestionReader reader, String poolName, Consumer<Result> progress)
+            throws IOException, SQLException {
+        if (poolName == null || poolName.trim().isEmpty()) {
+            throw new SQLException("Give the name of the question pool to import into");
+        }
+        return importInto(reader, 0, null, 0, poolName.trim(), progress);
+    }
+
+    private Result importInto(QuestionReader reader, int examId, String newExamTitle, int durationMinutes,
+            String poolName, Consumer<Result> progress) throws IOException, SQLException {
+        Result result = new Result();
+        long start = System.currentTimeMillis();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService validators = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "question-validate-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Connection conn = null;
+
+        try {
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+            boolean newExam = poolName == null && examId == 0;
+            int targetId = examId;
+            if (!dryRun && poolName != null) {
+                targetId = findOrCreatePool(conn, poolName);
+            } else if (!dryRun) {
+                targetId = newExam ? createExam(conn, newExamTitle, durationMinutes) : checkExam(conn, examId);
+            }
+            if (poolName != null) {
+                result.poolId = targetId;
+            } else {
+                result.examId = targetId;
+            }
+            String linkSql = poolName != null ? "INSERT INTO pool_questions (pool_id, question_id) VALUES "
+                    : "INSERT INTO exam_questions (exam_id, question_id) VALUES ";
+
+            // Chunks waiting for validation, oldest first; bounded so reading never runs far ahead
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+            int maxPending = threads * 2;
+            List<QuestionReader.Record> records = new ArrayList<>(chunkSize);
+            QuestionReader.Record record;
+            while ((record = reader.next()) != null) {
+                records.add(record);
+                if (records.size() == chunkSize) {
+                    List<QuestionReader.Record> batch = records;
+                    pending.addLast(validators.submit(() -> validate(batch)));
+                    records = new ArrayList<>(chunkSize);
+                    if (pending.size() >= maxPending) {
+                        write(conn, linkSql, targetId, await(pending.pollFirst()), result, start, progress);
+                    }
+                }
+            }
+            if (!records.isEmpty()) {
+                List<QuestionReader.Record> batch = records;
+                pending.addLast(validators.submit(() -> validate(batch)));
+            }
+            while (!pending.isEmpty()) {
+                write(conn, linkSql, targetId, await(pending.pollFirst()), result, start, progress);
+            }
+
+            if (newExam && !dryRun) {
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE exams SET active = TRUE WHERE id = ?")) {
+                    stmt.setInt(1, targetId);
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            }
+            if (!dryRun) {
+                dbManager.recordWrite(DatabaseManager.EXAM_CONTENT);
+            }
+            result.complete = true;
+            result.elapsedMillis = System.currentTimeMillis() - start;
+            return result;
+        } catch (SQLException e) {
+            if (conn != null) {
+                conn.rollback();
+            }
+            throw new SQLException("Import stopped after " + result.imported + " questions: " + e.getMessage(), e);
+        } finally {
+            validators.shutdownNow();
+            if (conn != null) {
+                conn.setAutoCommit(true);
+            }
+            dbManager.closeResources(conn, null, null);
+        }
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Validation failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    // Runs on a validation thread
+    private static Chunk validate(List<QuestionReader.Record> records) {
+        Chunk chunk = new Chunk();
+        chunk.read = records.size();
+        for (QuestionReader.Record record : records) {
+            String error = null;
+            String text = record.text != null ? record.text.trim() : "";
+            int correct = -1;
+            int points = 1;
+
+            if (text.isEmpty()) {
+                error = "question text is empty";
+            } else if (text.length() > MAX_TEXT_LENGTH) {
+                error = "question text is longer than " + MAX_TEXT_LENGTH + " characters";
+            } else if (record.options.size() < 2) {
+                error = "a question needs at least 2 options";
+            } else if (record.options.size() > MAX_OPTIONS) {
+                error = "a question can have at most " + MAX_OPTIONS + " options";
+            } else {
+                correct = parseCorrectOption(record.correctOption);
+                if (correct < 0 || correct >= record.options.size()) {
+                    error = "correct_option '" + record.correctOption + "' does not name one of the "
+                            + record.options.size() + " options";
+                } else if (record.points != null && !record.points.trim().isEmpty()) {
+                    try {
+                        points = Integer.parseInt(record.points.trim());
+                        if (points < 1 || points > MAX_POINTS) {
+                            error = "points must be between 1 and " + MAX_POINTS;
+                        }
+                    } catch (NumberFormatException e) {
+                        error = "points '" + record.points + "' is not a number";
+                    }
+                }
+            }
+
+            if (error == null) {
+                for (String option : record.options) {
+                    if (option.length() > MAX_TEXT_LENGTH) {
+                        error = "an option is longer than " + MAX_TEXT_LENGTH + " characters";
+                        break;
+                    }
+                }
+            }
+            if (error != null) {
+                chunk.errors.add("Line " + record.number + ": " + error);
+            } else {
+                List<String> options = new ArrayList<>(record.options.size());
+                for (String option : record.options) {
+                    options.add(option.trim());
+                }
+                chunk.questions.add(new ValidQuestion(text, options, correct, points));
+            }
+        }
+        return chunk;
+    }
+
+    // A 0-based index or a letter, A being the first option; -1 if neither
+    private static int parseCorrectOption(String value) {
+        if (value == null) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        if (trimmed.length() == 1 && Character.isLetter(trimmed.charAt(0))) {
+            return Character.toUpperCase(trimmed.charAt(0)) - 'A';
+        }
+        try {
+            return Integer.parseInt(trimmed);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // One chunk in one transaction; linkSql links the questions to the exam or pool targetId
+    private void write(Connection conn, String linkSql, int targetId, Chunk chunk, Result result, long start,
+            Consumer<Result> progress) throws SQLException {
+        if (!dryRun && !chunk.questions.isEmpty()) {
+            MultiRowInsert questions = new MultiRowInsert(conn,
+                    "INSERT INTO questions (text, correct_option, points) VALUES ", 3, true);
+            for (ValidQuestion question : chunk.questions) {
+                questions.add(question.text, question.correctOption, question.points);
+            }
+            List<Integer> questionIds = questions.finish();
+            if (questionIds.size() != chunk.questions.size()) {
+                throw new SQLException("Expected " + chunk.questions.size() + " generated question ids, got "
+                        + questionIds.size());
+            }
+
+            MultiRowInsert options = new MultiRowInsert(conn,
+                    "INSERT INTO question_options (question_id, option_text, option_order) VALUES ", 3, false);
+            MultiRowInsert links = new MultiRowInsert(conn, linkSql, 2, false);
+            for (int i = 0; i < questionIds.size(); i++) {
+                int questionId = questionIds.get(i);
+                List<String> questionOptions = chunk.questions.get(i).options;
+                for (int o = 0; o < questionOptions.size(); o++) {
+                    options.add(questionId, questionOptions.get(o), o);
+                }
+                links.add(targetId, questionId);
+            }
+            options.finish();
+            links.finish();
+            conn.commit();
+        }
+
+        result.read += chunk.read;
+        result.imported += chunk.questions.size();
+        result.rejected += chunk.errors.size();
+        for (String error : chunk.errors) {
+            if (result.errors.size() < MAX_REPORTED_ERRORS) {
+                result.errors.add(error);
+            }
+        }
+        result.elapsedMillis = System.currentTimeMillis() - start;
+        if (progress != null) {
+            progress.accept(result);
+        }
+    }
+
+    private int createExam(Connection conn, String title, int durationMinutes) throws SQLException {
+        if (title == null || title.trim().isEmpty()) {
+            throw new SQLException("Give the exam to import into, or a title for a new exam");
+        }
+        String sql = "INSERT INTO exams (title, description, duration_minutes, results_visible, active) "
+                + "VALUES (?, ?, ?, FALSE, FALSE)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, title.trim());
+            stmt.setString(2, "Imported question bank");
+            stmt.setInt(3, durationMinutes);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("Failed to get generated exam ID");
+                }
+                int examId = keys.getInt(1);
+                conn.commit();
+                return examId;
+            }
+        }
+    }
+
+    private int findOrCreatePool(Connection conn, String name) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM question_pools WHERE name = ?")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
+            }
+        }
+        String sql = "INSERT INTO question_pools (name) VALUES (?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("Failed to get generated pool ID");
+                }
+                int poolId = keys.getInt(1);
+                conn.commit();
+                return poolId;
+            }
+        }
+    }
+
+    private int checkExam(Connection conn, int examId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM exams WHERE id = ?")) {
+            stmt.setInt(1, examId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Exam " + examId + " not found");
+                }
+                return examId;
+            }
+        }
+    }
+
+    // Builds INSERT ... VALUES (...), (...) statements of up to ROWS_PER_STATEMENT
+    // rows. Full statements reuse one PreparedStatement; statements without
+    // generated keys are sent together as a JDBC batch.
+    private static class MultiRowInsert {
+
+        private final Connection conn;
+        private final String prefix;
+        private final int columns;
+        private final boolean returnKeys;
+        private final List<Object> values = new ArrayList<>();
+        private final List<Integer> keys = new ArrayList<>();
+        private PreparedStatement full;
+        private boolean batched;
+
+        MultiRowInsert(Connection conn, String prefix, int columns, boolean returnKeys) {
+            this.conn = conn;
+            this.prefix = prefix;
+            this.columns = columns;
+            this.returnKeys = returnKeys;
+        }
+
+        void add(Object... row) throws SQLException {
+            for (Object value : row) {
+                values.add(value);
+            }
+            if (values.size() == ROWS_PER_STATEMENT * columns) {
+                if (full == null) {
+                    full = prepare(ROWS_PER_STATEMENT);
+                }
+                execute(full);
+            }
+        }
+
+        // Writes the remaining rows; the generated keys in insertion order if requested
+        List<Integer> finish() throws SQLException {
+            try {
+                if (!values.isEmpty()) {
+                    try (PreparedStatement tail = prepare(values.size() / columns)) {
+                        execute(tail);
+                        if (!returnKeys) {
+                            tail.executeBatch();
+                        }
+                    }
+                }
+                if (batched) {
+                    full.executeBatch();
+                }
+                return keys;
+            } finally {
+                if (full != null) {
+                    full.close();
+                }
+            }
+        }
+
+        private PreparedStatement prepare(int rows) throws SQLException {
+            StringBuilder sql = new StringBuilder(prefix);
+            StringBuilder row = new StringBuilder("(");
+            for (int c = 0; c < columns; c++) {
+                row.append(c == 0 ? "?" : ", ?");
+            }
+            row.append(')');
+            for (int r = 0; r < rows; r++) {
+                if (r > 0) {
+                    sql.append(", ");
+                }
+                sql.append(row);
+            }
+            return returnKeys ? conn.prepareStatement(sql.toString(), Statement.RETURN_GENERATED_KEYS)
+                    : conn.prepareStatement(sql.toString());
+        }
+
+        private void execute(PreparedStatement stmt) throws SQLException {
+            for (int i = 0; i < values.size(); i++) {
+                stmt.setObject(i + 1, values.get(i));
+            }
+            values.clear();
+            if (returnKeys) {
+                stmt.executeUpdate();
+                try (ResultSet rs = stmt.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keys.add(rs.getInt(1));
+                    }
+                }
+            } else {
+                stmt.addBatch();
+                batched |= stmt == full;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        String file = options.get("file");
+        if (file == null) {
+            System.err.println("Usage: server.QuestionImporter --file=<bank.csv|bank.json> "
+                    + "(--examId=<id> | --examTitle=<title> | --pool=<name>) [--format=csv|json] [--duration=60] "
+                    + "[--chunkSize=500] [--threads=<n>] [--dryRun=true]");
+            System.exit(2);
+        }
+
+        int examId = Integer.parseInt(options.getOrDefault("examId", "0"));
+        boolean dryRun = Boolean.parseBoolean(options.getOrDefault("dryRun", "false"));
+        QuestionImporter importer = new QuestionImporter(
+                Integer.parseInt(options.getOrDefault("chunkSize", "500")),
+                Integer.parseInt(options.getOrDefault("threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                dryRun);
+
+        System.out.println((dryRun ? "Validating " : "Importing ") + file + " into the "
+                + DatabaseManager.getProfile() + " database");
+        long[] lastPrint = {0};
+        try (InputStream in = new FileInputStream(file);
+                QuestionReader reader = QuestionReader.open(in, options.get("format"), file)) {
+            Consumer<Result> progress = current -> {
+                // At most one line a second
+                long now = System.currentTimeMillis();
+                if (now - lastPrint[0] >= 1000) {
+                    lastPrint[0] = now;
+                    System.out.println(current);
+                }
+            };
+            String pool = options.get("pool");
+            Result result = pool != null ? importer.importIntoPool(reader, pool, progress)
+                    : importer.importQuestions(reader, examId, options.get("examTitle"),
+                            Integer.parseInt(options.getOrDefault("duration", "60")), progress);
+            for (String error : result.getErrors()) {
+                System.out.println("  rejected: " + error);
+            }
+            if (result.getRejected() > result.getErrors().size()) {
+                System.out.println(String.format(Locale.ROOT, "  ... and %,d more",
+                        result.getRejected() - result.getErrors().size()));
+            }
+            System.out.println("Done" + (dryRun ? "" : pool != null ? ", pool " + result.getPoolId()
+                    : ", exam " + result.getExamId()) + ": " + result);
+        }
+    }
+}
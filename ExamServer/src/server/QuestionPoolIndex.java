@@ -0,0 +1,401 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory index of the question pools and of the exams that draw from them.
+// A pooled exam gives every student pool_draw_count questions sampled from its
+// pool, stratified by points so every student gets about the same mix of easy
+// and hard questions. The sampler is seeded from the exam's pool_seed and the
+// student id, so a student's draw is computed again whenever it is needed
+// (showing the exam, scoring it) instead of being stored. Building the index
+// takes three queries; drawing takes none.
+//
+// Questions are only ever added to a pool, always as new questions, so their
+// ids are higher than any already in it. A session records the highest id in
+// the pool when the student starts (cutoff) and the student's draw, and the
+// scoring of it, only uses questions up to that id. Questions imported while
+// an exam runs only reach the students who start after the import.
+//
+// Like ExamCatalog the index is rebuilt lazily after invalidate().
+public class QuestionPoolIndex {
+
+    private final DatabaseManager dbManager;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    public QuestionPoolIndex(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    // Call after any committed change to question_pools, pool_questions or the pool columns of exams
+    public void invalidate() {
+        generation.incrementAndGet();
+        snapshot = null;
+    }
+
+    // The highest question id in the exam's pool, to record as a new session's cutoff;
+    // 0 if the exam has no pool or the pool is empty
+    public int cutoff(int examId) throws SQLException {
+        Snapshot current = getSnapshot();
+        DrawSpec spec = current.exams.get(examId);
+        return spec != null ? current.pools.get(spec.poolId).maxQuestionId : 0;
+    }
+
+    // The question ids drawn for the student in exam order, or null if the exam has no pool.
+    // Only questions with ids up to cutoff are drawn; 0 draws from the whole pool.
+    public int[] draw(int examId, String studentId, int cutoff) throws SQLException {
+        Snapshot current = getSnapshot();
+        DrawSpec spec = current.exams.get(examId);
+        if (spec == null) {
+            return null;
+        }
+        Pool pool = current.pools.get(spec.poolId).upTo(cutoff);
+        int[] drawn = pool.sample(spec.count, seed(spec.seed, examId, studentId));
+        for (int i = 0; i < drawn.length; i++) {
+            drawn[i] = pool.questionIds[drawn[i]];
+        }
+        return drawn;
+    }
+
+    // The answer key of the student's draw with the same cutoff, or null if the exam has no pool
+    public AnswerKey answerKey(int examId, String studentId, int cutoff) throws SQLException {
+        Snapshot current = getSnapshot();
+        DrawSpec spec = current.exams.get(examId);
+        if (spec == null) {
+            return null;
+        }
+        Pool pool = current.pools.get(spec.poolId).upTo(cutoff);
+        AnswerKey.Builder builder = new AnswerKey.Builder();
+        for (int index : pool.sample(spec.count, seed(spec.seed, examId, studentId))) {
+            builder.add(pool.questionIds[index], pool.correctOptions[index], pool.points[index]);
+        }
+        return builder.build();
+    }
+
+    // All pools by name, for the exam editor
+    public List<PoolInfo> listPools() throws SQLException {
+        List<PoolInfo> pools = new ArrayList<>();
+        for (Pool pool : getSnapshot().pools.values()) {
+            pools.add(new PoolInfo(pool.id, pool.name, pool.questionIds.length));
+        }
+        pools.sort((a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+        return pools;
+    }
+
+    private Snapshot getSnapshot() throws SQLException {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (snapshot != null) {
+                return snapshot;
+            }
+            long loadedGeneration = generation.get();
+            Snapshot loaded = load();
+
+            // Only keep the snapshot if nothing changed while it was loading
+            if (generation.get() == loadedGeneration) {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    private Snapshot load() throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        Map<Integer, String> names = new HashMap<>();
+        Map<Integer, Pool> pools = new HashMap<>();
+        Map<Integer, DrawSpec> exams = new HashMap<>();
+
+        try {
+            conn = dbManager.getReadConnection(DatabaseManager.EXAM_CONTENT);
+            stmt = conn.prepareStatement("SELECT id, name FROM question_pools");
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                names.put(rs.getInt("id"), rs.getString("name"));
+            }
+            dbManager.closeResources(null, stmt, rs);
+
+            // Ordered so that each pool arrives as one run, already sorted into strata
+            String questionsSql = "SELECT pq.pool_id, q.id, q.correct_option, q.points FROM pool_questions pq "
+                    + "JOIN questions q ON q.id = pq.question_id "
+                    + "ORDER BY pq.pool_id, q.points, q.id";
+            stmt = conn.prepareStatement(questionsSql);
+            rs = stmt.executeQuery();
+            Pool.Builder builder = null;
+            while (rs.next()) {
+                int poolId = rs.getInt("pool_id");
+                if (builder == null || builder.id != poolId) {
+                    if (builder != null) {
+                        pools.put(builder.id, builder.build());
+                    }
+                    builder = new Pool.Builder(poolId, names.get(poolId));
+                }
+                builder.add(rs.getInt("id"), rs.getInt("correct_option"), rs.getInt("points"));
+            }
+            if (builder != null) {
+                pools.put(builder.id, builder.build());
+            }
+            for (Map.Entry<Integer, String> entry : names.entrySet()) {
+                if (!pools.containsKey(entry.getKey())) {
+                    pools.put(entry.getKey(), new Pool.Builder(entry.getKey(), entry.getValue()).build());
+                }
+            }
+            dbManager.closeResources(null, stmt, rs);
+
+            // Pool ids start at 1; H2 reads pool_id > 0 from the pool_id index but scans for IS NOT NULL
+            stmt = conn.prepareStatement("SELECT id, pool_id, pool_draw_count, pool_seed FROM exams "
+                    + "WHERE pool_id > 0");
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                exams.put(rs.getInt("id"), new DrawSpec(rs.getInt("pool_id"),
+                        rs.getInt("pool_draw_count"), rs.getLong("pool_seed")));
+            }
+
+            return new Snapshot(pools, exams);
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
+
+    // Murmur3 finalizer over the exam seed, the exam and a 64-bit FNV-1a hash of the
+    // student id, so similar ids and neighbouring exams get unrelated draws
+    static long seed(long examSeed, int examId, String studentId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < studentId.length(); i++) {
+            hash = (hash ^ studentId.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(examSeed ^ mix(hash + examId * 0x9E3779B97F4A7C15L));
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public static class PoolInfo {
+
+        private final int id;
+        private final String name;
+        private final int size;
+
+        PoolInfo(int id, String name, int size) {
+            this.id = id;
+            this.name = name;
+            this.size = size;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + size + " questions)";
+        }
+    }
+
+    // The questions of one pool as parallel arrays sorted by points, then id.
+    // Questions with the same points form a stratum: strataStart[s] is the
+    // first index of stratum s and strataStart[strata] the pool size.
+    private static class Pool {
+
+        private final int id;
+        private final String name;
+        private final int[] questionIds;
+        private final int[] correctOptions;
+        private final int[] points;
+        private final int[] strataStart;
+        private final int maxQuestionId;
+        // The pool as it was at earlier cutoffs; one per import at most
+        private final Map<Integer, Pool> earlier = new ConcurrentHashMap<>();
+
+        private Pool(int id, String name, int[] questionIds, int[] correctOptions, int[] points) {
+            this.id = id;
+            this.name = name;
+            this.questionIds = questionIds;
+            this.correctOptions = correctOptions;
+            this.points = points;
+
+            int[] starts = new int[points.length + 1];
+            int strata = 0;
+            for (int i = 0; i < points.length; i++) {
+                if (i == 0 || points[i] != points[i - 1]) {
+                    starts[strata++] = i;
+                }
+            }
+            starts[strata] = points.length;
+            this.strataStart = Arrays.copyOf(starts, strata + 1);
+
+            int max = 0;
+            for (int questionId : questionIds) {
+                max = Math.max(max, questionId);
+            }
+            this.maxQuestionId = max;
+        }
+
+        // The questions with ids up to cutoff, still sorted by points, then id
+        Pool upTo(int cutoff) {
+            if (cutoff <= 0 || cutoff >= maxQuestionId) {
+                return this;
+            }
+            return earlier.computeIfAbsent(cutoff, c -> {
+                Builder builder = new Builder(id, name);
+                for (int i = 0; i < questionIds.length; i++) {
+                    if (questionIds[i] <= c) {
+                        builder.add(questionIds[i], correctOptions[i], points[i]);
+                    }
+                }
+                return builder.build();
+            });
+        }
+
+        // Indexes of count questions, each stratum contributing in proportion to its
+        // size (largest remainder), shuffled so the strata are not in points order
+        int[] sample(int count, long seed) {
+            int size = questionIds.length;
+            int n = Math.min(count, size);
+            int strata = strataStart.length - 1;
+            SplittableRandom random = new SplittableRandom(seed);
+
+            int[] quota = new int[strata];
+            long[] remainder = new long[strata];
+            int allocated = 0;
+            for (int s = 0; s < strata; s++) {
+                long share = (long) n * (strataStart[s + 1] - strataStart[s]);
+                quota[s] = (int) (share / size);
+                remainder[s] = share % size;
+                allocated += quota[s];
+            }
+            while (allocated < n) {
+                int best = 0;
+                for (int s = 1; s < strata; s++) {
+                    if (remainder[s] > remainder[best]) {
+                        best = s;
+                    }
+                }
+                quota[best]++;
+                remainder[best] = -1;
+                allocated++;
+            }
+
+            int[] drawn = new int[n];
+            int filled = 0;
+            for (int s = 0; s < strata; s++) {
+                filled = sampleStratum(random, strataStart[s], strataStart[s + 1] - strataStart[s],
+                        quota[s], drawn, filled);
+            }
+
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = drawn[i];
+                drawn[i] = drawn[j];
+                drawn[j] = swap;
+            }
+            return drawn;
+        }
+
+        // Floyd's algorithm: k distinct indexes out of size with k random numbers.
+        // Draws are exam-sized, so the membership test scans what this stratum drew.
+        private static int sampleStratum(SplittableRandom random, int start, int size, int k,
+                int[] drawn, int filled) {
+            int first = filled;
+            for (int j = size - k; j < size; j++) {
+                int candidate = start + random.nextInt(j + 1);
+                for (int i = first; i < filled; i++) {
+                    if (drawn[i] == candidate) {
+                        candidate = start + j;
+                        break;
+                    }
+                }
+                drawn[filled++] = candidate;
+            }
+            return filled;
+        }
+
+        static class Builder {
+
+            private final int id;
+            private final String name;
+            private int[] questionIds = new int[64];
+            private int[] correctOptions = new int[64];
+            private int[] points = new int[64];
+            private int size;
+
+            Builder(int id, String name) {
+                this.id = id;
+                this.name = name;
+            }
+
+            // Rows must come sorted by points, then id
+            void add(int questionId, int correctOption, int questionPoints) {
+                if (size == questionIds.length) {
+                    questionIds = Arrays.copyOf(questionIds, size * 2);
+                    correctOptions = Arrays.copyOf(correctOptions, size * 2);
+                    points = Arrays.copyOf(points, size * 2);
+                }
+                questionIds[size] = questionId;
+                correctOptions[size] = correctOption;
+                points[size] = questionPoints;
+                size++;
+            }
+
+            Pool build() {
+                return new Pool(id, name, Arrays.copyOf(questionIds, size),
+                        Arrays.copyOf(correctOptions, size), Arrays.copyOf(points, size));
+            }
+        }
+    }
+
+    private static class DrawSpec {
+
+        private final int poolId;
+        private final int count;
+        private final long seed;
+
+        DrawSpec(int poolId, int count, long seed) {
+            this.poolId = poolId;
+            this.count = count;
+            this.seed = seed;
+        }
+    }
+
+    private static class Snapshot {
+
+        private final Map<Integer, Pool> pools;
+        private final Map<Integer, DrawSpec> exams;
+
+        Snapshot(Map<Integer, Pool> pools, Map<Integer, DrawSpec> exams) {
+            this.pools = Collections.unmodifiableMap(pools);
+            this.exams = Collections.unmodifiableMap(exams);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Reads questions one at a time from a CSV or JSON question bank, so files of
+// any size are imported in constant memory. Fields are returned as found in the
+// file; QuestionImporter validates them.
+//
+// CSV: a header row naming the columns text, correct_option, points (optional)
+// and one column per option whose name starts with "option", in order. Fields
+// may be quoted with "..." and then contain commas, quotes ("") and line breaks.
+//
+// JSON: an array of question objects, or an object with such an array under
+// "questions". Each object has "text", "options" (array of strings),
+// "correct_option" and optionally "points". Other fields are ignored.
+//
+// correct_option is the 0-based option index or a letter (A = first option).
+public abstract class QuestionReader implements Closeable {
+
+    // A question as read from the file
+    public static class Record {
+
+        final long number;
+        final String text;
+        final List<String> options;
+        final String correctOption;
+        final String points;
+
+        Record(long number, String text, List<String> options, String correctOption, String points) {
+            this.number = number;
+            this.text = text;
+            this.options = options;
+            this.correctOption = correctOption;
+            this.points = points;
+        }
+    }
+
+    protected final Reader reader;
+    protected long records;
+
+    protected QuestionReader(InputStream in) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    // "csv" or "json"; anything else is guessed from the file name
+    public static QuestionReader open(InputStream in, String format, String fileName) throws IOException {
+        String type = format != null ? format.toLowerCase(Locale.ROOT)
+                : fileName.toLowerCase(Locale.ROOT).endsWith(".json") ? "json" : "csv";
+        switch (type) {
+            case "csv":
+                return new Csv(in);
+            case "json":
+                return new Json(in);
+            default:
+                throw new IOException("Unsupported question file format: " + format);
+        }
+    }
+
+    // The next question, or null at the end of the file. Syntax errors that make
+    // the rest of the file unreadable throw IOException.
+    public abstract Record next() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static class Csv extends QuestionReader {
+
+        private final CsvRowReader rows;
+        private int textColumn = -1;
+        private int correctColumn = -1;
+        private int pointsColumn = -1;
+        private final List<Integer> optionColumns = new ArrayList<>();
+
+        Csv(InputStream in) throws IOException {
+            super(in);
+            rows = new CsvRowReader(reader);
+            List<String> header = rows.nextRow();
+            if (header == null) {
+                throw new IOException("Empty CSV file");
+            }
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+                if (name.equals("text") || name.equals("question")) {
+                    textColumn = i;
+                } else if (name.equals("correct_option") || name.equals("correct")) {
+                    correctColumn = i;
+                } else if (name.equals("points")) {
+                    pointsColumn = i;
+                } else if (name.startsWith("option")) {
+                    optionColumns.add(i);
+                }
+            }
+            if (textColumn < 0 || correctColumn < 0 || optionColumns.isEmpty()) {
+                throw new IOException("CSV header must name text, correct_option and option columns, found " + header);
+            }
+        }
+
+        @Override
+        public Record next() throws IOException {
+            List<String> row = rows.nextRow();
+            if (row == null) {
+                return null;
+            }
+
+            records++;
+            List<String> options = new ArrayList<>(optionColumns.size());
+            for (int column : optionColumns) {
+                String option = column(row, column);
+                if (option != null && !option.trim().isEmpty()) {
+                    options.add(option);
+                }
+            }
+            return new Record(rows.getRowLine(), column(row, textColumn), options, column(row, correctColumn),
+                    pointsColumn >= 0 ? column(row, pointsColumn) : null);
+        }
+
+        private static String column(List<String> row, int index) {
+            return index < row.size() ? row.get(index) : null;
+        }
+    }
+
+    // Pull parser over the token stream; only the current question is held in memory
+    private static class Json extends QuestionReader {
+
+        private final StringBuilder token = new StringBuilder();
+        private long line = 1;
+        private int peeked = -2;
+        private boolean started;
+        private boolean finished;
+
+        Json(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            if (!started) {
+                started = true;
+                openQuestionArray();
+            } else if (skipWhitespace() == ',') {
+                read();
+            }
+            if (skipWhitespace() == ']') {
+                read();
+                finished = true;
+                return null;
+            }
+            return readQuestion();
+        }
+
+        // Positions the stream after the '[' of the question array
+        private void openQuestionArray() throws IOException {
+            int c = read();
+            if (c == '[') {
+                return;
+            }
+            expect(c, '{');
+            while (true) {
+                String name = readString();
+                expect(read(), ':');
+                if (name.equals("questions")) {
+                    expect(read(), '[');
+                    return;
+                }
+                skipValue();
+                int separator = read();
+                if (separator == '}') {
+                    throw new IOException("No \"questions\" array in JSON file");
+                }
+                expect(separator, ',');
+            }
+        }
+
+        private Record readQuestion() throws IOException {
+            long number = line;
+            expect(read(), '{');
+            records++;
+            String text = null;
+            String correct = null;
+            String points = null;
+            List<String> options = new ArrayList<>();
+
+            if (skipWhitespace() == '}') {
+                read();
+                return new Record(number, null, options, null, null);
+            }
+            while (true) {
+                String name = readString();
+                expect(read(), ':');
+                switch (name) {
+                    case "text":
+                    case "question":
+                        text = readScalar();
+                        break;
+                    case "correct_option":
+                    case "correctOption":
+                    case "correct":
+                        correct = readScalar();
+                        break;
+                    case "points":
+                        points = readScalar();
+                        break;
+                    case "options":
+                        expect(read(), '[');
+                        if (skipWhitespace() == ']') {
+                            read();
+                            break;
+                        }
+                        while (true) {
+                            options.add(readScalar());
+                            int c = read();
+                            if (c == ']') {
+                                break;
+                            }
+                            expect(c, ',');
+                        }
+                        break;
+                    default:
+                        skipValue();
+                }
+                int c = read();
+                if (c == '}') {
+                    return new Record(number, text, options, correct, points);
+                }
+                expect(c, ',');
+            }
+        }
+
+        // A string, number, boolean or null as text
+        private String readScalar() throws IOException {
+            int c = skipWhitespace();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{' || c == '[') {
+                skipValue();
+                return null;
+            }
+            token.setLength(0);
+            while (true) {
+                c = peek();
+                if (c < 0 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                    break;
+                }
+                token.append((char) read());
+            }
+            String literal = token.toString();
+            if (literal.isEmpty()) {
+                throw new IOException("Unexpected character '" + (char) read() + "' at line " + line);
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString() throws IOException {
+            expect(read(), '"');
+            token.setLength(0);
+            while (true) {
+                int c = readRaw();
+                if (c < 0) {
+                    throw new IOException("Unterminated string at line " + line);
+                }
+                if (c == '"') {
+                    return token.toString();
+                }
+                if (c == '\\') {
+                    c = readRaw();
+                    switch (c) {
+                        case 'n':
+                            token.append('\n');
+                            break;
+                        case 't':
+                            token.append('\t');
+                            break;
+                        case 'r':
+                            token.append('\r');
+                            break;
+                        case 'b':
+                            token.append('\b');
+                            break;
+                        case 'f':
+                            token.append('\f');
+                            break;
+                        case 'u':
+                            char[] hex = new char[4];
+                            for (int i = 0; i < 4; i++) {
+                                hex[i] = (char) readRaw();
+                            }
+                            try {
+                                token.append((char) Integer.parseInt(new String(hex), 16));
+                            } catch (NumberFormatException e) {
+                                throw new IOException("Bad \\u escape at line " + line);
+                            }
+                            break;
+                        default:
+                            if (c < 0) {
+                                throw new IOException("Unterminated string at line " + line);
+                            }
+                            token.append((char) c);
+                    }
+                } else {
+                    token.append((char) c);
+                }
+            }
+        }
+
+        // Skips any value, however deeply nested, without keeping it
+        private void skipValue() throws IOException {
+            int c = skipWhitespace();
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                do {
+                    c = skipWhitespace();
+                    if (c == '"') {
+                        readString();
+                        continue;
+                    }
+                    c = read();
+                    if (c < 0) {
+                        throw new IOException("Unexpected end of JSON file");
+                    }
+                    if (c == '{' || c == '[') {
+                        depth++;
+                    } else if (c == '}' || c == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+            } else {
+                readScalar();
+            }
+        }
+
+        private void expect(int c, char expected) throws IOException {
+            if (c != expected) {
+                throw new IOException("Expected '" + expected + "' but found "
+                        + (c < 0 ? "end of file" : "'" + (char) c + "'") + " at line " + line);
+            }
+        }
+
+        // Next non-whitespace character, left unread
+        private int skipWhitespace() throws IOException {
+            while (true) {
+                int c = peek();
+                if (c < 0 || !Character.isWhitespace(c)) {
+                    return c;
+                }
+                readRaw();
+            }
+        }
+
+        // Next non-whitespace character
+        private int read() throws IOException {
+            skipWhitespace();
+            return readRaw();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) {
+                peeked = reader.read();
+            }
+            return peeked;
+        }
+
+        private int readRaw() throws IOException {
+            int c = peek();
+            peeked = -2;
+            if (c == '\n') {
+                line++;
+            }
+            return c;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.rmi.server.RemoteServer;
+import java.rmi.server.ServerNotActiveException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import shared.RemoteExamService;
+
+// Limits how often one student, and optionally one client machine, may call
+// each service method. Checked in a proxy in front of the service, so a
+// rejected call does no database work; rejections are counted in
+// ServiceMetrics.
+//
+// The identity of a call is its first String argument (the student id or
+// username), or the client host for methods without one. Counts are kept
+// per identity in a sliding window, in SHARDS independently locked maps per
+// method, so 10k students cost a few hundred KB and threads rarely meet on
+// a lock. Idle identities are swept out as their windows pass.
+//
+// Limits are calls/seconds per identity: -Dexam.rateLimit.<method>=20/10
+// overrides the defaults below, 0 removes the limit of a method.
+// -Dexam.rateLimit.client=<calls>/<seconds> also limits all calls from one
+// client host together; it is off by default because a lab or campus NAT
+// puts many students behind one address. -Dexam.rateLimit.enabled=false
+// turns rate limiting off.
+public class RateLimiter {
+
+    private static final int SHARDS = 64;
+
+    private static final String[][] DEFAULT_LIMITS = {
+        {"authenticateUser", "10/60"},
+        {"getAvailableExams", "20/10"},
+        {"getAvailableExamsIfChanged", "20/10"},
+        {"requestAdmission", "60/10"},
+        {"getExamQuestions", "20/10"},
+        {"prefetchExam", "20/60"},
+        {"releaseExamKey", "20/10"},
+        {"submitExam", "10/10"},
+        // The results refresh asks once per exam
+        {"getExamResult", "100/10"},
+        {"subscribe", "10/60"}
+    };
+
+    // Client address of a call that did not come over RMI, set by NioExamServer and HttpGateway
+    static final ThreadLocal<String> CLIENT_HOST = new ThreadLocal<>();
+
+    private final Map<String, Limit> methodLimits = new HashMap<>();
+    private final Limit clientLimit;
+
+    public RateLimiter() {
+        for (String[] limit : DEFAULT_LIMITS) {
+            Limit parsed = Limit.parse(System.getProperty("exam.rateLimit." + limit[0], limit[1]));
+            if (parsed != null) {
+                methodLimits.put(limit[0], parsed);
+            }
+        }
+        for (Method method : RemoteExamService.class.getMethods()) {
+            String configured = System.getProperty("exam.rateLimit." + method.getName());
+            if (configured != null && !methodLimits.containsKey(method.getName())) {
+                Limit parsed = Limit.parse(configured);
+                if (parsed != null) {
+                    methodLimits.put(method.getName(), parsed);
+                }
+            }
+        }
+        clientLimit = Limit.parse(System.getProperty("exam.rateLimit.client", "0"));
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("exam.rateLimit.enabled", "true"));
+    }
+
+    // Wrap the service so calls over the limit are rejected before reaching it
+    public RemoteExamService wrap(RemoteExamService service) {
+        ServiceMetrics metrics = ServiceMetrics.getInstance();
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() != Object.class) {
+                Limit limit = methodLimits.get(method.getName());
+                String client = null;
+                if (limit != null || clientLimit != null) {
+                    client = clientHost();
+                }
+                if (clientLimit != null && !clientLimit.tryAcquire(client)) {
+                    metrics.getMethodStats(method.getName()).reject();
+                    throw new RemoteException("Too many requests from this computer. Please try again shortly.");
+                }
+                if (limit != null && !limit.tryAcquire(identity(args, client))) {
+                    metrics.getMethodStats(method.getName()).reject();
+                    throw new RemoteException("Too many " + method.getName()
+                            + " requests. Please try again in a few seconds.");
+                }
+            }
+            try {
+                return method.invoke(service, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (RemoteExamService) Proxy.newProxyInstance(
+                RemoteExamService.class.getClassLoader(), new Class<?>[]{RemoteExamService.class}, handler);
+    }
+
+    private static String identity(Object[] args, String client) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg instanceof String) {
+                    return (String) arg;
+                }
+            }
+        }
+        return client;
+    }
+
+    // Calls made inside the server process, e.g. from the admin UI, count as one local client
+    private static String clientHost() {
+        String host = CLIENT_HOST.get();
+        if (host != null) {
+            return host;
+        }
+        try {
+            return RemoteServer.getClientHost();
+        } catch (ServerNotActiveException e) {
+            return "local";
+        }
+    }
+
+    // calls per windowMillis for each identity
+    static class Limit {
+
+        private final int calls;
+        private final long windowMillis;
+        private final Shard[] shards = new Shard[SHARDS];
+
+        Limit(int calls, long windowMillis) {
+            this.calls = calls;
+            this.windowMillis = windowMillis;
+            for (int i = 0; i < SHARDS; i++) {
+                shards[i] = new Shard();
+            }
+        }
+
+        // "calls/seconds"; null for 0 or a malformed value
+        static Limit parse(String value) {
+            String[] parts = value.trim().split("/");
+            try {
+                int calls = Integer.parseInt(parts[0].trim());
+                long seconds = parts.length > 1 ? Long.parseLong(parts[1].trim()) : 1;
+                return calls > 0 && seconds > 0 ? new Limit(calls, seconds * 1000) : null;
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring rate limit '" + value + "', expected <calls>/<seconds>");
+                return null;
+            }
+        }
+
+        boolean tryAcquire(String identity) {
+            long now = System.currentTimeMillis();
+            int hash = identity.hashCode();
+            Shard shard = shards[(hash ^ (hash >>> 16)) & (SHARDS - 1)];
+            synchronized (shard) {
+                shard.sweep(now, windowMillis);
+                Counter counter = shard.counters.get(identity);
+                if (counter == null) {
+                    counter = new Counter(now);
+                    shard.counters.put(identity, counter);
+                }
+                return counter.tryAcquire(now, calls, windowMillis);
+            }
+        }
+    }
+
+    private static class Shard {
+
+        private final Map<String, Counter> counters = new HashMap<>();
+        private long sweptAt;
+
+        // Drops identities that made no call in the last two windows
+        void sweep(long now, long windowMillis) {
+            if (now - sweptAt < 2 * windowMillis) {
+                return;
+            }
+            sweptAt = now;
+            for (Iterator<Counter> it = counters.values().iterator(); it.hasNext(); ) {
+                if (now - it.next().windowStart >= 2 * windowMillis) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    // Sliding window approximated from the counts of the current and previous
+    // fixed windows, weighting the previous one by how much of it still overlaps
+    private static class Counter {
+
+        private long windowStart;
+        private int previous;
+        private int current;
+
+        Counter(long now) {
+            this.windowStart = now;
+        }
+
+        boolean tryAcquire(long now, int limit, long windowMillis) {
+            long elapsed = now - windowStart;
+            if (elapsed >= windowMillis) {
+                previous = elapsed >= 2 * windowMillis ? 0 : current;
+                current = 0;
+                windowStart += elapsed / windowMillis * windowMillis;
+                elapsed = now - windowStart;
+            }
+            double estimate = previous * (double) (windowMillis - elapsed) / windowMillis + current;
+            if (estimate >= limit) {
+                return false;
+            }
+            current++;
+            return true;
+        }
+    }
+}
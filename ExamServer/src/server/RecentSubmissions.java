@@ -0,0 +1,107 @@
+package server;
+
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Outcomes of recent keyed submissions. A client that lost the reply to
+// submitExam retries with the same submission key and gets the outcome of
+// its first attempt instead of "already submitted"; a retry that arrives
+// while the first attempt is still running waits for it. Only stored
+// submissions are remembered: a failed attempt stored nothing, so its key is
+// dropped and the next retry runs again.
+//
+// Holds the most recent CAPACITY keys; older keys are answered from
+// exam_results.submission_key.
+//
+// -Dexam.submit.recentKeys sets the capacity (default 10000).
+public class RecentSubmissions {
+
+    private static final int CAPACITY = Integer.getInteger("exam.submit.recentKeys", 10000);
+    private static final long WAIT_MILLIS = 30 * 1000;
+
+    private final Map<String, Attempt> attempts = new LinkedHashMap<String, Attempt>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Attempt> eldest) {
+            // Attempts still running stay until they finish
+            return size() > CAPACITY && eldest.getValue().outcome.isDone();
+        }
+    };
+
+    // Registers the attempt; returns null if the caller should run the
+    // submission, or the earlier attempt with the same key
+    public synchronized Attempt begin(String key, int examId, String studentId) throws RemoteException {
+        Attempt earlier = attempts.get(key);
+        if (earlier == null) {
+            attempts.put(key, new Attempt(examId, studentId));
+            return null;
+        }
+        if (earlier.examId != examId || !earlier.studentId.equals(studentId)) {
+            throw new RemoteException("This submission key was already used for another submission");
+        }
+        return earlier;
+    }
+
+    public void succeeded(String key) {
+        Attempt attempt;
+        synchronized (this) {
+            attempt = attempts.get(key);
+        }
+        if (attempt != null) {
+            attempt.outcome.complete(Boolean.TRUE);
+        }
+    }
+
+    public void failed(String key, RemoteException error) {
+        Attempt attempt;
+        synchronized (this) {
+            attempt = attempts.remove(key);
+        }
+        if (attempt != null) {
+            attempt.outcome.completeExceptionally(error);
+        }
+    }
+
+    // Call when the results of an exam are deleted
+    public synchronized void removeExam(int examId) {
+        for (Iterator<Attempt> it = attempts.values().iterator(); it.hasNext(); ) {
+            if (it.next().examId == examId) {
+                it.remove();
+            }
+        }
+    }
+
+    public static class Attempt {
+
+        private final int examId;
+        private final String studentId;
+        private final CompletableFuture<Boolean> outcome = new CompletableFuture<>();
+
+        Attempt(int examId, String studentId) {
+            this.examId = examId;
+            this.studentId = studentId;
+        }
+
+        // The outcome of the first attempt, waiting for it if it is still running
+        public boolean await() throws RemoteException {
+            try {
+                return outcome.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RemoteException) {
+                    throw (RemoteException) e.getCause();
+                }
+                throw new RemoteException("Failed to submit exam: " + e.getCause().getMessage(), e.getCause());
+            } catch (TimeoutException e) {
+                throw new RemoteException("Your submission is still being processed. Please try again shortly.");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RemoteException("Interrupted while waiting for the submission", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Chooses read replicas for DatabaseManager.getReadConnection.
+//
+// A heartbeat task writes the current time to replication_heartbeat on the
+// primary twice a second and reads it back from every replica. The value a
+// replica returns is the primary time up to which it has applied changes, so
+// its lag is now minus that value. Replicas lagging more than maxLagMillis, or
+// failing the check, are skipped until the next successful heartbeat.
+//
+// Read-your-writes: callers record writes under a key (a student id, or
+// DatabaseManager.EXAM_CONTENT). A read for that key only goes to a replica
+// whose heartbeat is newer than the write, otherwise to the primary.
+public class ReplicaRouter {
+
+    private static final long HEARTBEAT_MILLIS = 500;
+
+    private final String primaryUrl;
+    private final String user;
+    private final String password;
+    private final long maxLagMillis;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Map<String, Long> recentWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService heartbeat;
+
+    public ReplicaRouter(String primaryUrl, List<String> replicaUrls, String user, String password, long maxLagMillis) {
+        this.primaryUrl = primaryUrl;
+        this.user = user;
+        this.password = password;
+        this.maxLagMillis = maxLagMillis;
+        for (String url : replicaUrls) {
+            replicas.add(new Replica(url));
+        }
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "replica-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::beat, 0, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Open a connection to a usable replica, or return null if the read should go to the primary
+    public Connection openReplicaConnection(String key) {
+        Long writtenAt = key != null ? recentWrites.get(key) : null;
+        long now = System.currentTimeMillis();
+        int start = nextReplica.getAndIncrement();
+
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+            if (!replica.isUsable(now, maxLagMillis, writtenAt)) {
+                continue;
+            }
+            try {
+                return DriverManager.getConnection(replica.url, user, password);
+            } catch (SQLException e) {
+                replica.markDown(e);
+            }
+        }
+        return null;
+    }
+
+    public void recordWrite(String key) {
+        recentWrites.put(key, System.currentTimeMillis());
+    }
+
+    // One line per replica for the activity log
+    public List<String> describeReplicas() {
+        long now = System.currentTimeMillis();
+        List<String> lines = new ArrayList<>();
+        for (Replica replica : replicas) {
+            lines.add(replica.url + (replica.healthy
+                    ? " lag " + (now - replica.seenBeatMillis) + " ms"
+                    : " unavailable"));
+        }
+        return Collections.unmodifiableList(lines);
+    }
+
+    public void shutdown() {
+        heartbeat.shutdownNow();
+    }
+
+    private void beat() {
+        long now = System.currentTimeMillis();
+        try (Connection conn = DriverManager.getConnection(primaryUrl, user, password);
+                PreparedStatement stmt = conn.prepareStatement(
+                        "UPDATE replication_heartbeat SET beat_millis = ? WHERE id = 1")) {
+            stmt.setLong(1, now);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            // Without a fresh heartbeat every replica looks lagged, so reads fall back to the primary
+            System.err.println("Replication heartbeat failed: " + e.getMessage());
+        }
+
+        for (Replica replica : replicas) {
+            replica.check(user, password);
+        }
+
+        // A write older than the lag limit is visible on every replica that is still used
+        recentWrites.values().removeIf(writtenAt -> writtenAt < now - maxLagMillis);
+    }
+
+    private static class Replica {
+
+        private final String url;
+        private volatile boolean healthy;
+        private volatile long seenBeatMillis;
+
+        Replica(String url) {
+            this.url = url;
+        }
+
+        boolean isUsable(long now, long maxLagMillis, Long writtenAt) {
+            long seen = seenBeatMillis;
+            return healthy && now - seen <= maxLagMillis && (writtenAt == null || seen > writtenAt);
+        }
+
+        void check(String user, String password) {
+            try (Connection conn = DriverManager.getConnection(url, user, password);
+                    PreparedStatement stmt = conn.prepareStatement(
+                            "SELECT beat_millis FROM replication_heartbeat WHERE id = 1");
+                    ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    seenBeatMillis = rs.getLong(1);
+                }
+                if (!healthy) {
+                    System.out.println("Read replica available: " + url);
+                    healthy = true;
+                }
+            } catch (SQLException e) {
+                markDown(e);
+            }
+        }
+
+        void markDown(SQLException e) {
+            if (healthy) {
+                System.err.println("Read replica unavailable: " + url + " (" + e.getMessage() + ")");
+                healthy = false;
+            }
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+// Writes the results of an exam to a CSV file straight from the database.
+// Rows come from one forward-only, read-only cursor and go through a fixed
+// buffer to a FileChannel, so memory use does not depend on the cohort size.
+// MySQL only streams such a cursor with fetch size Integer.MIN_VALUE.
+//
+// Columns: student_id, student_name, score, total_possible, percentage,
+// submission_time, and with the answer matrix one column per question (q<id>)
+// holding the selected option as a letter, empty if not answered.
+//
+// Usage: java -Dexam.db.profile=embedded -cp ExamServer.jar server.ResultsExporter --examId=1 [--option=value ...]
+//   --file=results-<examId>.csv
+//   --answers=false                  add the per-question answer matrix
+//
+// To measure on 1M answer rows, seed with DataGenerator --exams=1
+// --questionsPerExam=40 --students=25000 --resultsPerStudent=1.
+public class ResultsExporter {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Rows per round trip where the driver can stream with a normal fetch size
+    private static final int FETCH_SIZE = 1000;
+
+    private final DatabaseManager dbManager;
+
+    public static class Stats {
+
+        private long rows;
+        private long answers;
+        private long bytes;
+        private long elapsedMillis;
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getAnswers() {
+            return answers;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = Math.max(0.001, elapsedMillis / 1000.0);
+            return String.format("%,d results, %,d answers, %,d KB in %.1f s (%,.0f rows/s, %.1f MB/s)",
+                    rows, answers, bytes / 1024, seconds, (rows + answers) / seconds,
+                    bytes / seconds / (1024 * 1024));
+        }
+    }
+
+    public ResultsExporter() {
+        this.dbManager = DatabaseManager.getInstance();
+    }
+
+    // progress receives the number of results written, every 10,000 results
+    public Stats export(int examId, Path file, boolean answerMatrix, LongConsumer progress)
+            throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        Stats stats = new Stats();
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try (CsvChannelWriter out = new CsvChannelWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))) {
+            conn = dbManager.getReadConnection(null);
+
+            // Question columns, in a fixed order; a pooled exam has a column per pool question
+            List<Integer> questionIds = new ArrayList<>();
+            if (answerMatrix) {
+                stmt = conn.prepareStatement("SELECT question_id FROM exam_questions WHERE exam_id = ? "
+                        + "UNION SELECT pq.question_id FROM pool_questions pq "
+                        + "JOIN exams e ON pq.pool_id = e.pool_id WHERE e.id = ? "
+                        + "ORDER BY question_id");
+                stmt.setInt(1, examId);
+                stmt.setInt(2, examId);
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    questionIds.add(rs.getInt(1));
+                }
+                dbManager.closeResources(null, stmt, rs);
+            }
+            Map<Integer, Integer> columnOf = new HashMap<>();
+            for (int i = 0; i < questionIds.size(); i++) {
+                columnOf.put(questionIds.get(i), i);
+            }
+
+            out.field("student_id").field("student_name").field("score").field("total_possible")
+                    .field("percentage").field("submission_time");
+            for (int questionId : questionIds) {
+                out.field("q" + questionId);
+            }
+            out.endRow();
+
+            // With the matrix every answer is a row; a student's rows are consecutive
+            String sql = "SELECT er.student_id, s.name, er.score, er.total_possible, er.submission_time"
+                    + (answerMatrix ? ", sa.question_id, sa.selected_option " : " ")
+                    + "FROM exam_results er "
+                    + "JOIN students s ON er.student_id = s.id "
+                    + (answerMatrix ? "LEFT JOIN student_answers sa "
+                            + "ON sa.exam_id = er.exam_id AND sa.student_id = er.student_id " : "")
+                    + "WHERE er.exam_id = ? "
+                    + "ORDER BY er.student_id" + (answerMatrix ? ", sa.question_id" : "");
+            stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(DatabaseManager.isEmbedded() ? FETCH_SIZE : Integer.MIN_VALUE);
+            stmt.setInt(1, examId);
+            rs = stmt.executeQuery();
+
+            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+            String[] selected = new String[questionIds.size()];
+            boolean more = rs.next();
+            while (more) {
+                String studentId = rs.getString(1);
+                int score = rs.getInt(3);
+                int total = rs.getInt(4);
+                Timestamp submitted = rs.getTimestamp(5);
+                out.field(studentId).field(rs.getString(2)).field(score).field(total)
+                        .field(total > 0 ? String.format(Locale.ROOT, "%.1f", score * 100.0 / total) : "")
+                        .field(submitted != null ? dateFormat.format(submitted) : "");
+
+                if (answerMatrix) {
+                    Arrays.fill(selected, null);
+                    do {
+                        Integer column = columnOf.get(rs.getInt(6));
+                        if (column != null && !rs.wasNull()) {
+                            selected[column] = optionLetter(rs.getInt(7));
+                            stats.answers++;
+                        }
+                        more = rs.next();
+                    } while (more && studentId.equals(rs.getString(1)));
+                    for (String option : selected) {
+                        out.field(option != null ? option : "");
+                    }
+                } else {
+                    more = rs.next();
+                }
+                out.endRow();
+
+                if (++stats.rows % 10000 == 0 && progress != null) {
+                    progress.accept(stats.rows);
+                }
+            }
+            out.flush();
+            stats.bytes = out.getBytesWritten();
+            stats.elapsedMillis = System.currentTimeMillis() - start;
+            return stats;
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
+
+    private static String optionLetter(int option) {
+        return option >= 0 && option < 26 ? String.valueOf((char) ('A' + option)) : String.valueOf(option);
+    }
+
+    // CSV fields encoded to UTF-8 into one reused direct buffer
+    private static class CsvChannelWriter implements Closeable {
+
+        private final FileChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        private final StringBuilder row = new StringBuilder(256);
+        private long bytesWritten;
+
+        CsvChannelWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        CsvChannelWriter field(String value) {
+            if (row.length() > 0) {
+                row.append(',');
+            }
+            if (value == null) {
+                return this;
+            }
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (quote) {
+                row.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                row.append(value);
+            }
+            return this;
+        }
+
+        CsvChannelWriter field(int value) {
+            if (row.length() > 0) {
+                row.append(',');
+            }
+            row.append(value);
+            return this;
+        }
+
+        void endRow() throws IOException {
+            row.append('\n');
+            CharBuffer chars = CharBuffer.wrap(row);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isUnderflow()) {
+                    break;
+                } else {
+                    result.throwException();
+                }
+            }
+            row.setLength(0);
+        }
+
+        void flush() throws IOException {
+            drain();
+            channel.force(false);
+        }
+
+        long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                bytesWritten += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        if (!options.containsKey("examId")) {
+            System.err.println("Usage: server.ResultsExporter --examId=<id> [--file=results.csv] [--answers=true]");
+            System.exit(2);
+        }
+        int examId = Integer.parseInt(options.get("examId"));
+        Path file = Paths.get(options.getOrDefault("file", "results-" + examId + ".csv"));
+        boolean answers = Boolean.parseBoolean(options.getOrDefault("answers", "false"));
+
+        System.out.println("Exporting results of exam " + examId + " from the " + DatabaseManager.getProfile()
+                + " database to " + file);
+        Stats stats = new ResultsExporter().export(examId, file, answers,
+                rows -> System.out.println(String.format("%,12d results", rows)));
+        System.out.println("Done: " + stats);
+        System.out.println(String.format("Peak heap %,d MB", peakHeapBytes() / (1024 * 1024)));
+    }
+}
@@ -0,0 +1,387 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Creates student accounts from a CSV roster with the columns id, username,
+// password and name (header row required, any order). The roster is read in
+// chunks; each chunk is checked against the students table with one IN query
+// per key, so existing students are skipped without a lookup per row. The
+// passwords of the new students are then hashed (PasswordHasher) on all
+// cores while the next chunk is read, and each chunk is inserted as one JDBC
+// batch in one transaction. Rows repeated within the file are rejected.
+//
+// --dryRun=true does everything but the inserts, so it also shows how long
+// hashing the roster takes.
+//
+// Usage: java -Dexam.db.profile=embedded -cp ExamServer.jar server.RosterImporter --file=roster.csv [--option=value ...]
+//   --chunkSize=1000                 students per lookup, batch and commit
+//   --threads=<cores>                hashing threads
+//   --dryRun=false
+public class RosterImporter {
+
+    private static final int MAX_ID_LENGTH = 20;
+    private static final int MAX_USERNAME_LENGTH = 50;
+    private static final int MAX_NAME_LENGTH = 100;
+    private static final int MAX_REPORTED_ERRORS = 50;
+
+    private final DatabaseManager dbManager;
+    private final int chunkSize;
+    private final int threads;
+    private final boolean dryRun;
+
+    // Usernames and ids seen earlier in the file; a few MB for 100k students
+    private final Set<String> seenUsernames = new HashSet<>();
+    private final Set<String> seenIds = new HashSet<>();
+
+    private long read;
+    private long inserted;
+    private long existing;
+    private long rejected;
+    private final List<String> errors = new ArrayList<>();
+
+    private static class Student {
+
+        final long line;
+        final String id;
+        final String username;
+        final String name;
+        String password;
+
+        Student(long line, String id, String username, String password, String name) {
+            this.line = line;
+            this.id = id;
+            this.username = username;
+            this.password = password;
+            this.name = name;
+        }
+    }
+
+    public RosterImporter(int chunkSize, int threads, boolean dryRun) {
+        this.dbManager = DatabaseManager.getInstance();
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.dryRun = dryRun;
+    }
+
+    public void run(String file) throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        long lastPrint = start;
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService hashers = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "roster-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Connection conn = null;
+
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 64 * 1024)) {
+            CsvRowReader rows = new CsvRowReader(in);
+            int[] columns = readHeader(rows.nextRow());
+
+            conn = dbManager.getConnection();
+            conn.setAutoCommit(false);
+
+            // Hashed chunks waiting to be inserted, oldest first
+            ArrayDeque<Future<List<Student>>> pending = new ArrayDeque<>();
+            List<Student> chunk = new ArrayList<>(chunkSize);
+            List<String> row;
+            while ((row = rows.nextRow()) != null) {
+                read++;
+                Student student = parse(rows.getRowLine(), row, columns);
+                if (student != null) {
+                    chunk.add(student);
+                }
+                if (chunk.size() == chunkSize) {
+                    pending.addLast(hash(hashers, withoutExisting(conn, chunk)));
+                    chunk = new ArrayList<>(chunkSize);
+                    if (pending.size() > 1) {
+                        insert(conn, await(pending.pollFirst()));
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastPrint >= 1000) {
+                    lastPrint = now;
+                    System.out.println(report(now - start));
+                }
+            }
+            if (!chunk.isEmpty()) {
+                pending.addLast(hash(hashers, withoutExisting(conn, chunk)));
+            }
+            while (!pending.isEmpty()) {
+                insert(conn, await(pending.pollFirst()));
+            }
+
+            for (String error : errors) {
+                System.out.println("  rejected: " + error);
+            }
+            if (rejected > errors.size()) {
+                System.out.println(String.format(Locale.ROOT, "  ... and %,d more", rejected - errors.size()));
+            }
+            System.out.println((dryRun ? "Dry run done: " : "Done: ") + report(System.currentTimeMillis() - start));
+        } catch (SQLException e) {
+            if (conn != null) {
+                conn.rollback();
+            }
+            throw new SQLException("Import stopped after " + inserted + " students: " + e.getMessage(), e);
+        } finally {
+            hashers.shutdownNow();
+            if (conn != null) {
+                conn.setAutoCommit(true);
+            }
+            dbManager.closeResources(conn, null, null);
+        }
+    }
+
+    // Column index of id, username, password and name
+    private static int[] readHeader(List<String> header) throws IOException {
+        if (header == null) {
+            throw new IOException("Empty roster file");
+        }
+        String[] names = {"id", "username", "password", "name"};
+        int[] columns = {-1, -1, -1, -1};
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase(Locale.ROOT);
+            for (int c = 0; c < names.length; c++) {
+                if (names[c].equals(name)) {
+                    columns[c] = i;
+                }
+            }
+        }
+        for (int c = 0; c < names.length; c++) {
+            if (columns[c] < 0) {
+                throw new IOException("Roster header has no " + names[c] + " column, found " + header);
+            }
+        }
+        return columns;
+    }
+
+    private Student parse(long line, List<String> row, int[] columns) {
+        String id = field(row, columns[0]);
+        String username = field(row, columns[1]);
+        String password = row.size() > columns[2] ? row.get(columns[2]) : "";
+        String name = field(row, columns[3]);
+
+        String error = null;
+        if (id.isEmpty() || id.length() > MAX_ID_LENGTH) {
+            error = "id must have 1 to " + MAX_ID_LENGTH + " characters";
+        } else if (username.isEmpty() || username.length() > MAX_USERNAME_LENGTH) {
+            error = "username must have 1 to " + MAX_USERNAME_LENGTH + " characters";
+        } else if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+            error = "name must have 1 to " + MAX_NAME_LENGTH + " characters";
+        } else if (password.isEmpty()) {
+            error = "password is empty";
+        } else if (seenUsernames.contains(username)) {
+            error = "username " + username + " appears earlier in the file";
+        } else if (seenIds.contains(id)) {
+            error = "id " + id + " appears earlier in the file";
+        }
+        if (error != null) {
+            reject("Line " + line + ": " + error);
+            return null;
+        }
+        // Only accepted rows claim their username and id
+        seenUsernames.add(username);
+        seenIds.add(id);
+        return new Student(line, id, username, password, name);
+    }
+
+    private static String field(List<String> row, int column) {
+        return column < row.size() ? row.get(column).trim() : "";
+    }
+
+    // Drops students whose username or id is already taken, with one query per key
+    private List<Student> withoutExisting(Connection conn, List<Student> chunk) throws SQLException {
+        List<String> usernames = new ArrayList<>(chunk.size());
+        List<String> ids = new ArrayList<>(chunk.size());
+        for (Student student : chunk) {
+            usernames.add(student.username);
+            ids.add(student.id);
+        }
+        Set<String> takenUsernames = existing(conn, "username", usernames);
+        Set<String> takenIds = existing(conn, "id", ids);
+
+        List<Student> fresh = new ArrayList<>(chunk.size());
+        for (Student student : chunk) {
+            if (takenUsernames.contains(student.username)) {
+                existing++;
+            } else if (takenIds.contains(student.id)) {
+                reject("Line " + student.line + ": id " + student.id + " belongs to another username");
+            } else {
+                fresh.add(student);
+            }
+        }
+        return fresh;
+    }
+
+    private static Set<String> existing(Connection conn, String column, List<String> values) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ").append(column).append(" FROM students WHERE ")
+                .append(column).append(" IN (");
+        for (int i = 0; i < values.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(')');
+
+        Set<String> found = new HashSet<>();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < values.size(); i++) {
+                stmt.setString(i + 1, values.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    found.add(rs.getString(1));
+                }
+            }
+        }
+        return found;
+    }
+
+    // Hashes the chunk's passwords in parallel; the future completes when all are done
+    private Future<List<Student>> hash(ExecutorService hashers, List<Student> students) {
+        int slices = Math.max(1, Math.min(threads, students.size()));
+        List<Future<?>> parts = new ArrayList<>(slices);
+        for (int s = 0; s < slices; s++) {
+            int from = students.size() * s / slices;
+            int to = students.size() * (s + 1) / slices;
+            parts.add(hashers.submit(() -> {
+                for (Student student : students.subList(from, to)) {
+                    student.password = PasswordHasher.hash(student.password);
+                }
+            }));
+        }
+        return new ChunkFuture(students, parts);
+    }
+
+    private static List<Student> await(Future<List<Student>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Hashing failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private void insert(Connection conn, List<Student> students) throws SQLException {
+        if (!dryRun && !students.isEmpty()) {
+            String sql = "INSERT INTO students (id, username, password, name) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Student student : students) {
+                    stmt.setString(1, student.id);
+                    stmt.setString(2, student.username);
+                    stmt.setString(3, student.password);
+                    stmt.setString(4, student.name);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            conn.commit();
+        }
+        inserted += students.size();
+    }
+
+    private void reject(String error) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    private String report(long elapsedMillis) {
+        double seconds = Math.max(0.001, elapsedMillis / 1000.0);
+        return String.format("%,d read, %,d %s, %,d already exist, %,d rejected in %.1f s (%,.0f students/s)",
+                read, inserted, dryRun ? "would be inserted" : "inserted", existing, rejected, seconds,
+                inserted / seconds);
+    }
+
+    // Completes when every slice of a chunk has been hashed
+    private static class ChunkFuture implements Future<List<Student>> {
+
+        private final List<Student> students;
+        private final List<Future<?>> parts;
+
+        ChunkFuture(List<Student> students, List<Future<?>> parts) {
+            this.students = students;
+            this.parts = parts;
+        }
+
+        @Override
+        public List<Student> get() throws InterruptedException, ExecutionException {
+            for (Future<?> part : parts) {
+                part.get();
+            }
+            return students;
+        }
+
+        @Override
+        public List<Student> get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException {
+            return get();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = false;
+            for (Future<?> part : parts) {
+                cancelled |= part.cancel(mayInterruptIfRunning);
+            }
+            return cancelled;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return parts.stream().anyMatch(Future::isCancelled);
+        }
+
+        @Override
+        public boolean isDone() {
+            return parts.stream().allMatch(Future::isDone);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        String file = options.get("file");
+        if (file == null) {
+            System.err.println("Usage: server.RosterImporter --file=roster.csv [--chunkSize=1000] [--threads=<n>] "
+                    + "[--dryRun=true]");
+            System.exit(2);
+        }
+        boolean dryRun = Boolean.parseBoolean(options.getOrDefault("dryRun", "false"));
+        System.out.println((dryRun ? "Checking " : "Importing ") + file + " into the "
+                + DatabaseManager.getProfile() + " database");
+        new RosterImporter(Integer.parseInt(options.getOrDefault("chunkSize", "1000")),
+                Integer.parseInt(options.getOrDefault("threads",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                dryRun).run(file);
+    }
+}
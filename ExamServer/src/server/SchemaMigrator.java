@@ -0,0 +1,104 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Applies the versioned SQL scripts under server/migrations in order and
+// records each one in schema_version, so every script runs exactly once per
+// database. Scripts are never edited after release; schema changes go into a
+// new version appended to MIGRATIONS.
+public class SchemaMigrator {
+
+    private static final String[] MIGRATIONS = {
+        "V1__baseline.sql",
+        "V2__hot_query_indexes.sql",
+        "V3__replication_heartbeat.sql",
+        "V4__exam_sessions.sql",
+        "V5__exam_schedule.sql",
+        "V6__question_pools.sql",
+        "V7__submission_keys.sql",
+        "V8__session_pool_cutoff.sql"
+    };
+
+    private final DatabaseManager dbManager;
+
+    public SchemaMigrator(DatabaseManager dbManager) {
+        this.dbManager = dbManager;
+    }
+
+    // Bring the schema up to the latest version; returns the number of migrations applied
+    public int migrate() throws SQLException, IOException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        int applied = 0;
+
+        try {
+            conn = dbManager.getConnection();
+            try (Statement create = conn.createStatement()) {
+                create.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INT NOT NULL PRIMARY KEY, "
+                        + "script VARCHAR(200) NOT NULL, "
+                        + "installed_on TIMESTAMP NOT NULL)");
+            }
+
+            stmt = conn.prepareStatement("SELECT MAX(version) FROM schema_version");
+            rs = stmt.executeQuery();
+            int current = rs.next() ? rs.getInt(1) : 0;
+            dbManager.closeResources(null, stmt, rs);
+            rs = null;
+
+            for (int version = current + 1; version <= MIGRATIONS.length; version++) {
+                String script = MIGRATIONS[version - 1];
+                System.out.println("Applying schema migration " + script);
+                runScript(conn, "migrations/" + script);
+
+                stmt = conn.prepareStatement(
+                        "INSERT INTO schema_version (version, script, installed_on) VALUES (?, ?, NOW())");
+                stmt.setInt(1, version);
+                stmt.setString(2, script);
+                stmt.executeUpdate();
+                dbManager.closeResources(null, stmt, null);
+                applied++;
+            }
+            stmt = null;
+            return applied;
+        } finally {
+            dbManager.closeResources(conn, stmt, rs);
+        }
+    }
+
+    // Run a semicolon-separated SQL script from the classpath; lines starting with -- are comments.
+    // MySQL commits DDL implicitly, so a failed script is not rolled back and has to be fixed by hand.
+    private void runScript(Connection conn, String resource) throws SQLException, IOException {
+        InputStream in = SchemaMigrator.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("SQL script not found: " + resource);
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                Statement stmt = conn.createStatement()) {
+            StringBuilder sql = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+                    continue;
+                }
+                sql.append(line).append('\n');
+                if (trimmed.endsWith(";")) {
+                    stmt.execute(sql.substring(0, sql.lastIndexOf(";")));
+                    sql.setLength(0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.Deflater;
+import shared.CompressingSocketFactory;
+import shared.Answer;
+import shared.Exam;
+import shared.ExamResult;
+import shared.Question;
+
+// Microbenchmarks for the shared model and the server hot paths.
+//
+// Usage: java -cp ExamServer.jar server.ServerBenchmarks [name-filter]
+public class ServerBenchmarks {
+
+    private static final Random RANDOM = new Random(7);
+    // Per-student share of a busy lab uplink, a classroom network and a LAN
+    private static final int[] LINK_MBPS = {2, 10, 100};
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        Microbenchmark bench = new Microbenchmark(3, 5, 1000);
+
+        // Serialization of the RMI payloads
+        for (int questionCount : new int[]{50, 300}) {
+            Exam exam = sampleExam(questionCount, 5);
+            byte[] bytes = serialize(exam);
+            System.out.println("Exam with " + questionCount + " questions: " + bytes.length + " bytes serialized");
+            if (matches(filter, "serialize")) {
+                bench.run("serialize Exam " + questionCount + "q", 1, () -> serialize(exam));
+                bench.run("deserialize Exam " + questionCount + "q", 1, () -> deserialize(bytes));
+            }
+        }
+
+        List<Answer> answers = sampleAnswers(sampleExam(300, 5));
+        ArrayList<ExamResult> results = sampleResults(500);
+        if (matches(filter, "serialize")) {
+            byte[] answerBytes = serialize(new ArrayList<>(answers));
+            byte[] resultBytes = serialize(results);
+            bench.run("serialize 300 Answers", 1, () -> serialize(new ArrayList<>(answers)));
+            bench.run("deserialize 300 Answers", 1, () -> deserialize(answerBytes));
+            bench.run("serialize 500 ExamResults", 1, () -> serialize(results));
+            bench.run("deserialize 500 ExamResults", 1, () -> deserialize(resultBytes));
+        }
+
+        // Scoring loop of submitExam
+        if (matches(filter, "score")) {
+            Exam exam = sampleExam(300, 5);
+            bench.run("AnswerKey build 300q", 1, () -> answerKey(exam));
+            AnswerKey key = answerKey(exam);
+            List<Answer> examAnswers = sampleAnswers(exam);
+            bench.run("AnswerKey score 300q", 1, () -> key.score(examAnswers));
+        }
+
+        // Exam assembly from result sets
+        if (matches(filter, "rows")) {
+            List<Map<String, Object>> examRows = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                examRows.add(examRow(i));
+            }
+            List<Map<String, Object>> questionRows = new ArrayList<>();
+            for (int i = 0; i < 300; i++) {
+                questionRows.add(questionRow(i));
+            }
+            List<String> options = sampleOptions(5);
+            bench.run("ExamRows.readExam 200 rows", 1, () -> {
+                ResultSet rs = resultSet(examRows);
+                List<Exam> exams = new ArrayList<>();
+                while (rs.next()) {
+                    exams.add(ExamRows.readExam(rs));
+                }
+                return exams;
+            });
+            bench.run("ExamRows.readQuestion 300 rows", 1, () -> {
+                ResultSet rs = resultSet(questionRows);
+                List<Question> questions = new ArrayList<>();
+                while (rs.next()) {
+                    questions.add(ExamRows.readQuestion(rs, options));
+                }
+                return questions;
+            });
+        }
+
+        // Compressed RMI frames: wire bytes and CPU per payload, and the time to
+        // send a payload over a slow lab link with and without compression.
+        // The sample text repeats a small vocabulary, so it compresses better
+        // than real question text.
+        if (matches(filter, "compress")) {
+            Map<String, byte[]> payloads = new LinkedHashMap<>();
+            payloads.put("Exam 50q", serialize(sampleExam(50, 5)));
+            payloads.put("Exam 300q", serialize(sampleExam(300, 5)));
+            payloads.put("500 ExamResults", serialize(results));
+            payloads.put("300 Answers", serialize(new ArrayList<>(answers)));
+            for (int level : new int[]{Deflater.BEST_SPEED, Deflater.DEFAULT_COMPRESSION}) {
+                for (Map.Entry<String, byte[]> payload : payloads.entrySet()) {
+                    String name = payload.getKey() + " level " + level;
+                    byte[] bytes = payload.getValue();
+                    byte[] wire = frame(bytes, level);
+                    if (!Arrays.equals(bytes, unframe(wire))) {
+                        throw new IllegalStateException("Frames of " + name + " do not round trip");
+                    }
+                    System.out.println(String.format("%s: %d bytes, %d on the wire (%.1f%%)",
+                            name, bytes.length, wire.length, 100.0 * wire.length / bytes.length));
+                    double deflateNanos = bench.run("deflate " + name, 1, () -> frame(bytes, level));
+                    double inflateNanos = bench.run("inflate " + name, 1, () -> unframe(wire));
+                    for (int mbps : LINK_MBPS) {
+                        double plainMillis = bytes.length * 8.0 / (mbps * 1000.0);
+                        double compressedMillis = wire.length * 8.0 / (mbps * 1000.0) + (deflateNanos + inflateNanos) / 1e6;
+                        System.out.println(String.format("  %3d Mbit/s: %8.2f ms plain, %8.2f ms compressed",
+                                mbps, plainMillis, compressedMillis));
+                    }
+                }
+            }
+        }
+
+        // Active session formatting and the session map
+        if (matches(filter, "sessions")) {
+            Map<String, ExamServiceImpl.ActiveExamSession> sessions = new ConcurrentHashMap<>();
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < 1000; i++) {
+                sessions.put("S" + i + "-1", new ExamServiceImpl.ActiveExamSession(1, "S" + i, now, 3_600_000, 0));
+            }
+            bench.run("getActiveSessions format 1000", 1, () -> {
+                SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                List<ActiveSessionDisplay> displays = new ArrayList<>();
+                for (ExamServiceImpl.ActiveExamSession session : sessions.values()) {
+                    displays.add(session.toDisplay("Exam", now, dateFormat));
+                }
+                return displays;
+            });
+
+            for (int threads : new int[]{1, 4, 16}) {
+                bench.run("session map put/remove", threads, () -> {
+                    String key = "S" + ThreadLocalRandom.current().nextInt(100_000) + "-1";
+                    sessions.put(key, new ExamServiceImpl.ActiveExamSession(1, key, now, 3_600_000, 0));
+                    return sessions.remove(key);
+                });
+            }
+            bench.run("session map iterate while 3 writers", 4, () -> {
+                if (ThreadLocalRandom.current().nextInt(4) == 0) {
+                    int size = 0;
+                    for (ExamServiceImpl.ActiveExamSession session : sessions.values()) {
+                        size += session.getExamId();
+                    }
+                    return size;
+                }
+                String key = "S" + ThreadLocalRandom.current().nextInt(100_000) + "-2";
+                sessions.put(key, new ExamServiceImpl.ActiveExamSession(2, key, now, 3_600_000, 0));
+                return sessions.remove(key);
+            });
+        }
+    }
+
+    private static byte[] frame(byte[] payload, int level) throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream(payload.length + 64);
+        CompressingSocketFactory.FrameOutputStream out = new CompressingSocketFactory.FrameOutputStream(wire, 512, level);
+        out.write(payload);
+        out.flush();
+        return wire.toByteArray();
+    }
+
+    private static byte[] unframe(byte[] wire) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(wire.length * 4);
+        CompressingSocketFactory.FrameInputStream in = new CompressingSocketFactory.FrameInputStream(
+                new ByteArrayInputStream(wire));
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            payload.write(buffer, 0, read);
+        }
+        return payload.toByteArray();
+    }
+
+    private static boolean matches(String filter, String group) {
+        return filter.isEmpty() || group.contains(filter) || filter.contains(group);
+    }
+
+    private static AnswerKey answerKey(Exam exam) {
+        AnswerKey.Builder builder = new AnswerKey.Builder();
+        for (Question question : exam.getQuestions()) {
+            builder.add(question.getId(), question.getCorrectOptionIndex(), question.getPoints());
+        }
+        return builder.build();
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    // Exam with question text of typical length (~200 characters)
+    static Exam sampleExam(int questionCount, int optionCount) {
+        Exam exam = new Exam(1, "Midterm Examination", sampleText(120), 90, false);
+        List<Question> questions = new ArrayList<>();
+        for (int i = 0; i < questionCount; i++) {
+            questions.add(new Question(1000 + i, sampleText(200), sampleOptions(optionCount),
+                    RANDOM.nextInt(optionCount), 1 + RANDOM.nextInt(3)));
+        }
+        exam.setQuestions(questions);
+        return exam;
+    }
+
+    private static List<Answer> sampleAnswers(Exam exam) {
+        List<Answer> answers = new ArrayList<>();
+        for (Question question : exam.getQuestions()) {
+            answers.add(new Answer(question.getId(), RANDOM.nextInt(question.getOptions().size())));
+        }
+        return answers;
+    }
+
+    private static ArrayList<ExamResult> sampleResults(int count) {
+        ArrayList<ExamResult> results = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ExamResult result = new ExamResult(i, 1, "S" + i, "Student Name " + i,
+                    RANDOM.nextInt(100), 100, new java.util.Date());
+            result.setExamTitle("Midterm Examination");
+            results.add(result);
+        }
+        return results;
+    }
+
+    private static List<String> sampleOptions(int count) {
+        List<String> options = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            options.add(sampleText(40));
+        }
+        return options;
+    }
+
+    private static String sampleText(int length) {
+        String[] words = {"the", "exam", "question", "answer", "which", "following", "correct",
+            "process", "system", "value", "function", "describe", "network", "memory"};
+        StringBuilder text = new StringBuilder();
+        while (text.length() < length) {
+            text.append(words[RANDOM.nextInt(words.length)]).append(' ');
+        }
+        return text.substring(0, length);
+    }
+
+    private static Map<String, Object> examRow(int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("title", "Exam " + id);
+        row.put("description", sampleText(120));
+        row.put("duration_minutes", 60);
+        row.put("results_visible", false);
+        row.put("active", true);
+        row.put("scheduled_start", 0L);
+        row.put("pool_id", 0);
+        row.put("pool_draw_count", 0);
+        return row;
+    }
+
+    private static Map<String, Object> questionRow(int id) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", id);
+        row.put("text", sampleText(200));
+        row.put("correct_option", 2);
+        row.put("points", 1);
+        return row;
+    }
+
+    // Forward-only result set over in-memory rows, enough for the row mappers
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        int[] position = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++position[0] < rows.size();
+                        case "getInt":
+                            return (Integer) rows.get(position[0]).get((String) args[0]);
+                        case "getLong":
+                            return (Long) rows.get(position[0]).get((String) args[0]);
+                        case "getBoolean":
+                            return (Boolean) rows.get(position[0]).get((String) args[0]);
+                        case "getString":
+                            return (String) rows.get(position[0]).get((String) args[0]);
+                        case "getTimestamp":
+                            return (Timestamp) rows.get(position[0]).get((String) args[0]);
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -1,14 +1,22 @@
 package server;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -20,12 +28,17 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import shared.Exam;
 import shared.ExamResult;
 
-public class ServerMainController implements Initializable {
+public class ServerMainController implements Initializable, ExamServiceListener {
+
+    // Lines kept in the log view; older lines are only in the log file
+    private static final int MAX_LOG_LINES = 2000;
 
     @FXML
     private Label statusLabel;
@@ -73,19 +86,56 @@ public class ServerMainController implements Initializable {
     private TableColumn<ActiveSessionDisplay, String> sessionStartTimeColumn;
     @FXML
     private TableColumn<ActiveSessionDisplay, String> sessionTimeRemainingColumn;
+    @FXML
+    private Label admissionLabel;
 
     @FXML
-    private TextArea logTextArea;
+    private TableView<MethodStatsDisplay> metricsTable;
+    @FXML
+    private TableColumn<MethodStatsDisplay, String> metricsMethodColumn;
+    @FXML
+    private TableColumn<MethodStatsDisplay, Long> metricsCallsColumn;
+    @FXML
+    private TableColumn<MethodStatsDisplay, Long> metricsErrorsColumn;
+    @FXML
+    private TableColumn<MethodStatsDisplay, Long> metricsRejectedColumn;
+    @FXML
+    private TableColumn<MethodStatsDisplay, Long> metricsInFlightColumn;
+    @FXML
+    private TableColumn<MethodStatsDisplay, String> metricsP50Column;
+    @FXML
+    private TableColumn<MethodStatsDisplay, String> metricsP95Column;
+    @FXML
+    private TableColumn<MethodStatsDisplay, String> metricsP99Column;
+    @FXML
+    private TableColumn<MethodStatsDisplay, String> metricsMaxColumn;
+    @FXML
+    private TableColumn<MethodStatsDisplay, String> metricsDbPercentColumn;
+    @FXML
+    private Label metricsSummaryLabel;
+
+    @FXML
+    private ListView<String> logListView;
+    @FXML
+    private Label droppedLogLabel;
 
     private ExamServiceImpl examService;
-    private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     private String loggedInTeacher;
     private DatabaseManager dbManager;
+    private ActivityLog activityLog;
+    private ActivityLog.Listener logListener;
+    private Timeline refreshTimer;
+    private final AtomicBoolean sessionsRefreshPending = new AtomicBoolean();
 
     @Override
     public void initialize(URL url, ResourceBundle rb) {
         // Initialize database manager
-        dbManager = new DatabaseManager();
+        dbManager = DatabaseManager.getInstance();
+
+        // Receive log lines in batches from the activity log thread
+        activityLog = ActivityLog.getDefault();
+        logListener = this::appendLogLines;
+        activityLog.addListener(logListener);
 
         // Initialize table columns
         examIdColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
@@ -108,32 +158,54 @@ public class ServerMainController implements Initializable {
         sessionStartTimeColumn.setCellValueFactory(new PropertyValueFactory<>("startTime"));
         sessionTimeRemainingColumn.setCellValueFactory(new PropertyValueFactory<>("timeRemaining"));
 
+        metricsMethodColumn.setCellValueFactory(new PropertyValueFactory<>("method"));
+        metricsCallsColumn.setCellValueFactory(new PropertyValueFactory<>("calls"));
+        metricsErrorsColumn.setCellValueFactory(new PropertyValueFactory<>("errors"));
+        metricsRejectedColumn.setCellValueFactory(new PropertyValueFactory<>("rejected"));
+        metricsInFlightColumn.setCellValueFactory(new PropertyValueFactory<>("inFlight"));
+        metricsP50Column.setCellValueFactory(new PropertyValueFactory<>("p50"));
+        metricsP95Column.setCellValueFactory(new PropertyValueFactory<>("p95"));
+        metricsP99Column.setCellValueFactory(new PropertyValueFactory<>("p99"));
+        metricsMaxColumn.setCellValueFactory(new PropertyValueFactory<>("max"));
+        metricsDbPercentColumn.setCellValueFactory(new PropertyValueFactory<>("dbPercent"));
+
         // Log server start
         logActivity("Server started");
 
-        // Set up a timer to refresh active sessions every 5 seconds
-        new Thread(() -> {
-            while (true) {
-                try {
-                    Thread.sleep(5000); // 5 seconds
-                    Platform.runLater(() -> {
-                        if (examService != null) {
-                            refreshSessions();
-                        }
-                    });
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+        // Sessions are refreshed when they change; the timer only keeps the
+        // remaining time and the metrics current
+        refreshTimer = new Timeline(new KeyFrame(Duration.seconds(5), e -> {
+            if (examService != null) {
+                refreshSessions();
             }
-        }).start();
+            refreshMetrics();
+        }));
+        refreshTimer.setCycleCount(Animation.INDEFINITE);
+        refreshTimer.play();
     }
 
     public void setExamService(ExamServiceImpl examService) {
         this.examService = examService;
+        examService.addListener(this);
         refreshExams();
     }
 
+    @Override
+    public void examsChanged() {
+        Platform.runLater(this::refreshExams);
+    }
+
+    // A burst of starts and submissions refreshes the table once
+    @Override
+    public void sessionsChanged() {
+        if (sessionsRefreshPending.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                sessionsRefreshPending.set(false);
+                refreshSessions();
+            });
+        }
+    }
+
     public void setLoggedInTeacher(String username) {
         this.loggedInTeacher = username;
         logActivity("Teacher " + username + " logged in");
@@ -141,9 +213,21 @@ public class ServerMainController implements Initializable {
     }
 
     public void logActivity(String message) {
+        activityLog.log(message);
+    }
+
+    private void appendLogLines(List<String> lines, long droppedTotal) {
         Platform.runLater(() -> {
-            String timestamp = timeFormat.format(new Date());
-            logTextArea.appendText("[" + timestamp + "] " + message + "\n");
+            ObservableList<String> items = logListView.getItems();
+            items.addAll(lines);
+            if (items.size() > MAX_LOG_LINES) {
+                items.remove(0, items.size() - MAX_LOG_LINES);
+            }
+            logListView.scrollTo(items.size() - 1);
+
+            if (droppedTotal > 0) {
+                droppedLogLabel.setText("Dropped messages: " + droppedTotal);
+            }
         });
     }
 
@@ -222,13 +306,7 @@ public class ServerMainController implements Initializable {
                 throw new Exception("Exam not found");
             }
 
-            Exam exam = new Exam(
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("description"),
-                    rs.getInt("duration_minutes"),
-                    rs.getBoolean("results_visible")
-            );
+            Exam exam = ExamRows.readExam(rs);
 
             // Get questions
             dbManager.closeResources(null, stmt, rs);
@@ -316,6 +394,104 @@ public class ServerMainController implements Initializable {
         }
     }
 
+    // Imports a CSV or JSON question bank into the selected exam, or when none is
+    // selected into a new exam or a question pool. Runs in the background; progress
+    // goes to the log.
+    @FXML
+    private void handleImportQuestions(ActionEvent event) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Questions");
+        chooser.getExtensionFilters().add(
+                new FileChooser.ExtensionFilter("Question banks (*.csv, *.json)", "*.csv", "*.json"));
+        File file = chooser.showOpenDialog(examsTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        Exam selectedExam = examsTable.getSelectionModel().getSelectedItem();
+        int examId;
+        String newTitle = null;
+        String pool = null;
+        if (selectedExam != null) {
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+            alert.setTitle("Import Questions");
+            alert.setHeaderText("Add questions to " + selectedExam.getTitle());
+            alert.setContentText("The questions in " + file.getName() + " will be added to the selected exam.");
+            if (alert.showAndWait().get() != ButtonType.OK) {
+                return;
+            }
+            examId = selectedExam.getId();
+        } else {
+            ChoiceDialog<String> target = new ChoiceDialog<>("New exam", "New exam", "Question pool");
+            target.setTitle("Import Questions");
+            target.setHeaderText("No exam selected: import into a new exam or a question pool");
+            target.setContentText("Import into:");
+            Optional<String> choice = target.showAndWait();
+            if (!choice.isPresent()) {
+                return;
+            }
+            boolean intoPool = choice.get().equals("Question pool");
+
+            TextInputDialog dialog = new TextInputDialog(file.getName().replaceFirst("\\.[^.]*$", ""));
+            dialog.setTitle("Import Questions");
+            dialog.setHeaderText(intoPool ? "Add to the question pool (created if it does not exist)"
+                    : "Create a new exam");
+            dialog.setContentText(intoPool ? "Pool name:" : "Exam title:");
+            Optional<String> name = dialog.showAndWait();
+            if (!name.isPresent() || name.get().trim().isEmpty()) {
+                return;
+            }
+            examId = 0;
+            if (intoPool) {
+                pool = name.get().trim();
+            } else {
+                newTitle = name.get().trim();
+            }
+        }
+
+        String examTitle = newTitle;
+        String poolName = pool;
+        logActivity("Importing questions from " + file.getName());
+        Thread importThread = new Thread(() -> {
+            QuestionImporter importer = new QuestionImporter(500, Runtime.getRuntime().availableProcessors(), false);
+            long[] lastLog = {0};
+            try (InputStream in = new FileInputStream(file);
+                    QuestionReader reader = QuestionReader.open(in, null, file.getName())) {
+                Consumer<QuestionImporter.Result> progress = current -> {
+                    long now = System.currentTimeMillis();
+                    if (now - lastLog[0] >= 1000) {
+                        lastLog[0] = now;
+                        logActivity("Import of " + file.getName() + ": " + current);
+                    }
+                };
+                QuestionImporter.Result result;
+                if (poolName != null) {
+                    result = importer.importIntoPool(reader, poolName, progress);
+                    examService.poolQuestionsImported(result.getPoolId());
+                    logActivity("Imported " + file.getName() + " into pool " + poolName + ": " + result);
+                } else {
+                    result = importer.importQuestions(reader, examId, examTitle, 60, progress);
+                    examService.questionsImported(result.getExamId(), examTitle != null);
+                    logActivity("Imported " + file.getName() + " into exam " + result.getExamId() + ": " + result);
+                }
+                for (String error : result.getErrors()) {
+                    logActivity("  rejected: " + error);
+                }
+                Platform.runLater(() -> showAlert(Alert.AlertType.INFORMATION, "Import Questions",
+                        "Import complete", result.toString()));
+            } catch (Exception e) {
+                logActivity("Error importing questions: " + e.getMessage());
+                if (examId != 0) {
+                    examService.questionsImported(examId, false);
+                }
+                Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "Could not import questions",
+                        e.getMessage()));
+            }
+        }, "question-import");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
+
     @FXML
     private void handleRefreshExams(ActionEvent event) {
         refreshExams();
@@ -352,6 +528,56 @@ public class ServerMainController implements Initializable {
         }
     }
 
+    // Streams the results of the selected exam to a CSV file in the background
+    @FXML
+    private void handleExportResults(ActionEvent event) {
+        Exam selectedExam = examSelector.getValue();
+        if (selectedExam == null) {
+            showAlert(Alert.AlertType.WARNING, "No Selection", "No Exam Selected",
+                    "Please select an exam to export results for.");
+            return;
+        }
+
+        ButtonType resultsOnly = new ButtonType("Results Only");
+        ButtonType withAnswers = new ButtonType("With Answers");
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, "", resultsOnly, withAnswers, ButtonType.CANCEL);
+        alert.setTitle("Export Results");
+        alert.setHeaderText("Export results of " + selectedExam.getTitle());
+        alert.setContentText("With Answers adds one column per question with the option each student chose.");
+        Optional<ButtonType> choice = alert.showAndWait();
+        if (!choice.isPresent() || choice.get() == ButtonType.CANCEL) {
+            return;
+        }
+        boolean answers = choice.get() == withAnswers;
+
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Export Results");
+        chooser.setInitialFileName("results-" + selectedExam.getId() + ".csv");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files (*.csv)", "*.csv"));
+        File file = chooser.showSaveDialog(resultsTable.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+
+        logActivity("Exporting results of exam " + selectedExam.getId() + " to " + file.getName());
+        Thread exportThread = new Thread(() -> {
+            try {
+                ResultsExporter.Stats stats = new ResultsExporter().export(selectedExam.getId(), file.toPath(),
+                        answers, rows -> logActivity("Export of exam " + selectedExam.getId() + ": " + rows
+                                + " results written"));
+                logActivity("Exported results of exam " + selectedExam.getId() + ": " + stats);
+                Platform.runLater(() -> showAlert(Alert.AlertType.INFORMATION, "Export Results",
+                        "Export complete", stats.toString()));
+            } catch (Exception e) {
+                logActivity("Error exporting results: " + e.getMessage());
+                Platform.runLater(() -> showAlert(Alert.AlertType.ERROR, "Error", "Could not export results",
+                        e.getMessage()));
+            }
+        }, "results-export");
+        exportThread.setDaemon(true);
+        exportThread.start();
+    }
+
     @FXML
     private void handleRefreshResults(ActionEvent event) {
         refreshResults();
@@ -364,17 +590,19 @@ public class ServerMainController implements Initializable {
 
     @FXML
     private void handleClearLog(ActionEvent event) {
-        logTextArea.clear();
+        logListView.getItems().clear();
         logActivity("Log cleared");
     }
 
     @FXML
     private void handleLogout(ActionEvent event) {
         try {
-            // Shutdown the thread pool
+            // Detach from the exam service; it keeps serving students
             if (examService != null) {
-                examService.shutdown();
+                examService.removeListener(this);
             }
+            activityLog.removeListener(logListener);
+            refreshTimer.stop();
 
             // Load the login screen
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/server/fxml/TeacherLogin.fxml"));
@@ -401,7 +629,7 @@ public class ServerMainController implements Initializable {
             ResultSet rs = null;
 
             try {
-                conn = dbManager.getConnection();
+                conn = dbManager.getReadConnection(DatabaseManager.EXAM_CONTENT);
                 // Modified SQL to get ALL exams, not just active ones
                 String sql = "SELECT * FROM exams ORDER BY id DESC";
 
@@ -411,15 +639,7 @@ public class ServerMainController implements Initializable {
                 ObservableList<Exam> exams = FXCollections.observableArrayList();
 
                 while (rs.next()) {
-                    Exam exam = new Exam(
-                            rs.getInt("id"),
-                            rs.getString("title"),
-                            rs.getString("description"),
-                            rs.getInt("duration_minutes"),
-                            rs.getBoolean("results_visible")
-                    );
-                    exam.setActive(rs.getBoolean("active"));
-                    exams.add(exam);
+                    exams.add(ExamRows.readExam(rs));
                 }
 
                 examsTable.setItems(exams);
@@ -459,7 +679,15 @@ public class ServerMainController implements Initializable {
                 List<ActiveSessionDisplay> sessions = examService.getActiveSessions();
                 sessionsTable.setItems(FXCollections.observableArrayList(sessions));
 
-                logActivity("Refreshed active sessions");
+                // Students queued at the start of scheduled exams
+                StringBuilder queues = new StringBuilder();
+                for (AdmissionController.QueueStatus queue : examService.getAdmissionQueues()) {
+                    queues.append(queues.length() > 0 ? "   " : "Admission: ").append(String.format(
+                            "exam %d: %d waiting (last in line ~%d s), %d admitted, longest wait %d s",
+                            queue.getExamId(), queue.getWaiting(), queue.getEstimatedWaitMillis() / 1000,
+                            queue.getAdmitted(), queue.getLongestWaitMillis() / 1000));
+                }
+                admissionLabel.setText(queues.toString());
             }
         } catch (Exception e) {
             logActivity("Error refreshing sessions: " + e.getMessage());
@@ -467,6 +695,26 @@ public class ServerMainController implements Initializable {
         }
     }
 
+    private void refreshMetrics() {
+        List<MethodStatsDisplay> rows = new ArrayList<>();
+        long rejected = 0;
+        for (MethodStats stats : ServiceMetrics.getInstance().getAllMethodStats()) {
+            rows.add(new MethodStatsDisplay(stats));
+            rejected += stats.getRejectedCount();
+        }
+        metricsTable.setItems(FXCollections.observableArrayList(rows));
+
+        MethodStats statements = ServiceMetrics.getInstance().getStatementStats();
+        metricsSummaryLabel.setText(String.format("SQL statements: %d executed, p95 %.2f ms, %d failed; "
+                + "%d calls rate limited", statements.getCount(), statements.getP95Millis(),
+                statements.getErrorCount(), rejected));
+    }
+
+    @FXML
+    private void handleRefreshMetrics(ActionEvent event) {
+        refreshMetrics();
+    }
+
     private void showAlert(Alert.AlertType type, String title, String header, String content) {
         Alert alert = new Alert(type);
         alert.setTitle(title);
@@ -0,0 +1,162 @@
+package server;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import shared.RemoteExamService;
+
+// Collects per-method latency and database time for the exam service and
+// publishes them as JMX MBeans (server:type=ExamService,method=<name>, plus
+// server:type=Database,name=statements for all SQL statements).
+//
+// Remote calls are timed by a proxy around the exported service; SQL
+// statements are timed by wrapping the connections handed out by
+// DatabaseManager and charged to the remote call running on the same thread.
+public class ServiceMetrics {
+
+    private static final ServiceMetrics INSTANCE = new ServiceMetrics();
+
+    private final Map<String, MethodStats> methods = new ConcurrentHashMap<>();
+    private final MethodStats statements = new MethodStats("SQL statements");
+    private final ThreadLocal<MethodStats> currentMethod = new ThreadLocal<>();
+
+    private ServiceMetrics() {
+        for (Method method : RemoteExamService.class.getMethods()) {
+            methods.computeIfAbsent(method.getName(), MethodStats::new);
+        }
+    }
+
+    public static ServiceMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    public MethodStats getMethodStats(String methodName) {
+        return methods.computeIfAbsent(methodName, MethodStats::new);
+    }
+
+    public MethodStats getStatementStats() {
+        return statements;
+    }
+
+    // Method stats ordered by name
+    public Collection<MethodStats> getAllMethodStats() {
+        return new TreeMap<>(methods).values();
+    }
+
+    public void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            for (MethodStats stats : methods.values()) {
+                ObjectName name = new ObjectName("server:type=ExamService,method=" + stats.getName());
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(stats, name);
+                }
+            }
+            ObjectName name = new ObjectName("server:type=Database,name=statements");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(statements, name);
+            }
+        } catch (Exception e) {
+            System.err.println("Error registering metrics MBeans: " + e.getMessage());
+        }
+    }
+
+    // Wrap the service so every remote call is timed
+    public RemoteExamService instrument(RemoteExamService service) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.invoke(service, args);
+            }
+
+            MethodStats stats = getMethodStats(method.getName());
+            MethodStats previous = currentMethod.get();
+            currentMethod.set(stats);
+            stats.begin();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = method.invoke(service, args);
+                failed = false;
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                stats.end(System.nanoTime() - start, failed);
+                currentMethod.set(previous);
+            }
+        };
+        return (RemoteExamService) Proxy.newProxyInstance(
+                RemoteExamService.class.getClassLoader(), new Class<?>[]{RemoteExamService.class}, handler);
+    }
+
+    // Wrap a connection so statement execution time is recorded
+    public Connection instrument(Connection connection) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            try {
+                Object result = method.invoke(connection, args);
+                if (result instanceof Statement) {
+                    return instrumentStatement((Statement) result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    private Statement instrumentStatement(Statement statement) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                try {
+                    return method.invoke(statement, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+
+            statements.begin();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = method.invoke(statement, args);
+                failed = false;
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                statements.end(elapsed, failed);
+                MethodStats owner = currentMethod.get();
+                if (owner != null) {
+                    owner.addDbTime(elapsed);
+                }
+            }
+        };
+
+        // Keep the most specific JDBC interface so casts in callers still work
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (Class<?> type : new Class<?>[]{java.sql.CallableStatement.class,
+            java.sql.PreparedStatement.class, Statement.class}) {
+            if (type.isInstance(statement)) {
+                interfaces.add(type);
+                break;
+            }
+        }
+        return (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(), interfaces.toArray(new Class<?>[0]), handler);
+    }
+}
@@ -25,7 +25,7 @@ public class TeacherLoginController {
     private DatabaseManager dbManager;
 
     public void initialize() {
-        dbManager = new DatabaseManager();
+        dbManager = DatabaseManager.getInstance();
     }
 
     @FXML
@@ -47,8 +47,11 @@ public class TeacherLoginController {
                 ServerMainController controller = loader.getController();
                 controller.setLoggedInTeacher(username);
 
-                // Create and start the exam service
-                ExamServiceImpl examService = new ExamServiceImpl(controller);
+                // Attach to the running exam service, starting it if launch failed to
+                ExamServiceImpl examService = ExamServerDaemon.getService();
+                if (examService == null) {
+                    examService = ExamServerDaemon.start();
+                }
                 controller.setExamService(examService);
 
                 // Get the current stage and set the new scene
@@ -56,9 +59,6 @@ public class TeacherLoginController {
                 stage.setTitle("Online Exam System - Server Admin");
                 stage.setScene(new Scene(root, 900, 600));
                 stage.centerOnScreen();
-
-                // Start the RMI service
-                ExamServer.startRMIService(examService);
             } else {
                 statusLabel.setText("Invalid username or password");
             }
@@ -74,15 +74,14 @@ public class TeacherLoginController {
         ResultSet rs = null;
 
         try {
-            conn = dbManager.getConnection();
-            String sql = "SELECT * FROM teachers WHERE username = ? AND password = ?";
+            conn = dbManager.getReadConnection(null);
+            String sql = "SELECT password FROM teachers WHERE username = ?";
 
             stmt = conn.prepareStatement(sql);
             stmt.setString(1, username);
-            stmt.setString(2, password); // In a real app, use password hashing
 
             rs = stmt.executeQuery();
-            return rs.next(); // Returns true if a matching teacher is found
+            return rs.next() && PasswordHasher.verify(password, rs.getString("password"));
         } catch (Exception e) {
             e.printStackTrace();
             return false;
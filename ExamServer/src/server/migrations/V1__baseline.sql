@@ -0,0 +1,72 @@
+-- Baseline schema: the tables as they existed before versioned migrations.
+-- CREATE TABLE IF NOT EXISTS leaves an existing hand-made database untouched.
+-- Migrations are written for MySQL and for H2 in MySQL mode.
+
+CREATE TABLE IF NOT EXISTS teachers (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    name VARCHAR(100),
+    UNIQUE KEY uk_teachers_username (username)
+);
+
+CREATE TABLE IF NOT EXISTS students (
+    id VARCHAR(20) NOT NULL PRIMARY KEY,
+    username VARCHAR(50) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    name VARCHAR(100) NOT NULL,
+    UNIQUE KEY uk_students_username (username)
+);
+
+CREATE TABLE IF NOT EXISTS exams (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    title VARCHAR(200) NOT NULL,
+    description TEXT,
+    duration_minutes INT NOT NULL,
+    results_visible BOOLEAN NOT NULL DEFAULT FALSE,
+    active BOOLEAN NOT NULL DEFAULT TRUE
+);
+
+CREATE TABLE IF NOT EXISTS questions (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    text TEXT NOT NULL,
+    correct_option INT NOT NULL,
+    points INT NOT NULL DEFAULT 1
+);
+
+CREATE TABLE IF NOT EXISTS question_options (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    question_id INT NOT NULL,
+    option_text TEXT NOT NULL,
+    option_order INT NOT NULL,
+    FOREIGN KEY (question_id) REFERENCES questions (id)
+);
+
+CREATE TABLE IF NOT EXISTS exam_questions (
+    exam_id INT NOT NULL,
+    question_id INT NOT NULL,
+    PRIMARY KEY (exam_id, question_id),
+    FOREIGN KEY (exam_id) REFERENCES exams (id),
+    FOREIGN KEY (question_id) REFERENCES questions (id)
+);
+
+CREATE TABLE IF NOT EXISTS exam_results (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    exam_id INT NOT NULL,
+    student_id VARCHAR(20) NOT NULL,
+    score INT NOT NULL,
+    total_possible INT NOT NULL,
+    submission_time TIMESTAMP NOT NULL,
+    FOREIGN KEY (exam_id) REFERENCES exams (id),
+    FOREIGN KEY (student_id) REFERENCES students (id)
+);
+
+CREATE TABLE IF NOT EXISTS student_answers (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    exam_id INT NOT NULL,
+    student_id VARCHAR(20) NOT NULL,
+    question_id INT NOT NULL,
+    selected_option INT NOT NULL,
+    FOREIGN KEY (exam_id) REFERENCES exams (id),
+    FOREIGN KEY (student_id) REFERENCES students (id)
+);
@@ -0,0 +1,34 @@
+-- Indexes for the access paths of ExamServiceImpl. Check plans with server.QueryPlanCheck.
+
+-- The old check-then-insert in submitExam could store a submission twice.
+-- Keep the first result of each student and exam, and for those students
+-- the first answer to each question, so the unique index below can be built.
+-- Both statements can be run again; the GROUP BY keeps MySQL from merging
+-- the derived tables into the DELETE (error 1093).
+DELETE FROM student_answers WHERE (exam_id, student_id) IN (
+        SELECT exam_id, student_id FROM (SELECT exam_id, student_id FROM exam_results
+            GROUP BY exam_id, student_id HAVING COUNT(*) > 1) duplicated)
+    AND id NOT IN (SELECT id FROM (SELECT MIN(id) AS id FROM student_answers
+            GROUP BY exam_id, student_id, question_id) first_answers);
+DELETE FROM exam_results WHERE id NOT IN (
+        SELECT id FROM (SELECT MIN(id) AS id FROM exam_results GROUP BY exam_id, student_id) first_results);
+
+-- One result per student and exam: submitExam relies on this key instead of
+-- checking for an existing row first. Also serves getExamResult, getExamResults
+-- and deleteExam.
+CREATE UNIQUE INDEX uk_exam_results_exam_student ON exam_results (exam_id, student_id);
+
+-- Results of one student (student dashboard, foreign key to students)
+CREATE INDEX idx_exam_results_student ON exam_results (student_id);
+
+-- Answers are written and deleted per exam, and read per exam and student
+CREATE INDEX idx_student_answers_exam_student ON student_answers (exam_id, student_id, question_id);
+
+-- Reverse lookup for question deletes; (exam_id, question_id) is the primary key
+CREATE INDEX idx_exam_questions_question ON exam_questions (question_id);
+
+-- Options of a question in display order
+CREATE INDEX idx_question_options_question ON question_options (question_id, option_order);
+
+-- The catalog loads the active exams
+CREATE INDEX idx_exams_active ON exams (active);
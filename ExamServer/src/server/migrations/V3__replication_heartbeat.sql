@@ -0,0 +1,7 @@
+-- Written on the primary by ReplicaRouter and read back from each replica to measure lag
+CREATE TABLE replication_heartbeat (
+    id INT NOT NULL PRIMARY KEY,
+    beat_millis BIGINT NOT NULL
+);
+
+INSERT INTO replication_heartbeat (id, beat_millis) VALUES (1, 0);
@@ -0,0 +1,9 @@
+-- Running exam sessions, so a restarted node or the node taking over an exam
+-- keeps each student's original start time. Rows are removed on submit.
+CREATE TABLE exam_sessions (
+    exam_id INT NOT NULL,
+    student_id VARCHAR(20) NOT NULL,
+    started_at BIGINT NOT NULL,
+    duration_millis BIGINT NOT NULL,
+    PRIMARY KEY (exam_id, student_id)
+);
@@ -0,0 +1,3 @@
+-- Optional scheduled start of an exam in epoch milliseconds. Clients download
+-- the encrypted exam before this time and receive the key once it has passed.
+ALTER TABLE exams ADD COLUMN scheduled_start BIGINT NULL;
@@ -0,0 +1,22 @@
+-- Question pools: an exam with a pool draws pool_draw_count questions per
+-- student from the pool instead of using exam_questions. pool_seed makes
+-- each student's draw repeatable, so the drawn set is never stored.
+
+CREATE TABLE IF NOT EXISTS question_pools (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(200) NOT NULL,
+    UNIQUE KEY uk_question_pools_name (name)
+);
+
+CREATE TABLE IF NOT EXISTS pool_questions (
+    pool_id INT NOT NULL,
+    question_id INT NOT NULL,
+    PRIMARY KEY (pool_id, question_id),
+    FOREIGN KEY (pool_id) REFERENCES question_pools (id),
+    FOREIGN KEY (question_id) REFERENCES questions (id)
+);
+
+ALTER TABLE exams ADD COLUMN pool_id INT NULL;
+ALTER TABLE exams ADD COLUMN pool_draw_count INT NULL;
+ALTER TABLE exams ADD COLUMN pool_seed BIGINT NULL;
+ALTER TABLE exams ADD CONSTRAINT fk_exams_pool FOREIGN KEY (pool_id) REFERENCES question_pools (id);
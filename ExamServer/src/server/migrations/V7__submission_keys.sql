@@ -0,0 +1,7 @@
+-- Submission keys: the client sends a new key with every submission and the
+-- same key with its retries. A retry whose first attempt was stored finds
+-- the result by its key and gets the original outcome instead of an error.
+-- Older results have no key.
+
+ALTER TABLE exam_results ADD COLUMN submission_key VARCHAR(64) NULL;
+CREATE UNIQUE INDEX uk_exam_results_submission_key ON exam_results (submission_key);
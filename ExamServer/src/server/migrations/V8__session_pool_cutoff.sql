@@ -0,0 +1,7 @@
+-- Pool cutoff: the highest question id in the exam's pool when the student
+-- started. The student's draw only uses pool questions up to it, so questions
+-- imported into the pool during the exam do not change what the student was
+-- given or how it is scored. Null for exams without a pool and for sessions
+-- started before this version, which draw from the whole pool.
+
+ALTER TABLE exam_sessions ADD COLUMN pool_cutoff INT NULL;
@@ -0,0 +1,50 @@
+package shared;
+
+import java.io.Serializable;
+
+// Answer to RemoteExamService.requestAdmission. A student who is not admitted
+// yet is position in line and should ask again after retryAfterMillis.
+public class Admission implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private boolean admitted;
+    private int position;
+    private long retryAfterMillis;
+
+    // Constructors, getters, and setters
+    public Admission() {
+    }
+
+    public Admission(boolean admitted, int position, long retryAfterMillis) {
+        this.admitted = admitted;
+        this.position = position;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    // Getters and setters
+    public boolean isAdmitted() {
+        return admitted;
+    }
+
+    public void setAdmitted(boolean admitted) {
+        this.admitted = admitted;
+    }
+
+    // 1 for the next student to be admitted; 0 when admitted or not queued
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public void setRetryAfterMillis(long retryAfterMillis) {
+        this.retryAfterMillis = retryAfterMillis;
+    }
+}
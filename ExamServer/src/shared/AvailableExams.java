@@ -0,0 +1,49 @@
+package shared;
+
+import java.io.Serializable;
+import java.util.List;
+
+public class AvailableExams implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long version;
+    private boolean modified;
+    private List<Exam> exams;
+
+    // Constructors, getters, and setters
+    public AvailableExams() {
+    }
+
+    public AvailableExams(long version, boolean modified, List<Exam> exams) {
+        this.version = version;
+        this.modified = modified;
+        this.exams = exams;
+    }
+
+    // Getters and setters
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    // False when the caller's version is current; exams is then null
+    public boolean isModified() {
+        return modified;
+    }
+
+    public void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    public List<Exam> getExams() {
+        return exams;
+    }
+
+    public void setExams(List<Exam> exams) {
+        this.exams = exams;
+    }
+}
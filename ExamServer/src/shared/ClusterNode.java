@@ -0,0 +1,47 @@
+package shared;
+
+import java.io.Serializable;
+
+public class ClusterNode implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String host;
+    private int port;
+
+    // Constructors, getters, and setters
+    public ClusterNode() {
+    }
+
+    public ClusterNode(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    // Getters and setters
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    // host:port of the node's RMI registry, unique within the cluster
+    public String getNodeId() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public String toString() {
+        return getNodeId();
+    }
+}
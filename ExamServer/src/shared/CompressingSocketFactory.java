@@ -0,0 +1,386 @@
+package shared;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// RMI sockets that deflate what they send. The server exports its service
+// with this factory; the stub carries it to the client, so clients need no
+// setting of their own.
+//
+// Each connection starts with a header in each direction: the client offers
+// compression, the server answers whether it compresses its replies. After
+// that data travels in frames, one per flush (one per RMI call or reply), up
+// to FRAME_BYTES each. A frame shorter than the threshold is sent as is;
+// longer frames are deflated on their own with a per-thread Deflater, so an
+// idle connection holds no compression state. Thousands of open connections
+// with a Deflater each would hold hundreds of MB of native memory.
+//
+// A client started with -Dexam.rmi.compression=false does not offer
+// compression and neither side compresses.
+public class CompressingSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int MAGIC = 0x45584d5a;
+    private static final int FRAME_BYTES = 32 * 1024;
+    private static final int COMPRESSED = 0x80000000;
+
+    private static final ThreadLocal<Deflater> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATERS = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final int threshold;
+    private final int level;
+
+    public CompressingSocketFactory(int threshold, int level) {
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        boolean offer = Boolean.parseBoolean(System.getProperty("exam.rmi.compression", "true"));
+        CompressedSocket socket = new CompressedSocket(this, true, offer);
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        CompressingSocketFactory factory = this;
+        return new ServerSocket(port) {
+            @Override
+            public Socket accept() throws IOException {
+                // The header is read on the first read, so a slow client never holds up accept
+                Socket socket = new CompressedSocket(factory, false, true);
+                implAccept(socket);
+                return socket;
+            }
+        };
+    }
+
+    // The stub compares factories to decide whether connections can be shared
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CompressingSocketFactory)) {
+            return false;
+        }
+        CompressingSocketFactory other = (CompressingSocketFactory) obj;
+        return threshold == other.threshold && level == other.level;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * threshold + level;
+    }
+
+    private static class CompressedSocket extends Socket {
+
+        private final CompressingSocketFactory factory;
+        private final boolean client;
+        private final boolean offer;
+        private FrameInputStream in;
+        private FrameOutputStream out;
+        // What the client offered; the server reads it before it first writes
+        private volatile boolean offered;
+
+        CompressedSocket(CompressingSocketFactory factory, boolean client, boolean offer) {
+            this.factory = factory;
+            this.client = client;
+            this.offer = offer;
+        }
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new FrameInputStream(super.getInputStream()) {
+                    @Override
+                    protected void readHeader(boolean compressing) {
+                        offered = compressing;
+                    }
+                };
+            }
+            return in;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = new FrameOutputStream(super.getOutputStream(), factory.threshold, factory.level) {
+                    @Override
+                    protected boolean compressing() {
+                        return client ? offer : offered;
+                    }
+                };
+            }
+            return out;
+        }
+    }
+
+    // Writes the connection header, then one frame per flush: a length with the
+    // COMPRESSED bit, followed by the raw or deflated bytes. The first HEADER_BYTES
+    // of both buffers are left free for the headers, so a frame is one write.
+    public static class FrameOutputStream extends FilterOutputStream {
+
+        private static final int HEADER_BYTES = 9;
+
+        private final int threshold;
+        private final int level;
+        private final byte[] buffer = new byte[HEADER_BYTES + FRAME_BYTES];
+        private byte[] deflated;
+        private int count;
+        private boolean headerWritten;
+        private boolean compressing;
+        private long rawBytes;
+        private long wireBytes;
+
+        public FrameOutputStream(OutputStream out, int threshold, int level) {
+            super(out);
+            this.threshold = threshold;
+            this.level = level;
+        }
+
+        // Whether this side compresses; asked when the first frame is written
+        protected boolean compressing() {
+            return true;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == FRAME_BYTES) {
+                writeFrame();
+            }
+            buffer[HEADER_BYTES + count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == FRAME_BYTES) {
+                    writeFrame();
+                }
+                int chunk = Math.min(len, FRAME_BYTES - count);
+                System.arraycopy(b, off, buffer, HEADER_BYTES + count, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeFrame();
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                out.close();
+            }
+        }
+
+        // Bytes written to this stream, and bytes sent for them including headers
+        public long getRawBytes() {
+            return rawBytes;
+        }
+
+        public long getWireBytes() {
+            return wireBytes;
+        }
+
+        private void writeFrame() throws IOException {
+            boolean first = !headerWritten;
+            if (first) {
+                headerWritten = true;
+                compressing = compressing();
+            } else if (count == 0) {
+                return;
+            }
+
+            rawBytes += count;
+            byte[] frame = buffer;
+            int length = count;
+            int header = length;
+            if (compressing && count >= threshold) {
+                int deflatedLength = deflate();
+                // Sent raw if it did not shrink
+                if (deflatedLength < count) {
+                    frame = deflated;
+                    length = deflatedLength;
+                    header = length | COMPRESSED;
+                }
+            }
+
+            int start = HEADER_BYTES - 4;
+            putInt(frame, start, header);
+            if (first) {
+                start -= 5;
+                putInt(frame, start, MAGIC);
+                frame[start + 4] = (byte) (compressing ? 1 : 0);
+            }
+            // An empty first frame only sends the connection header
+            int end = HEADER_BYTES + length;
+            if (length == 0) {
+                end -= 4;
+            }
+            out.write(frame, start, end - start);
+            wireBytes += end - start;
+            count = 0;
+        }
+
+        // Deflates the buffered data into deflated after HEADER_BYTES; returns its length
+        private int deflate() {
+            if (deflated == null) {
+                deflated = new byte[HEADER_BYTES + FRAME_BYTES];
+            }
+            Deflater deflater = DEFLATERS.get();
+            deflater.reset();
+            deflater.setLevel(level);
+            deflater.setInput(buffer, HEADER_BYTES, count);
+            deflater.finish();
+            int length = HEADER_BYTES;
+            while (!deflater.finished()) {
+                if (length == deflated.length) {
+                    deflated = Arrays.copyOf(deflated, deflated.length * 2);
+                }
+                length += deflater.deflate(deflated, length, deflated.length - length);
+            }
+            return length - HEADER_BYTES;
+        }
+
+        private static void putInt(byte[] target, int offset, int value) {
+            target[offset] = (byte) (value >>> 24);
+            target[offset + 1] = (byte) (value >>> 16);
+            target[offset + 2] = (byte) (value >>> 8);
+            target[offset + 3] = (byte) value;
+        }
+    }
+
+    // Reads what FrameOutputStream wrote
+    public static class FrameInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private byte[] frame;
+        // One byte more than a frame holds, to catch a frame that inflates past it
+        private final byte[] data = new byte[FRAME_BYTES + 1];
+        private int position;
+        private int limit;
+        private boolean headerRead;
+
+        public FrameInputStream(InputStream in) {
+            this.in = new DataInputStream(in);
+        }
+
+        // Called with what the other side said about compressing its frames
+        protected void readHeader(boolean compressing) {
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            return data[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            int chunk = Math.min(len, limit - position);
+            System.arraycopy(data, position, b, off, chunk);
+            position += chunk;
+            return chunk;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        // Reads the next non-empty frame; false at the end of the stream
+        private boolean fill() throws IOException {
+            try {
+                if (!headerRead) {
+                    if (in.readInt() != MAGIC) {
+                        throw new IOException("Not a compressing RMI connection");
+                    }
+                    readHeader(in.readBoolean());
+                    headerRead = true;
+                }
+                int header;
+                do {
+                    header = in.readInt();
+                } while ((header & ~COMPRESSED) == 0);
+
+                // No frame is sent with more than FRAME_BYTES, compressed or not
+                int length = header & ~COMPRESSED;
+                if (length > FRAME_BYTES) {
+                    throw new IOException("Frame of " + length + " bytes is over the limit of " + FRAME_BYTES);
+                }
+                if ((header & COMPRESSED) == 0) {
+                    in.readFully(data, 0, length);
+                    limit = length;
+                } else {
+                    if (frame == null) {
+                        frame = new byte[FRAME_BYTES];
+                    }
+                    in.readFully(frame, 0, length);
+                    limit = inflate(length);
+                }
+                position = 0;
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        private int inflate(int length) throws IOException {
+            Inflater inflater = INFLATERS.get();
+            inflater.reset();
+            inflater.setInput(frame, 0, length);
+            int inflated = 0;
+            try {
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(data, inflated, data.length - inflated);
+                    inflated += n;
+                    // Frames were at most FRAME_BYTES before they were deflated
+                    if (inflated > FRAME_BYTES) {
+                        throw new IOException("Corrupt compressed frame");
+                    }
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new IOException("Truncated compressed frame");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed frame", e);
+            }
+            return inflated;
+        }
+    }
+}
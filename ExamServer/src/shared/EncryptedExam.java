@@ -0,0 +1,124 @@
+package shared;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// An exam with its questions, serialized and encrypted with AES-GCM so clients
+// can download it before the scheduled start. The matching ExamKey is only
+// released once the exam has started.
+public class EncryptedExam implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private int examId;
+    private long keyId;
+    private long scheduledStart;
+    private long serverTime;
+    private byte[] iv;
+    private byte[] ciphertext;
+
+    // Constructors, getters, and setters
+    public EncryptedExam() {
+    }
+
+    public EncryptedExam(int examId, long keyId, long scheduledStart, byte[] iv, byte[] ciphertext) {
+        this.examId = examId;
+        this.keyId = keyId;
+        this.scheduledStart = scheduledStart;
+        this.iv = iv;
+        this.ciphertext = ciphertext;
+    }
+
+    public static EncryptedExam seal(Exam exam, ExamKey key) throws GeneralSecurityException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(exam);
+        }
+
+        byte[] iv = new byte[IV_BYTES];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key.getKey(), "AES"), new GCMParameterSpec(TAG_BITS, iv));
+        return new EncryptedExam(exam.getId(), key.getKeyId(), exam.getScheduledStart(), iv,
+                cipher.doFinal(bytes.toByteArray()));
+    }
+
+    // Fails if the key belongs to another exam or another encryption of it
+    public Exam open(ExamKey key) throws GeneralSecurityException, IOException {
+        if (key.getExamId() != examId || key.getKeyId() != keyId) {
+            throw new GeneralSecurityException("Key does not match this exam payload");
+        }
+
+        Cipher cipher = Cipher.getInstance(CIPHER);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key.getKey(), "AES"), new GCMParameterSpec(TAG_BITS, iv));
+        byte[] plaintext = cipher.doFinal(ciphertext);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(plaintext))) {
+            return (Exam) in.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unexpected exam payload", e);
+        }
+    }
+
+    // Getters and setters
+    public int getExamId() {
+        return examId;
+    }
+
+    public void setExamId(int examId) {
+        this.examId = examId;
+    }
+
+    public long getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(long keyId) {
+        this.keyId = keyId;
+    }
+
+    public long getScheduledStart() {
+        return scheduledStart;
+    }
+
+    public void setScheduledStart(long scheduledStart) {
+        this.scheduledStart = scheduledStart;
+    }
+
+    // Server clock when the payload was sent, for clients to correct their own clock
+    public long getServerTime() {
+        return serverTime;
+    }
+
+    public void setServerTime(long serverTime) {
+        this.serverTime = serverTime;
+    }
+
+    public byte[] getIv() {
+        return iv;
+    }
+
+    public void setIv(byte[] iv) {
+        this.iv = iv;
+    }
+
+    public byte[] getCiphertext() {
+        return ciphertext;
+    }
+
+    public void setCiphertext(byte[] ciphertext) {
+        this.ciphertext = ciphertext;
+    }
+}
@@ -13,6 +13,11 @@ public class Exam implements Serializable {
     private int durationMinutes;
     private boolean resultsVisible;
     private boolean active = true;
+    // Epoch millis before which the exam cannot be started, 0 when not scheduled
+    private long scheduledStart;
+    // Pooled exams draw poolDrawCount questions per student from question pool poolId (0 = fixed questions)
+    private int poolId;
+    private int poolDrawCount;
     private List<Question> questions;
 
     // Constructors, getters, and setters
@@ -76,6 +81,30 @@ public class Exam implements Serializable {
         this.active = active;
     }
 
+    public long getScheduledStart() {
+        return scheduledStart;
+    }
+
+    public void setScheduledStart(long scheduledStart) {
+        this.scheduledStart = scheduledStart;
+    }
+
+    public int getPoolId() {
+        return poolId;
+    }
+
+    public void setPoolId(int poolId) {
+        this.poolId = poolId;
+    }
+
+    public int getPoolDrawCount() {
+        return poolDrawCount;
+    }
+
+    public void setPoolDrawCount(int poolDrawCount) {
+        this.poolDrawCount = poolDrawCount;
+    }
+
     public List<Question> getQuestions() {
         return questions;
     }
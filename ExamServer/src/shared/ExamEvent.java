@@ -0,0 +1,75 @@
+package shared;
+
+import java.io.Serializable;
+
+public class ExamEvent implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Type {
+        // A new exam can be taken
+        EXAM_PUBLISHED,
+        // Exams were edited, deleted or changed on another server
+        EXAMS_CHANGED,
+        RESULTS_VISIBLE,
+        SESSION_STARTED,
+        EXAM_SUBMITTED,
+        // Events for this subscriber were dropped; refresh everything
+        RESYNC
+    }
+
+    private Type type;
+    private int examId;
+    private String studentId;
+    private long time;
+
+    // Constructors, getters, and setters
+    public ExamEvent() {
+    }
+
+    public ExamEvent(Type type, int examId, String studentId) {
+        this.type = type;
+        this.examId = examId;
+        this.studentId = studentId;
+        this.time = System.currentTimeMillis();
+    }
+
+    // Getters and setters
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public int getExamId() {
+        return examId;
+    }
+
+    public void setExamId(int examId) {
+        this.examId = examId;
+    }
+
+    // Only set for events about one student, which only that student receives
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public void setStudentId(String studentId) {
+        this.studentId = studentId;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    @Override
+    public String toString() {
+        return type + " exam " + examId + (studentId != null ? " student " + studentId : "");
+    }
+}
@@ -0,0 +1,68 @@
+package shared;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Consistent hash ring assigning exams to cluster nodes. Every node is placed
+// at many points on the ring so exams spread evenly, and adding or removing a
+// node only moves the exams next to its points. Clients and servers build the
+// ring from the same ClusterView and therefore agree on every owner.
+public class ExamHashRing {
+
+    private static final int POINTS_PER_NODE = 160;
+
+    private final TreeMap<Integer, String> ring = new TreeMap<>();
+
+    public ExamHashRing(Collection<String> nodeIds) {
+        for (String nodeId : nodeIds) {
+            for (int point = 0; point < POINTS_PER_NODE; point++) {
+                ring.put(hash(nodeId + "#" + point), nodeId);
+            }
+        }
+    }
+
+    // Owner of an exam, or null for an empty ring
+    public String nodeFor(int examId) {
+        return nodeForHash(mix(examId));
+    }
+
+    // Owner for a string key such as a student id, used for calls without an exam
+    public String nodeFor(String key) {
+        return nodeForHash(hash(key));
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    private String nodeForHash(int hash) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Integer, String> entry = ring.ceilingEntry(hash);
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    // FNV-1a over the UTF-8 bytes, then mixed so nearby strings land far apart
+    private static int hash(String key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x01000193;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3 finalizer
+    private static int mix(int value) {
+        int h = value;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
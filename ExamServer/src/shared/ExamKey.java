@@ -0,0 +1,74 @@
+package shared;
+
+import java.io.Serializable;
+import java.security.SecureRandom;
+
+// AES key for an EncryptedExam, released when the exam starts
+public class ExamKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int KEY_BYTES = 16;
+
+    private int examId;
+    private long keyId;
+    private byte[] key;
+    private long sessionStart;
+
+    // Constructors, getters, and setters
+    public ExamKey() {
+    }
+
+    public ExamKey(int examId, long keyId, byte[] key) {
+        this.examId = examId;
+        this.keyId = keyId;
+        this.key = key;
+    }
+
+    public static ExamKey generate(int examId) {
+        SecureRandom random = new SecureRandom();
+        byte[] key = new byte[KEY_BYTES];
+        random.nextBytes(key);
+        return new ExamKey(examId, random.nextLong(), key);
+    }
+
+    // Copy carrying the start time the server recorded for one student's session
+    public ExamKey forSession(long sessionStart) {
+        ExamKey copy = new ExamKey(examId, keyId, key);
+        copy.setSessionStart(sessionStart);
+        return copy;
+    }
+
+    // Getters and setters
+    public int getExamId() {
+        return examId;
+    }
+
+    public void setExamId(int examId) {
+        this.examId = examId;
+    }
+
+    public long getKeyId() {
+        return keyId;
+    }
+
+    public void setKeyId(long keyId) {
+        this.keyId = keyId;
+    }
+
+    public byte[] getKey() {
+        return key;
+    }
+
+    public void setKey(byte[] key) {
+        this.key = key;
+    }
+
+    public long getSessionStart() {
+        return sessionStart;
+    }
+
+    public void setSessionStart(long sessionStart) {
+        this.sessionStart = sessionStart;
+    }
+}
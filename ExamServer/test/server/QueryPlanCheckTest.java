@@ -0,0 +1,17 @@
+package server;
+
+import java.util.List;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+// Runs QueryPlanCheck under ant test: fails when a statement ExamServiceImpl
+// prepares reads a whole table. The memory profile comes from
+// test-sys-prop.exam.db.profile in nbproject/project.properties.
+public class QueryPlanCheckTest {
+
+    @Test
+    public void noStatementScansAWholeTable() throws Exception {
+        List<String> scans = QueryPlanCheck.check(QueryPlanCheck.defaultOptions());
+        assertTrue("Statements with full table scans:\n" + String.join("\n", scans), scans.isEmpty());
+    }
+}